@@ -1,29 +1,54 @@
 package com.davivienda.excelpdf;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Scanner;
 
 import javax.swing.SwingUtilities;
 
+import com.davivienda.excelpdf.application.CalculationMode;
+import com.davivienda.excelpdf.application.CorrectionRules;
+import com.davivienda.excelpdf.application.CsvToExcelConverter;
+import com.davivienda.excelpdf.application.EntityNameResolver;
 import com.davivienda.excelpdf.application.ExcelOwnershipProcessor;
+import com.davivienda.excelpdf.application.OwnershipCalculator;
+import com.davivienda.excelpdf.application.OwnershipResultCache;
+import com.davivienda.excelpdf.application.TopBeneficiariesQuery;
 import com.davivienda.excelpdf.ui.ComposicionAccionariaGUI;
 
 /**
  * Clase principal del proyecto de Composición Accionaria.
  * 
- * Este programa procesa un archivo Excel con relaciones de propiedad entre entidades y accionistas,
+ * Este programa procesa un archivo Excel (o CSV) con relaciones de propiedad entre entidades y accionistas,
  * calcula las participaciones finales y genera un reporte PDF con los resultados.
  * 
  * <p>Uso desde consola:
  * <pre>
- *   java -jar excel-pdf-processor-standalone.jar <archivo.xlsx> [entidad_raiz]
+ *   java -jar excel-pdf-processor-standalone.jar <archivo.xlsx|archivo.csv> [entidad_raiz] [opciones]
+ * </pre>
+ * 
+ * Opciones:
+ * <pre>
+ *   --modo=MODO          PATH_ENUMERATION, MEMOIZED_DAG, ITERATIVE_SOLVER, PARALLEL_FORK_JOIN o FIXED_POINT
+ *   --paralelismo=N      hilos para leer CSV grandes, validar el grafo y del modo PARALLEL_FORK_JOIN
+ *   --umbral=P           participación mínima (%) de los beneficiarios reportados
+ *   --rutas=N            rutas de participación listadas por beneficiario en el PDF
+ *   --cache=DIR          reutiliza resultados guardados en DIR para el mismo archivo, raíz y opciones
+ *   --instantaneas=DIR   guarda en DIR una copia binaria del grafo y la reutiliza si el Excel no cambió
+ *   --nombres[=P]        unifica variantes de un nombre con similitud mínima P% (85 por defecto; sin la opción no se unifican)
+ *   --reglas=ARCHIVO     aplica al cargar las reglas de corrección del archivo (RENOMBRAR, ALIAS, ARISTA, DESCARTAR)
+ *   --copia-excel[=ARCHIVO] con un CSV, guarda además una copia en Excel (data.xlsx junto al JAR por defecto)
  * </pre>
  * 
  * Ejemplo:
  * <pre>
- *   java -jar excel-pdf-processor-standalone.jar datos.xlsx "RED COW INC"
+ *   java -jar excel-pdf-processor-standalone.jar datos.xlsx "RED COW INC" --paralelismo=8
  * </pre>
  */
 public class Main {
@@ -41,6 +66,10 @@ public class Main {
         // Modo consola
         printHeader();
 
+        // Separar opciones (--clave=valor) de los argumentos posicionales
+        Map<String, String> options = new HashMap<>();
+        args = extractOptions(args, options);
+
         try {
             // Validar argumentos
             if (args.length < 1) {
@@ -66,13 +95,27 @@ public class Main {
             System.out.println("   PDF salida    : " + outputPdfPath);
             System.out.println("─".repeat(50));
 
-            // Aplicar correcciones automáticas al Excel si es necesario
-            String correctedExcelPath = applyExcelCorrections(excelPath);
-
             // Ejecutar el procesamiento principal
             ExcelOwnershipProcessor processor = new ExcelOwnershipProcessor();
+            configureCalculator(processor.getCalculator(), options);
+            if (options.containsKey("rutas")) {
+                try {
+                    processor.setPathLimits(Integer.parseInt(options.get("rutas")), 50);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Valor de --rutas inválido: " + options.get("rutas"));
+                }
+            }
+            if (options.containsKey("cache")) {
+                processor.setResultCache(new OwnershipResultCache.Builder()
+                        .withDiskDirectory(Paths.get(options.get("cache")))
+                        .build());
+                System.out.println("   Caché         : " + options.get("cache"));
+            }
+            if (options.containsKey("copia-excel")) {
+                exportExcelCopy(excelPath, options.get("copia-excel"));
+            }
             ExcelOwnershipProcessor.ProcessingResult result =
-                    processor.processOwnershipAnalysis(correctedExcelPath, rootEntity, outputPdfPath);
+                    processor.processOwnershipAnalysis(excelPath, rootEntity, outputPdfPath);
 
             // Mostrar resultados finales
             printResults(result);
@@ -116,13 +159,24 @@ public class Main {
     private static void printUsageAndExit() {
         System.err.println(" Error: Falta el archivo Excel\n");
         System.err.println(" USO:");
-        System.err.println("   java -jar excel-pdf-processor-standalone.jar <archivo.xlsx> [entidad_raiz]\n");
+        System.err.println("   java -jar excel-pdf-processor-standalone.jar <archivo.xlsx|archivo.csv> [entidad_raiz] [opciones]\n");
         System.err.println(" PARÁMETROS:");
-        System.err.println("   archivo.xlsx  : Archivo Excel con las relaciones de propiedad");
+        System.err.println("   archivo.xlsx  : Archivo Excel con las relaciones de propiedad (también se acepta .csv)");
         System.err.println("   entidad_raiz  : (Opcional) Entidad desde la cual calcular participaciones\n");
+        System.err.println(" OPCIONES:");
+        System.err.println("   --modo=MODO      : PATH_ENUMERATION, MEMOIZED_DAG, ITERATIVE_SOLVER, PARALLEL_FORK_JOIN, FIXED_POINT");
+        System.err.println("   --paralelismo=N  : Hilos de lectura, validación y del modo PARALLEL_FORK_JOIN");
+        System.err.println("   --umbral=P       : Reportar solo beneficiarios con al menos P% (el resto se agrupa)");
+        System.err.println("   --rutas=N        : Listar hasta N rutas por beneficiario en el PDF");
+        System.err.println("   --cache=DIR      : Reutilizar resultados guardados en DIR (mismo archivo, raíz y opciones)");
+        System.err.println("   --instantaneas=DIR : Guardar el grafo en binario en DIR y reutilizarlo si el Excel no cambió");
+        System.err.println("   --nombres[=P]    : Unificar nombres con al menos P% de similitud (85 por defecto; desactivado sin la opción)");
+        System.err.println("   --reglas=ARCHIVO : Aplicar al cargar las reglas de corrección del archivo");
+        System.err.println("   --copia-excel[=ARCHIVO] : Con un CSV, guardar además una copia en Excel\n");
         System.err.println(" EJEMPLOS:");
         System.err.println("   java -jar excel-pdf-processor-standalone.jar datos.xlsx");
-        System.err.println("   java -jar excel-pdf-processor-standalone.jar datos.xlsx \"RED COW INC\"\n");
+        System.err.println("   java -jar excel-pdf-processor-standalone.jar datos.xlsx \"RED COW INC\"");
+        System.err.println("   java -jar excel-pdf-processor-standalone.jar datos.xlsx \"RED COW INC\" --paralelismo=8\n");
         System.err.println(" FORMATO DEL EXCEL:");
         System.err.println("   Columna A: Entidad");
         System.err.println("   Columna B: Accionista");
@@ -148,7 +202,7 @@ public class Main {
     // ============================================================
 
     /**
-     * Valida que el archivo Excel exista, sea legible y tenga extensión .xlsx.
+     * Valida que el archivo Excel exista, sea legible y tenga extensión .xlsx o .csv.
      */
     private static void validateExcelFile(String excelPath) {
         File excelFile = new File(excelPath);
@@ -157,7 +211,7 @@ public class Main {
             System.err.println(" Error: El archivo no existe: " + excelPath + "\n");
             System.err.println(" Verifique que:");
             System.err.println("   • La ruta del archivo sea correcta");
-            System.err.println("   • El archivo tenga extensión .xlsx");
+            System.err.println("   • El archivo tenga extensión .xlsx o .csv");
             System.err.println("   • Tenga permisos de lectura\n");
             printUsageExamples();
             System.exit(1);
@@ -169,13 +223,106 @@ public class Main {
             System.exit(1);
         }
 
-        if (!excelPath.toLowerCase().endsWith(".xlsx")) {
-            System.err.println(" Error: El archivo debe tener extensión .xlsx: " + excelPath);
+        if (!excelPath.toLowerCase().endsWith(".xlsx") && !excelPath.toLowerCase().endsWith(".csv")) {
+            System.err.println(" Error: El archivo debe tener extensión .xlsx o .csv: " + excelPath);
             System.err.println("  Nota: No se soportan archivos .xls (formato antiguo)");
             System.exit(1);
         }
     }
 
+    /**
+     * Guarda una copia en Excel de un CSV. El análisis no la usa: el CSV se lee directamente.
+     */
+    private static void exportExcelCopy(String csvPath, String excelPath) throws IOException {
+        if (!csvPath.toLowerCase().endsWith(".csv")) {
+            throw new IllegalArgumentException("--copia-excel solo aplica a archivos CSV");
+        }
+        CsvToExcelConverter converter = new CsvToExcelConverter();
+        String copy = excelPath.isEmpty()
+                ? converter.convertCsvToExcel(csvPath)
+                : converter.convertCsvToExcel(csvPath, excelPath);
+        System.out.println("   Copia Excel   : " + copy);
+    }
+
+    /**
+     * Extrae las opciones --clave=valor y devuelve los argumentos posicionales restantes.
+     */
+    private static String[] extractOptions(String[] args, Map<String, String> options) {
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int separator = arg.indexOf('=');
+                String key = (separator > 0) ? arg.substring(2, separator) : arg.substring(2);
+                String value = (separator > 0) ? arg.substring(separator + 1).trim() : "";
+                options.put(key.toLowerCase(Locale.ROOT), value);
+            } else {
+                positional.add(arg);
+            }
+        }
+        return positional.toArray(new String[0]);
+    }
+
+    /**
+     * Aplica las opciones de línea de comandos a la calculadora.
+     */
+    private static void configureCalculator(OwnershipCalculator calculator, Map<String, String> options)
+            throws IOException {
+        if (options.containsKey("paralelismo")) {
+            int parallelism;
+            try {
+                parallelism = Integer.parseInt(options.get("paralelismo"));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Valor de --paralelismo inválido: " + options.get("paralelismo"));
+            }
+            calculator.setParallelism(parallelism);
+            System.out.println("   Paralelismo   : " + parallelism + " hilos");
+        }
+
+        if (options.containsKey("umbral")) {
+            double threshold;
+            try {
+                threshold = Double.parseDouble(options.get("umbral")) / 100.0;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Valor de --umbral inválido: " + options.get("umbral"));
+            }
+            calculator.setBeneficiaryThreshold(threshold);
+            System.out.println("   Umbral        : " + options.get("umbral") + "%");
+        }
+
+        if (options.containsKey("modo")) {
+            try {
+                calculator.setCalculationMode(CalculationMode.valueOf(options.get("modo").toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Modo de cálculo desconocido: " + options.get("modo"));
+            }
+        }
+        // Unificar nombres puede fusionar entidades distintas con nombres parecidos: solo a pedido
+        if (options.containsKey("nombres")) {
+            String names = options.get("nombres");
+            double similarity = EntityNameResolver.DEFAULT_SIMILARITY;
+            if (!names.isEmpty()) {
+                try {
+                    similarity = Double.parseDouble(names) / 100.0;
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Valor de --nombres inválido: " + names);
+                }
+            }
+            calculator.setEntityNameResolver(new EntityNameResolver(similarity));
+            System.out.println("   Nombres       : unificados con similitud >= "
+                    + String.format(Locale.ROOT, "%.0f", similarity * 100) + "%");
+        }
+        if (options.containsKey("reglas")) {
+            CorrectionRules rules = CorrectionRules.load(Paths.get(options.get("reglas")));
+            calculator.setCorrectionRules(rules);
+            System.out.println("   Reglas        : " + options.get("reglas") + " (" + rules.getRuleCount() + " reglas)");
+        }
+        if (options.containsKey("instantaneas")) {
+            calculator.setSnapshotDirectory(Paths.get(options.get("instantaneas")));
+            System.out.println("   Instantáneas  : " + options.get("instantaneas"));
+        }
+        System.out.println("   Modo de cálculo: " + calculator.getCalculationMode());
+    }
+
     /**
      * Obtiene la entidad raíz desde los argumentos o la solicita al usuario.
      */
@@ -226,7 +373,19 @@ public class Main {
         System.out.println("\n ESTADÍSTICAS DEL ANÁLISIS:");
         System.out.println("   " + result.getGraphStatistics());
         System.out.println("   Beneficiarios finales: " + result.getFinalResults().size());
-        System.out.println("   Tiempo de procesamiento: " + result.getProcessingTime() + " ms");
+        if (result.getIntegrityNotes().isEmpty()) {
+            System.out.println("   Integridad de los datos: sin observaciones");
+        } else {
+            System.out.println("   Integridad de los datos:");
+            for (String note : result.getIntegrityNotes()) {
+                System.out.println("     • " + note);
+            }
+        }
+        if (result.getBelowThresholdShare() > 0) {
+            System.out.printf("   Otros (bajo el umbral): %.4f%%%n", result.getBelowThresholdShare() * 100);
+        }
+        System.out.println("   Tiempo de procesamiento: " + result.getProcessingTime() + " ms"
+                + (result.isFromCache() ? " (resultado en caché)" : ""));
         System.out.println("   Velocidad: " + String.format("%.2f", 1000.0 / result.getProcessingTime()) + " análisis/segundo");
 
         System.out.println("\n ARCHIVO GENERADO:");
@@ -237,9 +396,7 @@ public class Main {
         if (result.getFinalResults().isEmpty()) {
             System.out.println("   No se encontraron beneficiarios finales");
         } else {
-            result.getFinalResults().entrySet().stream()
-                    .sorted(java.util.Map.Entry.<String, Double>comparingByValue().reversed())
-                    .limit(5)
+            TopBeneficiariesQuery.selectTop(result.getFinalResults(), 5)
                     .forEach(entry -> {
                         String beneficiary = entry.getKey();
                         double percentage = entry.getValue();
@@ -308,84 +465,4 @@ public class Main {
             gui.setVisible(true);
         });
     }
-    
-    // ============================================================
-    // ============ SECCIÓN: CORRECCIONES AUTOMÁTICAS =============
-    // ============================================================
-    
-    /**
-     * Aplica correcciones automáticas al archivo Excel si es necesario.
-     * Por ejemplo, unifica entidades DRA BLUE con nombres similares.
-     */
-    private static String applyExcelCorrections(String originalExcelPath) {
-        try {
-            // Verificar si el archivo necesita correcciones
-            if (!needsCorrections(originalExcelPath)) {
-                System.out.println("   ✓ Excel no requiere correcciones automáticas");
-                return originalExcelPath;
-            }
-            
-            System.out.println("   🔧 Aplicando correcciones automáticas al Excel...");
-            
-            // Generar ruta del archivo corregido
-            String correctedPath = originalExcelPath.replace(".xlsx", "_cleaned_fixed.xlsx");
-            
-            // Ejecutar el script de corrección usando ProcessBuilder
-            ProcessBuilder pb = new ProcessBuilder("python", "fix_dra_blue_dynamic.py", originalExcelPath);
-            pb.directory(new File("."));
-            pb.redirectErrorStream(true);
-            
-            Process process = pb.start();
-            
-            // Leer la salida del proceso
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    System.out.println("   [Python] " + line);
-                }
-            }
-            
-            int exitCode = process.waitFor();
-            
-            if (exitCode == 0) {
-                // Verificar que el archivo corregido existe
-                File correctedFile = new File(correctedPath);
-                if (correctedFile.exists()) {
-                    System.out.println("   ✓ Correcciones aplicadas exitosamente: " + correctedFile.getName());
-                    return correctedPath;
-                } else {
-                    System.out.println("   ⚠ Archivo corregido no encontrado, usando original");
-                    return originalExcelPath;
-                }
-            } else {
-                System.out.println("   ⚠ Error en corrección automática, usando archivo original");
-                return originalExcelPath;
-            }
-            
-        } catch (Exception e) {
-            System.out.println("   ⚠ Error aplicando correcciones: " + e.getMessage());
-            System.out.println("   📋 Usando archivo original sin correcciones");
-            return originalExcelPath;
-        }
-    }
-    
-    /**
-     * Verifica si el archivo Excel necesita correcciones automáticas.
-     * Detecta casos conocidos como entidades DRA BLUE duplicadas.
-     */
-    private static boolean needsCorrections(String excelPath) {
-        // Verificar si ya existe una versión corregida
-        String correctedPath = excelPath.replace(".xlsx", "_cleaned_fixed.xlsx");
-        File correctedFile = new File(correctedPath);
-        
-        // Si ya existe el archivo corregido y es más reciente, no necesita correcciones
-        File originalFile = new File(excelPath);
-        if (correctedFile.exists() && 
-            correctedFile.lastModified() >= originalFile.lastModified()) {
-            return false;
-        }
-        
-        // Para simplificar, siempre aplicamos correcciones para data.xlsx
-        return excelPath.contains("data.xlsx");
-    }
 }
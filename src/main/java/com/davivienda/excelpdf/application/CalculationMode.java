@@ -0,0 +1,41 @@
+package com.davivienda.excelpdf.application;
+
+/**
+ * Modos de cálculo disponibles en {@link OwnershipCalculator}.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public enum CalculationMode {
+
+    /**
+     * Recorrido recursivo de todas las rutas desde la entidad raíz.
+     * Se conserva para comparación; su costo crece con el número de rutas.
+     */
+    PATH_ENUMERATION,
+
+    /**
+     * Propagación en orden topológico sobre el grafo condensado: cada entidad se procesa
+     * una sola vez, con costo lineal en el número de relaciones. Los ciclos se resuelven
+     * con la resolución precalculada de su componente fuertemente conexa.
+     */
+    MEMOIZED_DAG,
+
+    /**
+     * Sistema lineal disperso resuelto con Gauss-Seidel; resuelve correctamente
+     * las participaciones recíprocas (ciclos) en tiempo acotado.
+     */
+    ITERATIVE_SOLVER,
+
+    /**
+     * Recorrido de rutas repartido entre varios hilos con un ForkJoinPool;
+     * útil cuando la raíz tiene muchos accionistas independientes.
+     */
+    PARALLEL_FORK_JOIN,
+
+    /**
+     * Propagación sobre el grafo condensado con porcentajes en punto fijo ({@code long}
+     * en unidades de 1e-12); el resultado es idéntico entre ejecuciones y equipos.
+     */
+    FIXED_POINT
+}
@@ -0,0 +1,371 @@
+package com.davivienda.excelpdf.application;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Reglas de corrección declarativas que se aplican a cada fila mientras se carga el Excel.
+ *
+ * <p>Formato del archivo (UTF-8, un campo por columna separado por {@code |}; las líneas
+ * vacías y las que empiezan por {@code #} se ignoran):
+ * <pre>
+ *   RENOMBRAR | nombre original | nombre nuevo
+ *   ALIAS     | nombre canónico | alias 1 | alias 2 ...
+ *   ARISTA    | entidad | accionista | porcentaje (0 - 100)
+ *   DESCARTAR | entidad | accionista
+ * </pre>
+ * {@code RENOMBRAR} y {@code ALIAS} cambian el nombre tanto en la columna de entidad como
+ * en la de accionista. {@code ARISTA} reemplaza el porcentaje de la relación si aparece en
+ * el archivo y la agrega al final de la carga si no aparece. {@code DESCARTAR} omite las
+ * filas de esa relación; {@code *} en lugar de un nombre descarta cualquier entidad o
+ * accionista, también en las relaciones que agregaría {@code ARISTA}. Los nombres de
+ * {@code ARISTA} y {@code DESCARTAR} se escriben ya corregidos.
+ * Las comparaciones no distinguen mayúsculas ni espacios repetidos; las relaciones que
+ * agrega {@code ARISTA} usan la escritura con que el nombre aparece primero en el archivo.
+ *
+ * <p>Las reglas se compilan en mapas hash, así que corregir una fila cuesta O(1)
+ * sin importar cuántas reglas haya.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public class CorrectionRules {
+
+    private static final String ANY = "*";
+    private static final Pattern FIELD_SEPARATOR = Pattern.compile("\\|");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private final Map<String, String> renames;
+    private final Map<String, Edge> edges;
+    private final Set<String> edgeNames;
+    private final Set<String> droppedRelations;
+    private final Set<String> droppedEntities;
+    private final Set<String> droppedOwners;
+    private final String fingerprint;
+
+    private CorrectionRules(Map<String, String> renames, Map<String, Edge> edges, Set<String> droppedRelations,
+                            Set<String> droppedEntities, Set<String> droppedOwners, String fingerprint) {
+        this.renames = renames;
+        this.edges = edges;
+        this.edgeNames = new HashSet<>();
+        for (Edge edge : edges.values()) {
+            edgeNames.add(lookupKey(edge.getEntity()));
+            edgeNames.add(lookupKey(edge.getOwner()));
+        }
+        this.droppedRelations = droppedRelations;
+        this.droppedEntities = droppedEntities;
+        this.droppedOwners = droppedOwners;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Lee y compila un archivo de reglas.
+     *
+     * @param rulesPath archivo de reglas
+     * @return reglas compiladas
+     * @throws IOException si no se puede leer el archivo
+     * @throws IllegalArgumentException si alguna línea no tiene el formato esperado
+     */
+    public static CorrectionRules load(Path rulesPath) throws IOException {
+        List<String> lines = Files.readAllLines(rulesPath, StandardCharsets.UTF_8);
+        try {
+            return parse(lines);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(rulesPath.getFileName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Compila reglas ya leídas, una por línea.
+     *
+     * @param lines líneas del archivo de reglas
+     * @return reglas compiladas
+     * @throws IllegalArgumentException si alguna línea no tiene el formato esperado
+     */
+    public static CorrectionRules parse(List<String> lines) {
+        Map<String, String> renames = new HashMap<>();
+        Map<String, Edge> edges = new LinkedHashMap<>();
+        Set<String> droppedRelations = new HashSet<>();
+        Set<String> droppedEntities = new HashSet<>();
+        Set<String> droppedOwners = new HashSet<>();
+
+        for (int lineNumber = 1; lineNumber <= lines.size(); lineNumber++) {
+            String line = lines.get(lineNumber - 1).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = FIELD_SEPARATOR.split(line, -1);
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = fields[i].trim();
+                if (fields[i].isEmpty()) {
+                    throw new IllegalArgumentException("Línea " + lineNumber + ": campo vacío");
+                }
+            }
+            String rule = fields[0].toUpperCase(Locale.ROOT);
+            switch (rule) {
+                case "RENOMBRAR":
+                    requireFields(fields, 3, lineNumber);
+                    putRename(renames, fields[1], fields[2], lineNumber);
+                    break;
+                case "ALIAS":
+                    if (fields.length < 3) {
+                        throw new IllegalArgumentException("Línea " + lineNumber + ": ALIAS requiere al menos un alias");
+                    }
+                    for (int i = 2; i < fields.length; i++) {
+                        putRename(renames, fields[i], fields[1], lineNumber);
+                    }
+                    break;
+                case "ARISTA":
+                    requireFields(fields, 4, lineNumber);
+                    double percentage;
+                    try {
+                        percentage = Double.parseDouble(fields[3].replace(',', '.'));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Línea " + lineNumber + ": porcentaje inválido: " + fields[3]);
+                    }
+                    if (percentage <= 0 || percentage > 100) {
+                        throw new IllegalArgumentException("Línea " + lineNumber
+                            + ": el porcentaje debe estar entre 0 y 100: " + fields[3]);
+                    }
+                    if (lookupKey(fields[1]).equals(lookupKey(fields[2]))) {
+                        throw new IllegalArgumentException("Línea " + lineNumber
+                            + ": una entidad no puede ser accionista de sí misma: " + fields[1]);
+                    }
+                    edges.put(relationKey(fields[1], fields[2]), new Edge(fields[1], fields[2], percentage));
+                    break;
+                case "DESCARTAR":
+                    requireFields(fields, 3, lineNumber);
+                    if (fields[1].equals(ANY) && fields[2].equals(ANY)) {
+                        throw new IllegalArgumentException("Línea " + lineNumber + ": DESCARTAR no puede usar * en ambos campos");
+                    } else if (fields[2].equals(ANY)) {
+                        droppedEntities.add(lookupKey(fields[1]));
+                    } else if (fields[1].equals(ANY)) {
+                        droppedOwners.add(lookupKey(fields[2]));
+                    } else {
+                        droppedRelations.add(relationKey(fields[1], fields[2]));
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Línea " + lineNumber + ": regla desconocida: " + fields[0]);
+            }
+        }
+
+        resolveRenameChains(renames);
+        String fingerprint = sha256(String.join("\n", lines));
+        return new CorrectionRules(renames, edges, droppedRelations, droppedEntities, droppedOwners, fingerprint);
+    }
+
+    /**
+     * SHA-256 en hexadecimal, igual que las claves de {@link OwnershipResultCache}.
+     */
+    private static String sha256(String text) {
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no está disponible", e);
+        }
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static void requireFields(String[] fields, int expected, int lineNumber) {
+        if (fields.length != expected) {
+            throw new IllegalArgumentException(String.format("Línea %d: %s requiere %d campos y tiene %d",
+                lineNumber, fields[0].toUpperCase(Locale.ROOT), expected - 1, fields.length - 1));
+        }
+    }
+
+    private static void putRename(Map<String, String> renames, String from, String to, int lineNumber) {
+        String previous = renames.put(lookupKey(from), to);
+        if (previous != null && !previous.equals(to)) {
+            throw new IllegalArgumentException("Línea " + lineNumber + ": '" + from
+                + "' ya se renombra a '" + previous + "'");
+        }
+    }
+
+    /**
+     * Sigue las cadenas de renombres (A → B, B → C) para que cada nombre se corrija
+     * con una sola búsqueda.
+     */
+    private static void resolveRenameChains(Map<String, String> renames) {
+        for (Map.Entry<String, String> rename : renames.entrySet()) {
+            String target = rename.getValue();
+            Set<String> visited = new HashSet<>();
+            visited.add(rename.getKey());
+            String next;
+            while ((next = renames.get(lookupKey(target))) != null && !lookupKey(next).equals(lookupKey(target))) {
+                if (!visited.add(lookupKey(target))) {
+                    throw new IllegalArgumentException("Los renombres forman un ciclo en '" + target + "'");
+                }
+                target = next;
+            }
+            rename.setValue(target);
+        }
+    }
+
+    static String lookupKey(String name) {
+        return SPACES.matcher(name.trim()).replaceAll(" ").toUpperCase(Locale.ROOT);
+    }
+
+    private static String relationKey(String entity, String owner) {
+        return lookupKey(entity) + '\u0000' + lookupKey(owner);
+    }
+
+    /**
+     * Inicia la aplicación de las reglas a una carga. Cada carga usa su propia sesión,
+     * que recuerda qué relaciones de {@code ARISTA} aparecieron en el archivo.
+     *
+     * @return sesión de corrección
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    /**
+     * Identificador del contenido de las reglas, para distinguir resultados obtenidos con
+     * reglas distintas.
+     *
+     * @return SHA-256 del archivo de reglas en hexadecimal
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public int getRuleCount() {
+        return renames.size() + edges.size() + droppedRelations.size() + droppedEntities.size() + droppedOwners.size();
+    }
+
+    /**
+     * Relación definida por una regla {@code ARISTA}.
+     */
+    public static final class Edge {
+        private final String entity;
+        private final String owner;
+        private final double percentage;
+
+        Edge(String entity, String owner, double percentage) {
+            this.entity = entity;
+            this.owner = owner;
+            this.percentage = percentage;
+        }
+
+        // Getters
+        public String getEntity() { return entity; }
+        public String getOwner() { return owner; }
+        public double getPercentage() { return percentage; }
+    }
+
+    /**
+     * Aplicación de las reglas a una carga concreta.
+     */
+    public final class Session {
+        private final Set<String> seenEdges = new HashSet<>();
+        private final Map<String, String> spellings = new HashMap<>(); // Nombres de ARISTA tal como aparecen en el archivo
+        private int renamedNames;
+        private int droppedRows;
+        private int overriddenRows;
+
+        private Session() {
+        }
+
+        /**
+         * Corrige un nombre según las reglas {@code RENOMBRAR} y {@code ALIAS}.
+         *
+         * @param name nombre leído
+         * @return nombre corregido, o el mismo si no hay regla
+         */
+        public String rename(String name) {
+            String key = lookupKey(name);
+            String renamed = renames.get(key);
+            if (renamed != null) {
+                renamedNames++;
+                name = renamed;
+                key = lookupKey(renamed);
+            }
+            if (edgeNames.contains(key)) {
+                spellings.putIfAbsent(key, name);
+            }
+            return name;
+        }
+
+        /**
+         * Escritura de un nombre tal como apareció por primera vez en el archivo (ya
+         * corregido), para que las relaciones agregadas usen la misma entidad.
+         *
+         * @param name nombre de una regla {@code ARISTA}
+         * @return nombre visto en el archivo, o el mismo si no apareció
+         */
+        public String spellingOf(String name) {
+            return spellings.getOrDefault(lookupKey(name), name);
+        }
+
+        /**
+         * Indica si una relación (con los nombres ya corregidos) debe omitirse.
+         */
+        public boolean isDropped(String entity, String owner) {
+            String entityKey = lookupKey(entity);
+            String ownerKey = lookupKey(owner);
+            if (droppedEntities.contains(entityKey) || droppedOwners.contains(ownerKey)
+                || droppedRelations.contains(entityKey + '\u0000' + ownerKey)) {
+                droppedRows++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Porcentaje definido por una regla {@code ARISTA} para la relación, que además
+         * queda marcada como presente en el archivo.
+         *
+         * @return porcentaje (0 - 100), o null si no hay regla para la relación
+         */
+        public Double overrideFor(String entity, String owner) {
+            String key = relationKey(entity, owner);
+            Edge edge = edges.get(key);
+            if (edge == null) {
+                return null;
+            }
+            seenEdges.add(key);
+            overriddenRows++;
+            return edge.getPercentage();
+        }
+
+        /**
+         * Relaciones de {@code ARISTA} que no aparecieron en el archivo y deben agregarse.
+         *
+         * @return relaciones pendientes en el orden del archivo de reglas
+         */
+        public List<Edge> missingEdges() {
+            List<Edge> missing = new ArrayList<>();
+            for (Map.Entry<String, Edge> edge : edges.entrySet()) {
+                if (!seenEdges.contains(edge.getKey())) {
+                    missing.add(edge.getValue());
+                }
+            }
+            return Collections.unmodifiableList(missing);
+        }
+
+        // Getters
+        public int getRenamedNames() { return renamedNames; }
+        public int getDroppedRows() { return droppedRows; }
+        public int getOverriddenRows() { return overriddenRows; }
+    }
+}
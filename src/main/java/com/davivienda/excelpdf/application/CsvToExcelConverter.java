@@ -1,15 +1,11 @@
 package com.davivienda.excelpdf.application;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Locale;
 
 import org.apache.poi.ss.usermodel.BorderStyle;
 import org.apache.poi.ss.usermodel.Cell;
@@ -23,10 +19,12 @@ import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.VerticalAlignment;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.davivienda.excelpdf.infrastructure.CsvRowReader;
+
 /**
  * Convertidor de archivos CSV a formato Excel (.xlsx)
  * Diseñado para procesar datos de composición accionaria
@@ -35,6 +33,15 @@ public class CsvToExcelConverter {
 
     private static final Logger logger = LoggerFactory.getLogger(CsvToExcelConverter.class);
 
+    /** Filas que se mantienen en memoria mientras se escribe el Excel. */
+    private static final int ROW_WINDOW_SIZE = 100;
+
+    /** Filas (contando el encabezado) con las que se estima el ancho de las columnas. */
+    private static final int WIDTH_SAMPLE_ROWS = 1000;
+
+    private static final int CHARACTER_WIDTH = 256; // Unidad de ancho de Excel: 1/256 de carácter
+    private static final int MAX_COLUMN_WIDTH = 255 * CHARACTER_WIDTH;
+
     /**
      * Convierte un archivo CSV a formato Excel y lo guarda junto al JAR
      * 
@@ -43,74 +50,48 @@ public class CsvToExcelConverter {
      * @throws IOException Si hay error en la lectura o escritura
      */
     public String convertCsvToExcel(String csvFilePath) throws IOException {
-        logger.info("Iniciando conversión de CSV a Excel: {}", csvFilePath);
-
-        // Leer el archivo CSV
-        List<String[]> csvData = readCsvFile(csvFilePath);
-        
-        if (csvData.isEmpty()) {
-            throw new IOException("El archivo CSV está vacío");
-        }
-
         // Obtener directorio del JAR para guardar el Excel
         String outputDir = getJarDirectory();
         String excelFileName = "data.xlsx";
-        String excelFilePath = Paths.get(outputDir, excelFileName).toString();
+        return convertCsvToExcel(csvFilePath, Paths.get(outputDir, excelFileName).toString());
+    }
 
-        // Crear archivo Excel
-        try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet sheet = workbook.createSheet("Datos");
-            
-            // Crear estilos
-            CellStyle headerStyle = createHeaderStyle(workbook);
-            CellStyle dataStyle = createDataStyle(workbook);
-            CellStyle percentageStyle = createPercentageStyle(workbook);
+    /**
+     * Convierte un archivo CSV a formato Excel y lo guarda en la ruta indicada.
+     * El análisis no necesita esta copia: {@link OwnershipCalculator#loadFromCsv(String)}
+     * lee el CSV directamente.
+     * 
+     * @param csvFilePath Ruta del archivo CSV origen
+     * @param excelFilePath Ruta del archivo Excel a generar
+     * @return Ruta del archivo Excel generado
+     * @throws IOException Si hay error en la lectura o escritura
+     */
+    public String convertCsvToExcel(String csvFilePath, String excelFilePath) throws IOException {
+        logger.info("Iniciando conversión de CSV a Excel: {}", csvFilePath);
 
-            // Escribir datos
-            for (int rowIndex = 0; rowIndex < csvData.size(); rowIndex++) {
-                Row row = sheet.createRow(rowIndex);
-                String[] rowData = csvData.get(rowIndex);
-                
-                for (int colIndex = 0; colIndex < rowData.length; colIndex++) {
-                    Cell cell = row.createCell(colIndex);
-                    String value = rowData[colIndex].trim();
-                    
-                    // Primera fila es encabezado
-                    if (rowIndex == 0) {
-                        cell.setCellValue(value);
-                        cell.setCellStyle(headerStyle);
-                    } else {
-                        // Intentar convertir a número si es posible
-                        if (colIndex == 2 && !value.isEmpty()) {
-                            // Columna C: porcentaje
-                            try {
-                                double numValue = parsePercentage(value);
-                                cell.setCellValue(numValue);
-                                cell.setCellStyle(percentageStyle);
-                            } catch (NumberFormatException e) {
-                                cell.setCellValue(value);
-                                cell.setCellStyle(dataStyle);
-                            }
-                        } else {
-                            // Texto
-                            cell.setCellValue(value);
-                            cell.setCellStyle(dataStyle);
-                        }
-                    }
-                }
+        // Crear archivo Excel; solo se mantienen en memoria las últimas filas escritas
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW_SIZE);
+        try {
+            SheetWriter writer = new SheetWriter(workbook);
+            
+            // Escribir datos a medida que se leen del CSV
+            int rowCount = CsvRowReader.read(new File(csvFilePath), writer);
+            
+            if (rowCount == 0) {
+                throw new IOException("El archivo CSV está vacío");
             }
 
-            // Ajustar ancho de columnas
-            for (int i = 0; i < csvData.get(0).length; i++) {
-                sheet.autoSizeColumn(i);
-                // Añadir un poco más de espacio
-                sheet.setColumnWidth(i, sheet.getColumnWidth(i) + 1000);
-            }
+            // Ajustar ancho de columnas según la muestra
+            writer.applyColumnWidths();
 
             // Guardar archivo
             try (FileOutputStream fileOut = new FileOutputStream(excelFilePath)) {
                 workbook.write(fileOut);
             }
+            logger.info("Filas escritas en Excel: {}", rowCount);
+        } finally {
+            workbook.close();
+            workbook.dispose();
         }
 
         logger.info("Conversión completada. Archivo guardado en: {}", excelFilePath);
@@ -118,85 +99,91 @@ public class CsvToExcelConverter {
     }
 
     /**
-     * Lee un archivo CSV y retorna sus datos como lista de arrays de strings
+     * Escribe en la hoja cada línea del CSV apenas se lee y estima el ancho de las columnas
+     * con las primeras filas. No usa {@code autoSizeColumn}, que mide cada celda con las
+     * fuentes de AWT y necesita todas las filas en memoria.
      */
-    private List<String[]> readCsvFile(String csvFilePath) throws IOException {
-        List<String[]> data = new ArrayList<>();
-        
-        // Detectar el delimitador del CSV
-        char delimiter = detectDelimiter(csvFilePath);
-        logger.info("Delimitador detectado: '{}'", delimiter);
+    private class SheetWriter implements CsvRowReader.RowHandler {
+        private final Sheet sheet;
+        private final CellStyle headerStyle;
+        private final CellStyle dataStyle;
+        private final CellStyle percentageStyle;
+        private int[] maxWidths = new int[0];
+        private int rowIndex;
 
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(new FileInputStream(csvFilePath), StandardCharsets.UTF_8))) {
+        SheetWriter(Workbook workbook) {
+            this.sheet = workbook.createSheet("Datos");
             
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Ignorar líneas vacías
-                if (line.trim().isEmpty()) {
-                    continue;
-                }
-                
-                String[] values = parseCsvLine(line, delimiter);
-                data.add(values);
-            }
+            // Crear estilos
+            this.headerStyle = createHeaderStyle(workbook);
+            this.dataStyle = createDataStyle(workbook);
+            this.percentageStyle = createPercentageStyle(workbook);
         }
 
-        logger.info("Leídas {} líneas del CSV", data.size());
-        return data;
-    }
-
-    /**
-     * Detecta el delimitador usado en el CSV (coma o punto y coma)
-     */
-    private char detectDelimiter(String csvFilePath) throws IOException {
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(new FileInputStream(csvFilePath), StandardCharsets.UTF_8))) {
+        @Override
+        public void onRow(CsvRowReader.CsvRow csvRow) {
+            Row row = sheet.createRow(rowIndex);
+            if (csvRow.size() > maxWidths.length) {
+                maxWidths = Arrays.copyOf(maxWidths, csvRow.size());
+            }
+            // Solo las primeras filas cuentan para el ancho de las columnas
+            boolean sampled = rowIndex < WIDTH_SAMPLE_ROWS;
             
-            String firstLine = reader.readLine();
-            if (firstLine == null) {
-                return ',';
+            for (int colIndex = 0; colIndex < csvRow.size(); colIndex++) {
+                Cell cell = row.createCell(colIndex);
+                String value = csvRow.getString(colIndex);
+                int width = value.length();
+                
+                // Primera fila es encabezado
+                if (rowIndex == 0) {
+                    cell.setCellValue(value);
+                    cell.setCellStyle(headerStyle);
+                    width = width + width / 10; // Negrita
+                } else {
+                    // Intentar convertir a número si es posible
+                    if (colIndex == 2 && !value.isEmpty()) {
+                        // Columna C: porcentaje
+                        try {
+                            double numValue = parsePercentage(value);
+                            cell.setCellValue(numValue);
+                            cell.setCellStyle(percentageStyle);
+                            if (sampled) {
+                                width = String.format(Locale.ROOT, "%.4f%%", numValue * 100).length();
+                            }
+                        } catch (NumberFormatException e) {
+                            cell.setCellValue(value);
+                            cell.setCellStyle(dataStyle);
+                        }
+                    } else {
+                        // Texto
+                        cell.setCellValue(value);
+                        cell.setCellStyle(dataStyle);
+                    }
+                }
+                
+                if (sampled) {
+                    maxWidths[colIndex] = Math.max(maxWidths[colIndex], width);
+                }
             }
-
-            // Contar comas y punto y comas
-            int commas = firstLine.length() - firstLine.replace(",", "").length();
-            int semicolons = firstLine.length() - firstLine.replace(";", "").length();
-
-            return semicolons > commas ? ';' : ',';
+            rowIndex++;
         }
-    }
-
-    /**
-     * Parsea una línea CSV considerando valores entre comillas
-     */
-    private String[] parseCsvLine(String line, char delimiter) {
-        List<String> values = new ArrayList<>();
-        StringBuilder currentValue = new StringBuilder();
-        boolean inQuotes = false;
 
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-
-            if (c == '"') {
-                inQuotes = !inQuotes;
-            } else if (c == delimiter && !inQuotes) {
-                values.add(currentValue.toString().trim());
-                currentValue.setLength(0);
-            } else {
-                currentValue.append(c);
+        /**
+         * Fija el ancho de cada columna según el texto más largo de la muestra.
+         */
+        void applyColumnWidths() {
+            for (int i = 0; i < maxWidths.length; i++) {
+                // Añadir un poco más de espacio, como el ajuste automático anterior
+                int width = (maxWidths[i] + 1) * CHARACTER_WIDTH + 1000;
+                sheet.setColumnWidth(i, Math.min(width, MAX_COLUMN_WIDTH));
             }
         }
-
-        // Agregar el último valor
-        values.add(currentValue.toString().trim());
-
-        return values.toArray(new String[0]);
     }
 
     /**
      * Parsea un valor de porcentaje (ej: "50%", "0.5", "50")
      */
-    private double parsePercentage(String value) {
+    static double parsePercentage(String value) {
         value = value.replace("%", "").replace(",", ".").trim();
         double numValue = Double.parseDouble(value);
         
@@ -0,0 +1,373 @@
+package com.davivienda.excelpdf.application;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Resolución de nombres de entidades escritos de distintas formas.
+ *
+ * <p>Cada nombre se normaliza (mayúsculas, sin tildes, sin puntos ni signos y con los
+ * espacios colapsados) y se le quitan las formas societarias finales ("S.A.S.", "LTDA",
+ * "INC", ...) para obtener su clave. Los nombres con la misma clave son la misma entidad.
+ * Las claves distintas se comparan por similitud de Dice sobre sus trigramas de
+ * caracteres: un índice invertido con filtrado por prefijo limita las comparaciones a los
+ * pares que pueden superar el umbral, así que el costo no crece con el cuadrado del
+ * número de entidades. Dos claves similares no se unen si difieren en sus números o en
+ * sus letras sueltas ("FONDO 1" y "FONDO 2"), que suelen distinguir entidades hermanas.
+ *
+ * <p>En cada grupo el nombre canónico es el que participa en más relaciones; a igualdad,
+ * el más corto y luego el primero en orden alfabético.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public class EntityNameResolver {
+
+    /** Similitud de Dice mínima por defecto entre las claves de dos nombres. */
+    public static final double DEFAULT_SIMILARITY = 0.85;
+
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^A-Z0-9]+");
+    private static final Set<String> LEGAL_FORMS = new HashSet<>(Arrays.asList(
+        "SA", "SAS", "LTDA", "LTD", "LIMITED", "LLC", "INC", "CORP", "CORPORATION",
+        "SL", "SRL", "BV", "NV", "AG", "GMBH", "PLC", "SCA", "SCS", "SENC", "EU"));
+
+    private final double similarityThreshold;
+
+    /**
+     * Constructor con el umbral de similitud por defecto.
+     */
+    public EntityNameResolver() {
+        this(DEFAULT_SIMILARITY);
+    }
+
+    /**
+     * Constructor del resolutor.
+     *
+     * @param similarityThreshold similitud de Dice mínima (0.0 - 1.0]; 1.0 une solo
+     *                            los nombres con la misma clave
+     */
+    public EntityNameResolver(double similarityThreshold) {
+        if (similarityThreshold <= 0.0 || similarityThreshold > 1.0) {
+            throw new IllegalArgumentException("El umbral de similitud debe estar entre 0 y 1");
+        }
+        this.similarityThreshold = similarityThreshold;
+    }
+
+    /**
+     * Normaliza un nombre: mayúsculas, sin tildes, sin puntos, demás signos como
+     * espacios y espacios colapsados. "Dra. Blue  G.O.W." queda como "DRA BLUE GOW".
+     *
+     * @param name nombre original
+     * @return nombre normalizado
+     */
+    public static String normalize(String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        String upper = ACCENTS.matcher(decomposed).replaceAll("").toUpperCase(Locale.ROOT).replace(".", "");
+        return SEPARATORS.matcher(upper).replaceAll(" ").trim();
+    }
+
+    /**
+     * Clave de comparación: el nombre normalizado sin formas societarias al final.
+     *
+     * @param name nombre original
+     * @return clave del nombre
+     */
+    public static String keyOf(String name) {
+        String normalized = normalize(name);
+        if (normalized.isEmpty()) {
+            return normalized;
+        }
+        List<String> tokens = new ArrayList<>(Arrays.asList(normalized.split(" ")));
+        while (tokens.size() > 1 && LEGAL_FORMS.contains(tokens.get(tokens.size() - 1))) {
+            tokens.remove(tokens.size() - 1);
+        }
+        return String.join(" ", tokens);
+    }
+
+    /**
+     * Agrupa los nombres que corresponden a la misma entidad.
+     *
+     * @param relationCounts nombre -> número de relaciones en que participa
+     * @return grupos encontrados y nombre canónico de cada alias
+     */
+    public Resolution resolve(Map<String, Integer> relationCounts) {
+        // Nombres agrupados por clave exacta
+        Map<String, List<String>> namesByKey = new LinkedHashMap<>();
+        for (String name : relationCounts.keySet()) {
+            String key = keyOf(name);
+            if (!key.isEmpty()) {
+                namesByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(name);
+            }
+        }
+        String[] keys = namesByKey.keySet().toArray(new String[0]);
+        int[] parent = new int[keys.length];
+        for (int k = 0; k < keys.length; k++) {
+            parent[k] = k;
+        }
+        if (similarityThreshold < 1.0) {
+            joinSimilarKeys(keys, parent);
+        }
+
+        // Grupos y nombre canónico de cada uno
+        Map<Integer, List<String>> groups = new LinkedHashMap<>();
+        for (int k = 0; k < keys.length; k++) {
+            groups.computeIfAbsent(find(parent, k), g -> new ArrayList<>()).addAll(namesByKey.get(keys[k]));
+        }
+        Comparator<String> preference = Comparator
+            .comparing((String name) -> relationCounts.getOrDefault(name, 0), Comparator.reverseOrder())
+            .thenComparingInt(String::length)
+            .thenComparing(Comparator.naturalOrder());
+
+        Map<String, String> aliases = new LinkedHashMap<>();
+        Map<Integer, String> canonicalByGroup = new HashMap<>();
+        List<List<String>> clusters = new ArrayList<>();
+        for (Map.Entry<Integer, List<String>> entry : groups.entrySet()) {
+            List<String> group = entry.getValue();
+            String canonical = Collections.min(group, preference);
+            canonicalByGroup.put(entry.getKey(), canonical);
+            for (String name : group) {
+                if (!name.equals(canonical)) {
+                    aliases.put(name, canonical);
+                }
+            }
+            if (group.size() > 1) {
+                List<String> cluster = new ArrayList<>(group);
+                cluster.remove(canonical);
+                cluster.add(0, canonical);
+                clusters.add(Collections.unmodifiableList(cluster));
+            }
+        }
+        Map<String, String> canonicalByKey = new HashMap<>();
+        for (int k = 0; k < keys.length; k++) {
+            canonicalByKey.put(keys[k], canonicalByGroup.get(find(parent, k)));
+        }
+        return new Resolution(aliases, canonicalByKey, clusters);
+    }
+
+    public double getSimilarityThreshold() {
+        return similarityThreshold;
+    }
+
+    /**
+     * Une las claves cuya similitud de Dice sobre trigramas alcanza el umbral.
+     * Con umbral de Dice t, dos conjuntos similares comparten al menos uno de los
+     * primeros |A| - ceil(t/(2-t)·|A|) + 1 trigramas de cada uno, ordenados del menos
+     * al más frecuente; solo esos prefijos se indexan y consultan. Como las claves con
+     * números o letras sueltas distintos nunca se unen, cada grupo de claves con los mismos
+     * se procesa con su propio índice.
+     */
+    private void joinSimilarKeys(String[] keys, int[] parent) {
+        // Grupos por números y letras sueltas; un grupo de una sola clave no se compara
+        Map<List<String>, Integer> groupIds = new HashMap<>();
+        int[] groupOf = new int[keys.length];
+        List<Integer> groupSizes = new ArrayList<>();
+        for (int k = 0; k < keys.length; k++) {
+            groupOf[k] = groupIds.computeIfAbsent(distinguishingTokens(keys[k]), g -> {
+                groupSizes.add(0);
+                return groupSizes.size() - 1;
+            });
+            groupSizes.set(groupOf[k], groupSizes.get(groupOf[k]) + 1);
+        }
+        List<Integer> candidates = new ArrayList<>();
+        for (int k = 0; k < keys.length; k++) {
+            if (groupSizes.get(groupOf[k]) > 1) {
+                candidates.add(k);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        Map<String, Integer> trigramIds = new HashMap<>();
+        List<Integer> frequencies = new ArrayList<>();
+        int[][] trigrams = new int[keys.length][];
+        for (int k : candidates) {
+            String padded = " " + keys[k] + " ";
+            Set<Integer> ids = new HashSet<>();
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                Integer id = trigramIds.computeIfAbsent(padded.substring(i, i + 3), t -> {
+                    frequencies.add(0);
+                    return frequencies.size() - 1;
+                });
+                if (ids.add(id)) {
+                    frequencies.set(id, frequencies.get(id) + 1);
+                }
+            }
+            trigrams[k] = ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // Renumerar los trigramas del menos al más frecuente
+        Integer[] byFrequency = new Integer[frequencies.size()];
+        for (int id = 0; id < byFrequency.length; id++) {
+            byFrequency[id] = id;
+        }
+        Arrays.sort(byFrequency, Comparator.comparingInt(frequencies::get));
+        int[] rank = new int[byFrequency.length];
+        for (int r = 0; r < byFrequency.length; r++) {
+            rank[byFrequency[r]] = r;
+        }
+        for (int k : candidates) {
+            int[] set = trigrams[k];
+            for (int i = 0; i < set.length; i++) {
+                set[i] = rank[set[i]];
+            }
+            Arrays.sort(set);
+        }
+        candidates.sort(Comparator.<Integer>comparingInt(k -> groupOf[k]).thenComparingInt(k -> trigrams[k].length));
+
+        double jaccard = similarityThreshold / (2.0 - similarityThreshold);
+        Map<Integer, Postings> index = new HashMap<>();
+        int[] seenBy = new int[keys.length];
+        Arrays.fill(seenBy, -1);
+        int currentGroup = -1;
+        for (int k : candidates) {
+            if (groupOf[k] != currentGroup) {
+                currentGroup = groupOf[k];
+                index.clear();
+            }
+            int[] set = trigrams[k];
+            int prefix = set.length - (int) Math.ceil(jaccard * set.length - 1e-9) + 1;
+            for (int i = 0; i < Math.min(prefix, set.length); i++) {
+                Postings postings = index.computeIfAbsent(set[i], t -> new Postings());
+                for (int p = 0; p < postings.size; p++) {
+                    int other = postings.keys[p];
+                    if (seenBy[other] == k) {
+                        continue;
+                    }
+                    // El primer trigrama común acota cuántos más pueden compartir
+                    seenBy[other] = k;
+                    int[] otherSet = trigrams[other];
+                    int required = (int) Math.ceil(similarityThreshold * (set.length + otherSet.length) / 2.0 - 1e-9);
+                    if (otherSet.length >= jaccard * set.length
+                        && sharesAtLeast(set, i, otherSet, postings.positions[p], required)) {
+                        union(parent, k, other);
+                    }
+                }
+                postings.add(k, i);
+            }
+        }
+    }
+
+    /**
+     * Indica si dos conjuntos ordenados comparten al menos {@code required} trigramas,
+     * sabiendo que el primero común está en las posiciones {@code i} y {@code j}. Se
+     * detiene en cuanto lo que queda por comparar ya no alcanza.
+     */
+    private static boolean sharesAtLeast(int[] a, int i, int[] b, int j, int required) {
+        int shared = 1;
+        i++;
+        j++;
+        while (i < a.length && j < b.length) {
+            if (shared + Math.min(a.length - i, b.length - j) < required) {
+                return false;
+            }
+            if (a[i] == b[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return shared >= required;
+    }
+
+    /**
+     * Números y letras sueltas de una clave, ordenados.
+     */
+    private static List<String> distinguishingTokens(String key) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : key.split(" ")) {
+            if (token.length() == 1 || token.chars().anyMatch(Character::isDigit)) {
+                tokens.add(token);
+            }
+        }
+        Collections.sort(tokens);
+        return tokens;
+    }
+
+    private static int find(int[] parent, int k) {
+        while (parent[k] != k) {
+            parent[k] = parent[parent[k]];
+            k = parent[k];
+        }
+        return k;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    /**
+     * Claves indexadas por un trigrama, con la posición del trigrama en cada clave.
+     */
+    private static final class Postings {
+        private int[] keys = new int[4];
+        private int[] positions = new int[4];
+        private int size;
+
+        void add(int key, int position) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            keys[size] = key;
+            positions[size] = position;
+            size++;
+        }
+    }
+
+    /**
+     * Resultado de la resolución: alias con su nombre canónico y grupos encontrados.
+     */
+    public static class Resolution {
+        private final Map<String, String> aliases;
+        private final Map<String, String> canonicalByKey;
+        private final List<List<String>> clusters;
+
+        Resolution(Map<String, String> aliases, Map<String, String> canonicalByKey, List<List<String>> clusters) {
+            this.aliases = Collections.unmodifiableMap(aliases);
+            this.canonicalByKey = canonicalByKey;
+            this.clusters = Collections.unmodifiableList(clusters);
+        }
+
+        /**
+         * Nombre canónico de un nombre cualquiera: el del grupo si el nombre fue
+         * resuelto o si su clave coincide con la de un grupo, o el mismo nombre si no.
+         *
+         * @param name nombre a resolver
+         * @return nombre canónico
+         */
+        public String canonicalOf(String name) {
+            String trimmed = name.trim();
+            String canonical = aliases.get(trimmed);
+            if (canonical != null) {
+                return canonical;
+            }
+            return canonicalByKey.getOrDefault(keyOf(trimmed), trimmed);
+        }
+
+        // Getters
+        public Map<String, String> getAliases() { return aliases; }
+        public List<List<String>> getClusters() { return clusters; }
+        public int getMergedCount() { return aliases.size(); }
+    }
+}
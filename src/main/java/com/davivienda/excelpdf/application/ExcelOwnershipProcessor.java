@@ -4,11 +4,16 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.davivienda.excelpdf.domain.OwnershipPath;
 import com.davivienda.excelpdf.infrastructure.PdfOwnershipReportGenerator;
 
 /**
@@ -24,6 +29,9 @@ public class ExcelOwnershipProcessor {
     
     private final OwnershipCalculator calculator;
     private final PdfOwnershipReportGenerator pdfGenerator;
+    private int pathsPerBeneficiary = 1; // 1 = solo la ruta calculada por el modo activo
+    private int maxPathDepth = 50;
+    private OwnershipResultCache resultCache; // null = sin caché
     
     /**
      * Constructor del procesador.
@@ -33,10 +41,44 @@ public class ExcelOwnershipProcessor {
         this.pdfGenerator = new PdfOwnershipReportGenerator();
     }
     
+    /**
+     * Configura cuántas rutas de participación se listan por beneficiario en el reporte.
+     * Con más de una, las rutas se enumeran de forma perezosa y cada una muestra su aporte.
+     * 
+     * @param pathsPerBeneficiary número máximo de rutas por beneficiario (al menos 1)
+     * @param maxPathDepth número máximo de relaciones por ruta
+     */
+    public void setPathLimits(int pathsPerBeneficiary, int maxPathDepth) {
+        if (pathsPerBeneficiary < 1 || maxPathDepth < 1) {
+            throw new IllegalArgumentException("Los límites de rutas y profundidad deben ser al menos 1");
+        }
+        this.pathsPerBeneficiary = pathsPerBeneficiary;
+        this.maxPathDepth = maxPathDepth;
+    }
+    
+    /**
+     * Configura una caché de resultados. Con caché, un análisis ya hecho sobre el mismo
+     * contenido de archivo, raíz y opciones genera el PDF sin volver a leer el Excel
+     * ni recalcular.
+     * 
+     * @param resultCache caché a usar, o null para desactivarla
+     */
+    public void setResultCache(OwnershipResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+    
+    /**
+     * @return caché de resultados configurada, o null si no hay
+     */
+    public OwnershipResultCache getResultCache() {
+        return resultCache;
+    }
+    
     /**
      * Procesa un archivo Excel y genera un reporte PDF con la composición accionaria.
+     * Un archivo con extensión .csv se lee directamente como CSV.
      * 
-     * @param excelPath ruta del archivo Excel de entrada
+     * @param excelPath ruta del archivo Excel (o CSV) de entrada
      * @param rootEntity nombre de la entidad raíz para el cálculo
      * @param outputPdfPath ruta del archivo PDF de salida
      * @return resultado del procesamiento con estadísticas
@@ -58,23 +100,64 @@ public class ExcelOwnershipProcessor {
         ProcessingResult.Builder resultBuilder = new ProcessingResult.Builder();
         
         try {
-            // Paso 1: Cargar datos desde Excel
-            logger.info(" Paso 1: Cargando datos desde Excel...");
-            calculator.loadFromExcel(excelPath);
-            resultBuilder.withGraphStatistics(calculator.getGraphStatistics());
-            logger.info(" Datos cargados exitosamente");
+            String cacheKey = null;
+            OwnershipResultCache.CachedAnalysis cached = null;
+            if (resultCache != null) {
+                cacheKey = resultCache.keyFor(Paths.get(excelPath), rootEntity, describeOptions());
+                cached = resultCache.get(cacheKey);
+            }
             
-            // Paso 2: Calcular participaciones finales
-            logger.info(" Paso 2: Calculando participaciones finales...");
-            calculator.calculateFinalOwnership(rootEntity);
+            Map<String, Double> finalResults;
+            Map<String, String> beneficiaryPaths;
+            double belowThresholdShare;
+            List<String> integrityNotes;
             
-            Map<String, Double> finalResults = calculator.getFinalResults();
-            Map<String, String> beneficiaryPaths = calculator.getBeneficiaryPaths();
+            if (cached != null) {
+                logger.info(" Pasos 1 y 2: resultado reutilizado de la caché");
+                finalResults = cached.getFinalResults();
+                beneficiaryPaths = cached.getBeneficiaryPaths();
+                belowThresholdShare = cached.getBelowThresholdShare();
+                integrityNotes = cached.getIntegrityNotes();
+                resultBuilder
+                    .withGraphStatistics(cached.getGraphStatistics())
+                    .withFromCache(true);
+            } else {
+                // Paso 1: Cargar datos desde Excel o CSV
+                if (isCsv(excelPath)) {
+                    logger.info(" Paso 1: Cargando datos desde CSV...");
+                    calculator.loadFromCsv(excelPath);
+                } else {
+                    logger.info(" Paso 1: Cargando datos desde Excel...");
+                    calculator.loadFromExcel(excelPath);
+                }
+                String graphStatistics = calculator.getGraphStatistics();
+                resultBuilder.withGraphStatistics(graphStatistics);
+                integrityNotes = calculator.getIntegrityReport().getSummaryLines();
+                logger.info(" Datos cargados exitosamente");
+                
+                // Paso 2: Calcular participaciones finales
+                logger.info(" Paso 2: Calculando participaciones finales...");
+                calculator.calculateFinalOwnership(rootEntity);
+                
+                finalResults = calculator.getFinalResults();
+                beneficiaryPaths = calculator.getBeneficiaryPaths();
+                if (pathsPerBeneficiary > 1) {
+                    beneficiaryPaths = renderAllPaths(rootEntity, finalResults);
+                }
+                belowThresholdShare = calculator.getBelowThresholdShare();
+                
+                if (resultCache != null) {
+                    resultCache.put(cacheKey, new OwnershipResultCache.CachedAnalysis(
+                        finalResults, beneficiaryPaths, graphStatistics, belowThresholdShare, integrityNotes));
+                }
+            }
             
             resultBuilder
                 .withFinalResults(finalResults)
                 .withBeneficiaryPaths(beneficiaryPaths)
-                .withRootEntity(rootEntity);
+                .withRootEntity(rootEntity)
+                .withBelowThresholdShare(belowThresholdShare)
+                .withIntegrityNotes(integrityNotes);
                 
             logger.info(" Cálculos completados. Beneficiarios encontrados: {}", finalResults.size());
             
@@ -84,7 +167,9 @@ public class ExcelOwnershipProcessor {
                 finalResults, 
                 beneficiaryPaths, 
                 rootEntity, 
-                outputPdfPath
+                outputPdfPath,
+                belowThresholdShare,
+                integrityNotes
             );
             
             // Verificar que el PDF se generó correctamente
@@ -109,6 +194,9 @@ public class ExcelOwnershipProcessor {
             resultBuilder.withProcessingTime(processingTime);
             
             ProcessingResult result = resultBuilder.build();
+            if (resultCache != null) {
+                logger.info("{}", resultCache.getStatistics());
+            }
             
             logger.info("=== Procesamiento completado exitosamente ===");
             logger.info("Tiempo total: {} ms", processingTime);
@@ -123,6 +211,57 @@ public class ExcelOwnershipProcessor {
         }
     }
     
+    /**
+     * Construye el texto de las rutas de cada beneficiario, hasta el límite configurado,
+     * con el porcentaje que aporta cada una.
+     */
+    private Map<String, String> renderAllPaths(String rootEntity, Map<String, Double> finalResults) {
+        Map<String, String> renderedPaths = new HashMap<>();
+        OwnershipPathIterator paths = null; // Un solo iterador para todos los beneficiarios
+        for (String beneficiary : finalResults.keySet()) {
+            if (paths == null) {
+                paths = calculator.pathIterator(rootEntity, beneficiary, pathsPerBeneficiary + 1, maxPathDepth);
+            } else {
+                paths.reset(beneficiary);
+            }
+            StringBuilder text = new StringBuilder();
+            int count = 0;
+            while (paths.hasNext() && count < pathsPerBeneficiary) {
+                OwnershipPath path = paths.next();
+                if (count++ > 0) {
+                    text.append('\n');
+                }
+                text.append(path).append(String.format(Locale.ROOT, " (%.4f%%)", path.getPercentage() * 100));
+            }
+            if (paths.hasNext()) {
+                text.append("\n… otras rutas omitidas (límite ").append(pathsPerBeneficiary).append(')');
+            }
+            if (paths.isDepthLimited()) {
+                text.append("\n… rutas con más de ").append(maxPathDepth).append(" niveles omitidas");
+            }
+            renderedPaths.put(beneficiary, text.toString());
+        }
+        return renderedPaths;
+    }
+    
+    /**
+     * Describe las opciones que cambian el resultado, para la clave de caché.
+     */
+    private String describeOptions() {
+        return String.format(Locale.ROOT, "modo=%s;umbral=%s;tolerancia=%s;iteraciones=%d;rutas=%d;profundidad=%d;nombres=%s;reglas=%s",
+                             calculator.getCalculationMode(), calculator.getBeneficiaryThreshold(),
+                             calculator.getSolverTolerance(), calculator.getSolverMaxIterations(),
+                             pathsPerBeneficiary, maxPathDepth,
+                             (calculator.getEntityNameResolver() == null) ? "no"
+                                 : calculator.getEntityNameResolver().getSimilarityThreshold(),
+                             (calculator.getCorrectionRules() == null) ? "no"
+                                 : calculator.getCorrectionRules().getFingerprint());
+    }
+    
+    private static boolean isCsv(String path) {
+        return path.toLowerCase(Locale.ROOT).endsWith(".csv");
+    }
+    
     /**
      * Valida los parámetros de entrada.
      */
@@ -151,8 +290,8 @@ public class ExcelOwnershipProcessor {
         
         // Verificar extensión del archivo Excel
         String fileName = excelFile.getFileName().toString().toLowerCase();
-        if (!fileName.endsWith(".xlsx")) {
-            throw new IllegalArgumentException("El archivo debe tener extensión .xlsx: " + excelPath);
+        if (!fileName.endsWith(".xlsx") && !isCsv(fileName)) {
+            throw new IllegalArgumentException("El archivo debe tener extensión .xlsx o .csv: " + excelPath);
         }
         
         // Verificar que el directorio de salida existe o se puede crear
@@ -186,6 +325,9 @@ public class ExcelOwnershipProcessor {
         private final long pdfSize;
         private final long processingTime;
         private final String graphStatistics;
+        private final double belowThresholdShare;
+        private final boolean fromCache;
+        private final List<String> integrityNotes;
         
         private ProcessingResult(Builder builder) {
             this.finalResults = builder.finalResults;
@@ -195,6 +337,9 @@ public class ExcelOwnershipProcessor {
             this.pdfSize = builder.pdfSize;
             this.processingTime = builder.processingTime;
             this.graphStatistics = builder.graphStatistics;
+            this.belowThresholdShare = builder.belowThresholdShare;
+            this.fromCache = builder.fromCache;
+            this.integrityNotes = builder.integrityNotes;
         }
         
         // Getters
@@ -205,6 +350,9 @@ public class ExcelOwnershipProcessor {
         public long getPdfSize() { return pdfSize; }
         public long getProcessingTime() { return processingTime; }
         public String getGraphStatistics() { return graphStatistics; }
+        public double getBelowThresholdShare() { return belowThresholdShare; }
+        public boolean isFromCache() { return fromCache; }
+        public List<String> getIntegrityNotes() { return integrityNotes; }
         
         /**
          * Builder para crear resultados de procesamiento.
@@ -217,6 +365,9 @@ public class ExcelOwnershipProcessor {
             private long pdfSize;
             private long processingTime;
             private String graphStatistics;
+            private double belowThresholdShare;
+            private boolean fromCache;
+            private List<String> integrityNotes = Collections.emptyList();
             
             public Builder withFinalResults(Map<String, Double> finalResults) {
                 this.finalResults = finalResults;
@@ -253,6 +404,21 @@ public class ExcelOwnershipProcessor {
                 return this;
             }
             
+            public Builder withBelowThresholdShare(double belowThresholdShare) {
+                this.belowThresholdShare = belowThresholdShare;
+                return this;
+            }
+            
+            public Builder withFromCache(boolean fromCache) {
+                this.fromCache = fromCache;
+                return this;
+            }
+            
+            public Builder withIntegrityNotes(List<String> integrityNotes) {
+                this.integrityNotes = integrityNotes;
+                return this;
+            }
+            
             public ProcessingResult build() {
                 return new ProcessingResult(this);
             }
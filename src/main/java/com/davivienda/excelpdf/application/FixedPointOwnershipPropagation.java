@@ -0,0 +1,290 @@
+package com.davivienda.excelpdf.application;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.davivienda.excelpdf.domain.OwnershipGraph;
+
+/**
+ * Propagación de participaciones en aritmética de punto fijo.
+ *
+ * <p>Los porcentajes acumulados se representan como {@code long} en unidades de
+ * {@link #SHARE_UNIT} (1e-12) y los porcentajes directos en unidades de
+ * {@link #WEIGHT_UNIT} (1e-6, es decir una diezmilésima de punto porcentual).
+ * Cada aporte se redondea al entero más cercano, por lo que el resultado no depende
+ * del orden de las sumas: es idéntico entre ejecuciones y equipos. Los valores solo se
+ * convierten a {@code double} al entregar los resultados.
+ *
+ * <p>La propagación sigue el grafo condensado en orden topológico. Dentro de un ciclo
+ * se itera con Gauss-Seidel desde cero; como todos los aportes son no negativos, los
+ * valores solo crecen y la iteración termina cuando ningún miembro cambia. Un ciclo que
+ * no cede nada hacia fuera no se itera, y los valores se saturan en
+ * {@link #MAX_SHARE} si un ciclo reparte más de lo que recibe.
+ *
+ * <p>Los arreglos de trabajo se crean una sola vez por instancia y al empezar cada
+ * cálculo solo se limpian las entidades alcanzadas en el anterior, así que una consulta
+ * no reserva memoria salvo para el mapa de resultados. Por lo mismo una instancia no
+ * debe usarse desde varios hilos a la vez.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public class FixedPointOwnershipPropagation {
+
+    private static final Logger logger = LoggerFactory.getLogger(FixedPointOwnershipPropagation.class);
+
+    /** Unidades de punto fijo por 100% en los porcentajes acumulados. */
+    public static final long SHARE_UNIT = 1_000_000_000_000L;
+
+    /** Unidades de punto fijo por 100% en los porcentajes directos. */
+    public static final long WEIGHT_UNIT = 1_000_000L;
+
+    /** Valor máximo de un porcentaje acumulado (un millón de veces el 100%). */
+    static final long MAX_SHARE = SHARE_UNIT * WEIGHT_UNIT;
+
+    private final OwnershipGraph ownershipGraph;
+    private final OwnershipCondensation condensation;
+    private final int maxIterations;
+
+    // Arreglos de trabajo reutilizados entre cálculos
+    private final int[] pendingIncoming;
+    private final boolean[] reached;
+    private final int[] reachedIds;
+    private final long[] accumulated;
+    private final long[] dominantContribution;
+    private final int[] dominantParent;
+    private final boolean[] onDominantPath;
+    private final int[] ready;
+    private final long[] inflow;
+    private int reachedCount;
+
+    /**
+     * Constructor de la propagación.
+     *
+     * @param condensation condensación del grafo a recorrer
+     * @param maxIterations iteraciones máximas dentro de un ciclo
+     */
+    public FixedPointOwnershipPropagation(OwnershipCondensation condensation, int maxIterations) {
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("El número máximo de iteraciones debe ser al menos 1");
+        }
+        this.ownershipGraph = condensation.getOwnershipGraph();
+        this.condensation = condensation;
+        this.maxIterations = maxIterations;
+
+        int size = ownershipGraph.size();
+        int componentCount = condensation.componentCount();
+        int largestComponent = 0;
+        for (int component = 0; component < componentCount; component++) {
+            largestComponent = Math.max(largestComponent,
+                condensation.componentEnd(component) - condensation.componentStart(component));
+        }
+        this.pendingIncoming = new int[componentCount];
+        this.reached = new boolean[size];
+        this.onDominantPath = new boolean[size];
+        this.reachedIds = new int[size];
+        this.accumulated = new long[size];
+        this.dominantContribution = new long[size];
+        this.dominantParent = new int[size];
+        Arrays.fill(dominantParent, -1);
+        this.ready = new int[componentCount];
+        this.inflow = new long[largestComponent];
+    }
+
+    /**
+     * Calcula los beneficiarios finales alcanzables desde la raíz.
+     *
+     * @param rootId identificador del nodo raíz
+     * @param rootEntityName nombre de la raíz tal como se usa en las rutas
+     * @param finalResults mapa donde se registran los beneficiarios finales
+     * @param beneficiaryPaths mapa donde se registra la ruta de mayor aporte
+     */
+    public void calculate(int rootId, String rootEntityName,
+                          Map<String, Double> finalResults, Map<String, String> beneficiaryPaths) {
+        clearPreviousCalculation();
+
+        // Subgrafo alcanzable y relaciones pendientes entre componentes
+        reached[rootId] = true;
+        reachedIds[reachedCount++] = rootId;
+        for (int next = 0; next < reachedCount; next++) {
+            int current = reachedIds[next];
+            int component = condensation.componentOf(current);
+            for (int edge = ownershipGraph.ownerStart(current); edge < ownershipGraph.ownerEnd(current); edge++) {
+                int owner = ownershipGraph.ownerIdAt(edge);
+                if (condensation.componentOf(owner) != component) {
+                    pendingIncoming[condensation.componentOf(owner)]++;
+                }
+                if (!reached[owner]) {
+                    reached[owner] = true;
+                    reachedIds[reachedCount++] = owner;
+                }
+            }
+        }
+
+        int head = 0;
+        int tail = 0;
+        accumulated[rootId] = SHARE_UNIT;
+        ready[tail++] = condensation.componentOf(rootId);
+
+        while (head < tail) {
+            int component = ready[head++];
+            if (condensation.isCyclic(component)) {
+                resolveCycle(component);
+            }
+
+            for (int pos = condensation.componentStart(component); pos < condensation.componentEnd(component); pos++) {
+                int node = condensation.memberAt(pos);
+                if (!ownershipGraph.hasOwners(node)) {
+                    finalResults.put(ownershipGraph.nameOf(node), (double) accumulated[node] / SHARE_UNIT);
+                    continue;
+                }
+                for (int edge = ownershipGraph.ownerStart(node); edge < ownershipGraph.ownerEnd(node); edge++) {
+                    int owner = ownershipGraph.ownerIdAt(edge);
+                    int ownerComponent = condensation.componentOf(owner);
+                    if (ownerComponent == component) {
+                        continue;
+                    }
+                    long contribution = contribution(accumulated[node], edge);
+                    accumulated[owner] = saturatedAdd(accumulated[owner], contribution);
+                    if (dominantParent[owner] < 0 || contribution > dominantContribution[owner]) {
+                        dominantContribution[owner] = contribution;
+                        dominantParent[owner] = node;
+                    }
+                    if (--pendingIncoming[ownerComponent] == 0) {
+                        ready[tail++] = ownerComponent;
+                    }
+                }
+            }
+        }
+
+        for (String beneficiary : finalResults.keySet()) {
+            beneficiaryPaths.put(beneficiary, OwnershipQueryService.buildDominantPath(
+                ownershipGraph.idOf(beneficiary), rootId, dominantParent, onDominantPath, ownershipGraph::nameOf,
+                rootEntityName));
+        }
+    }
+
+    /**
+     * Deja en cero los valores de las entidades alcanzadas en el cálculo anterior.
+     */
+    private void clearPreviousCalculation() {
+        for (int i = 0; i < reachedCount; i++) {
+            int id = reachedIds[i];
+            reached[id] = false;
+            accumulated[id] = 0L;
+            dominantContribution[id] = 0L;
+            dominantParent[id] = -1;
+            pendingIncoming[condensation.componentOf(id)] = 0;
+        }
+        reachedCount = 0;
+    }
+
+    /**
+     * Reparte dentro de un ciclo lo que llega desde fuera. Al llamar, {@code accumulated}
+     * contiene para cada miembro solo lo recibido desde otras componentes.
+     */
+    private void resolveCycle(int component) {
+        int first = condensation.componentStart(component);
+        int last = condensation.componentEnd(component);
+        String cycleName = ownershipGraph.nameOf(condensation.memberAt(first));
+        if (!cedesOutside(component)) {
+            // Lo que entra nunca llega a un beneficiario; iterar solo haría crecer los valores
+            logger.warn("El ciclo que contiene a {} no cede participación hacia fuera", cycleName);
+            return;
+        }
+        for (int pos = first; pos < last; pos++) {
+            int node = condensation.memberAt(pos);
+            inflow[pos - first] = accumulated[node];
+            accumulated[node] = 0L;
+        }
+
+        int iterations = 0;
+        boolean changed = true;
+        boolean saturated = false;
+        while (changed && !saturated && iterations < maxIterations) {
+            changed = false;
+            for (int pos = first; pos < last; pos++) {
+                int node = condensation.memberAt(pos);
+                long value = inflow[pos - first];
+                for (int k = ownershipGraph.ownedStart(node); k < ownershipGraph.ownedEnd(node); k++) {
+                    int owned = ownershipGraph.ownedIdAt(k);
+                    if (condensation.componentOf(owned) == component) {
+                        value = saturatedAdd(value, scale(accumulated[owned], ownershipGraph.ownedWeightAt(k)));
+                    }
+                }
+                if (value != accumulated[node]) {
+                    accumulated[node] = value;
+                    changed = true;
+                }
+                saturated |= (value == MAX_SHARE);
+            }
+            iterations++;
+        }
+        if (saturated) {
+            logger.warn("El ciclo que contiene a {} reparte más de lo que recibe; valores saturados tras {} iteraciones",
+                       cycleName, iterations);
+        } else if (changed) {
+            logger.warn("El ciclo que contiene a {} no se estabilizó en {} iteraciones", cycleName, iterations);
+        }
+
+        // Aportes internos como candidatos a predecesor de mayor aporte
+        for (int pos = first; pos < last; pos++) {
+            int node = condensation.memberAt(pos);
+            for (int edge = ownershipGraph.ownerStart(node); edge < ownershipGraph.ownerEnd(node); edge++) {
+                int owner = ownershipGraph.ownerIdAt(edge);
+                if (owner == node || condensation.componentOf(owner) != component) {
+                    continue;
+                }
+                long contribution = contribution(accumulated[node], edge);
+                if (dominantParent[owner] < 0 || contribution > dominantContribution[owner]) {
+                    dominantContribution[owner] = contribution;
+                    dominantParent[owner] = node;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true si algún miembro del ciclo tiene accionistas fuera de él
+     */
+    private boolean cedesOutside(int component) {
+        for (int pos = condensation.componentStart(component); pos < condensation.componentEnd(component); pos++) {
+            int node = condensation.memberAt(pos);
+            for (int edge = ownershipGraph.ownerStart(node); edge < ownershipGraph.ownerEnd(node); edge++) {
+                if (condensation.componentOf(ownershipGraph.ownerIdAt(edge)) != component) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private long contribution(long share, int edge) {
+        return scale(share, ownershipGraph.weightAt(edge));
+    }
+
+    /**
+     * Multiplica un porcentaje acumulado por un porcentaje directo, redondeando al
+     * entero más cercano en unidades de {@link #SHARE_UNIT}. El porcentaje acumulado se
+     * divide en múltiplos de {@link #WEIGHT_UNIT} y resto, de modo que el producto es
+     * exacto sin desbordar: {@code (q·U + r)·w / U = q·w + (r·w + U/2) / U}.
+     */
+    static long scale(long share, double weight) {
+        long fixedWeight = Math.round(weight * WEIGHT_UNIT);
+        long quotient = share / WEIGHT_UNIT;
+        long remainder = share % WEIGHT_UNIT;
+        return Math.min(Math.multiplyExact(quotient, fixedWeight) + (remainder * fixedWeight + WEIGHT_UNIT / 2) / WEIGHT_UNIT,
+                        MAX_SHARE);
+    }
+
+    /**
+     * Suma dos porcentajes acumulados (cada uno hasta {@link #MAX_SHARE}) sin pasar de
+     * {@link #MAX_SHARE}.
+     */
+    private static long saturatedAdd(long a, long b) {
+        return Math.min(a + b, MAX_SHARE);
+    }
+}
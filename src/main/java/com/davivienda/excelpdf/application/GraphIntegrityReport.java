@@ -0,0 +1,288 @@
+package com.davivienda.excelpdf.application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.davivienda.excelpdf.domain.OwnershipGraph;
+
+/**
+ * Reporte de integridad del grafo de participaciones.
+ *
+ * <p>Las verificaciones por entidad (participaciones repartidas de más o de menos y
+ * entidades sin relaciones) recorren el grafo compacto en paralelo: cada tarea revisa un
+ * rango de identificadores y devuelve sus conteos y las primeras muestras, que se
+ * combinan en orden, así que el reporte es el mismo con cualquier número de hilos. Las
+ * relaciones repetidas y las participaciones de una entidad sobre sí misma se detectan
+ * al leer el archivo, porque el grafo ya no las conserva, y se registran en
+ * {@link LoadIssues}.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public class GraphIntegrityReport {
+
+    /** Número máximo de ejemplos guardados por verificación. */
+    public static final int MAX_SAMPLES = 10;
+
+    private static final double OVERSUBSCRIBED_LIMIT = 1.01; // Igual que Node.validateOwnership
+    private static final double UNDERSUBSCRIBED_LIMIT = 0.99;
+    private static final int SEQUENTIAL_THRESHOLD = 4096;
+
+    /**
+     * Verificaciones incluidas en el reporte.
+     */
+    public enum Check {
+        OVERSUBSCRIBED("Entidades con más del 100% repartido"),
+        UNDERSUBSCRIBED("Entidades con menos del 100% repartido"),
+        ORPHAN("Entidades sin relaciones"),
+        DUPLICATE_EDGE("Relaciones repetidas (se conserva la última)"),
+        SELF_LOOP("Participaciones de una entidad sobre sí misma (descartadas)");
+
+        private final String description;
+
+        Check(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final Map<Check, Integer> counts;
+    private final Map<Check, List<String>> samples;
+    private final int entityCount;
+
+    private GraphIntegrityReport(Tally tally, int entityCount) {
+        this.counts = new EnumMap<>(Check.class);
+        this.samples = new EnumMap<>(Check.class);
+        for (Check check : Check.values()) {
+            counts.put(check, tally.counts[check.ordinal()]);
+            samples.put(check, Collections.unmodifiableList(tally.samples.get(check.ordinal())));
+        }
+        this.entityCount = entityCount;
+    }
+
+    /**
+     * Verifica el grafo en paralelo y combina el resultado con lo detectado en la carga.
+     *
+     * @param ownershipGraph grafo compacto a verificar
+     * @param loadIssues problemas registrados al leer el archivo, o null si no hubo lectura
+     * @param parallelism número de hilos
+     * @return reporte de integridad
+     */
+    public static GraphIntegrityReport validate(OwnershipGraph ownershipGraph, LoadIssues loadIssues, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("El paralelismo debe ser al menos 1");
+        }
+        Tally tally;
+        if (parallelism == 1 || ownershipGraph.size() <= SEQUENTIAL_THRESHOLD) {
+            tally = checkRange(ownershipGraph, 0, ownershipGraph.size());
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                tally = pool.invoke(new RangeTask(ownershipGraph, 0, ownershipGraph.size()));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        if (loadIssues != null) {
+            tally.merge(loadIssues.tally);
+        }
+        return new GraphIntegrityReport(tally, ownershipGraph.size());
+    }
+
+    private static Tally checkRange(OwnershipGraph ownershipGraph, int from, int to) {
+        Tally tally = new Tally();
+        for (int id = from; id < to; id++) {
+            if (!ownershipGraph.hasOwners(id)) {
+                if (ownershipGraph.ownedStart(id) == ownershipGraph.ownedEnd(id)) {
+                    tally.record(Check.ORPHAN, ownershipGraph.nameOf(id));
+                }
+                continue;
+            }
+            double total = 0.0;
+            for (int edge = ownershipGraph.ownerStart(id); edge < ownershipGraph.ownerEnd(id); edge++) {
+                total += ownershipGraph.weightAt(edge);
+            }
+            Check check = (total > OVERSUBSCRIBED_LIMIT) ? Check.OVERSUBSCRIBED
+                : (total < UNDERSUBSCRIBED_LIMIT) ? Check.UNDERSUBSCRIBED : null;
+            if (check != null && tally.count(check)) {
+                tally.addSample(check, describe(ownershipGraph.nameOf(id), total));
+            }
+        }
+        return tally;
+    }
+
+    private static String describe(String name, double share) {
+        return String.format(Locale.ROOT, "%s (%.2f%%)", name, share * 100);
+    }
+
+    /**
+     * Divide el rango de entidades en mitades hasta un tamaño que conviene revisar en secuencia.
+     */
+    private static class RangeTask extends RecursiveTask<Tally> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient OwnershipGraph ownershipGraph;
+        private final int from;
+        private final int to;
+
+        RangeTask(OwnershipGraph ownershipGraph, int from, int to) {
+            this.ownershipGraph = ownershipGraph;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                return checkRange(ownershipGraph, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask right = new RangeTask(ownershipGraph, middle, to);
+            right.fork();
+            Tally left = new RangeTask(ownershipGraph, from, middle).compute();
+            left.merge(right.join());
+            return left;
+        }
+    }
+
+    /**
+     * Conteos y primeras muestras por verificación.
+     */
+    private static class Tally {
+        private final int[] counts = new int[Check.values().length];
+        private final List<List<String>> samples = new ArrayList<>();
+
+        Tally() {
+            for (int i = 0; i < counts.length; i++) {
+                samples.add(new ArrayList<>());
+            }
+        }
+
+        void record(Check check, String sample) {
+            if (count(check)) {
+                addSample(check, sample);
+            }
+        }
+
+        /**
+         * Cuenta un caso sin guardarlo; el texto del ejemplo solo se arma si hace falta.
+         *
+         * @return true si todavía caben ejemplos de esa verificación
+         */
+        boolean count(Check check) {
+            counts[check.ordinal()]++;
+            return samples.get(check.ordinal()).size() < MAX_SAMPLES;
+        }
+
+        void addSample(Check check, String sample) {
+            samples.get(check.ordinal()).add(sample);
+        }
+
+        void merge(Tally other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+                List<String> checkSamples = samples.get(i);
+                for (String sample : other.samples.get(i)) {
+                    if (checkSamples.size() == MAX_SAMPLES) {
+                        break;
+                    }
+                    checkSamples.add(sample);
+                }
+            }
+        }
+    }
+
+    /**
+     * Problemas detectados mientras se leen las filas, antes de construir el grafo.
+     */
+    public static class LoadIssues {
+        private final Tally tally = new Tally();
+
+        /**
+         * Registra una relación que aparece de nuevo y reemplaza a la anterior.
+         */
+        public void recordDuplicateEdge(String entity, String owner, double previous, double current) {
+            if (tally.count(Check.DUPLICATE_EDGE)) {
+                tally.addSample(Check.DUPLICATE_EDGE, String.format(Locale.ROOT, "%s ← %s (%.2f%% reemplazado por %.2f%%)",
+                                                                    entity, owner, previous * 100, current * 100));
+            }
+        }
+
+        /**
+         * Registra una participación de una entidad sobre sí misma.
+         */
+        public void recordSelfLoop(String entity, double percentage) {
+            if (tally.count(Check.SELF_LOOP)) {
+                tally.addSample(Check.SELF_LOOP, describe(entity, percentage));
+            }
+        }
+
+        /**
+         * Agrega conteos y ejemplos guardados de una carga anterior, por ejemplo en una
+         * instantánea del grafo.
+         */
+        public void restore(Check check, int count, List<String> checkSamples) {
+            Tally restored = new Tally();
+            restored.counts[check.ordinal()] = count;
+            restored.samples.get(check.ordinal()).addAll(checkSamples);
+            tally.merge(restored);
+        }
+
+        // Getters
+        public int getCount(Check check) { return tally.counts[check.ordinal()]; }
+        public List<String> getSamples(Check check) {
+            return Collections.unmodifiableList(tally.samples.get(check.ordinal()));
+        }
+    }
+
+    /**
+     * Líneas de resumen con las verificaciones que encontraron problemas, para la consola
+     * y el PDF.
+     *
+     * @return una línea por verificación con problemas; vacía si el grafo no tiene observaciones
+     */
+    public List<String> getSummaryLines() {
+        List<String> lines = new ArrayList<>();
+        for (Check check : Check.values()) {
+            int count = counts.get(check);
+            if (count == 0) {
+                continue;
+            }
+            List<String> checkSamples = samples.get(check);
+            String more = (count > checkSamples.size()) ? String.format(" ... y %d más", count - checkSamples.size()) : "";
+            lines.add(String.format("%s: %d (%s%s)", check.getDescription(), count, String.join(", ", checkSamples), more));
+        }
+        return lines;
+    }
+
+    public boolean isClean() {
+        return getTotalIssues() == 0;
+    }
+
+    public int getTotalIssues() {
+        return counts.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    // Getters
+    public int getCount(Check check) { return counts.get(check); }
+    public List<String> getSamples(Check check) { return samples.get(check); }
+    public int getEntityCount() { return entityCount; }
+
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder(String.format("Integridad del grafo (%d entidades):", entityCount));
+        for (Check check : Check.values()) {
+            summary.append(String.format(" %s=%d", check.name(), counts.get(check)));
+        }
+        return summary.toString();
+    }
+}
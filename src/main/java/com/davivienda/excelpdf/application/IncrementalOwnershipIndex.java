@@ -0,0 +1,353 @@
+package com.davivienda.excelpdf.application;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.davivienda.excelpdf.domain.Node;
+
+/**
+ * Resultados de beneficiarios finales por entidad que se mantienen al día ante
+ * cambios puntuales en las relaciones de propiedad.
+ *
+ * <p>Cada entidad guarda su vector de beneficiarios y el índice inverso de las
+ * entidades de las que es accionista. Cuando cambian los propietarios de una entidad,
+ * solo ella y las entidades que la tienen como accionista (directa o indirectamente)
+ * se invalidan y se recalculan en orden topológico a partir de los vectores vigentes;
+ * el resto de resultados no se toca. Las entidades afectadas que quedan en un ciclo o
+ * detrás de uno se agrupan en componentes fuertemente conexas, como en
+ * {@link OwnershipCondensation}, y cada ciclo se resuelve por separado con Gauss-Seidel
+ * a partir de los vectores ya vigentes de sus accionistas externos, sin recorrer el
+ * resto del grafo.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public class IncrementalOwnershipIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalOwnershipIndex.class);
+
+    private final Map<Node, Map<Node, Double>> beneficiariesByEntity = new HashMap<>();
+    private final Map<Node, Set<Node>> ownedEntities = new HashMap<>();
+    private final Map<String, Node> graph;
+    private final double tolerance;
+    private final int maxIterations;
+
+    /**
+     * Construye el índice a partir de un cálculo completo de todas las entidades.
+     *
+     * @param graph grafo de entidades por nombre (el mismo que se modificará)
+     * @param allRoots resultados de {@link OwnershipCalculator#calculateAllRoots()}
+     * @param tolerance cambio máximo aceptado entre iteraciones al resolver un ciclo
+     * @param maxIterations número máximo de iteraciones por ciclo
+     */
+    IncrementalOwnershipIndex(Map<String, Node> graph, UboResultStore allRoots, double tolerance, int maxIterations) {
+        this.graph = graph;
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+
+        for (Node node : graph.values()) {
+            Map<Node, Double> vector = new HashMap<>();
+            for (Map.Entry<String, Double> entry : allRoots.getBeneficiaries(node.getName()).entrySet()) {
+                vector.put(graph.get(entry.getKey()), entry.getValue());
+            }
+            beneficiariesByEntity.put(node, vector);
+            node.forEachOwner((owner, percentage) -> linkOwned(owner, node));
+        }
+    }
+
+    /**
+     * Obtiene los beneficiarios finales vigentes de una entidad.
+     *
+     * @param entityName nombre de la entidad
+     * @return mapa de beneficiario -> porcentaje final (0.0 - 1.0), ordenado de mayor a menor
+     * @throws IllegalArgumentException si la entidad no existe
+     */
+    public Map<String, Double> getBeneficiaries(String entityName) {
+        Node node = graph.get(entityName.trim());
+        if (node == null) {
+            throw new IllegalArgumentException("Entidad no encontrada: " + entityName);
+        }
+        List<Map.Entry<Node, Double>> entries = new ArrayList<>(beneficiariesByEntity.get(node).entrySet());
+        entries.sort(Map.Entry.<Node, Double>comparingByValue().reversed());
+
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (Map.Entry<Node, Double> entry : entries) {
+            result.put(entry.getKey().getName(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Registra una relación de propiedad agregada o eliminada y recalcula las entidades afectadas.
+     * Debe llamarse después de modificar el nodo.
+     *
+     * @param entity entidad cuyos propietarios cambiaron
+     * @param owner propietario agregado, modificado o eliminado
+     * @param linked true si la relación existe tras el cambio
+     * @return número de entidades recalculadas
+     */
+    int onOwnershipChanged(Node entity, Node owner, boolean linked) {
+        if (!beneficiariesByEntity.containsKey(owner)) {
+            beneficiariesByEntity.put(owner, leafVector(owner));
+        }
+        if (linked) {
+            linkOwned(owner, entity);
+        } else {
+            Set<Node> owned = ownedEntities.get(owner);
+            if (owned != null) {
+                owned.remove(entity);
+            }
+        }
+        return recompute(entity);
+    }
+
+    /**
+     * Recalcula la entidad modificada y todas las que dependen de ella.
+     */
+    private int recompute(Node changed) {
+        // Entidades afectadas: la modificada y las que la tienen como accionista, transitivamente
+        Set<Node> affected = new HashSet<>();
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        affected.add(changed);
+        queue.add(changed);
+        while (!queue.isEmpty()) {
+            Node current = queue.poll();
+            for (Node owned : ownedEntities.getOrDefault(current, Collections.emptySet())) {
+                if (affected.add(owned)) {
+                    queue.add(owned);
+                }
+            }
+        }
+
+        // Orden topológico dentro del conjunto afectado: primero las entidades cuyos
+        // accionistas afectados ya fueron recalculados
+        Map<Node, Integer> pendingOwners = new HashMap<>();
+        ArrayDeque<Node> ready = new ArrayDeque<>();
+        for (Node node : affected) {
+            int[] count = {0};
+            node.forEachOwner((owner, percentage) -> {
+                if (affected.contains(owner)) {
+                    count[0]++;
+                }
+            });
+            pendingOwners.put(node, count[0]);
+            if (count[0] == 0) {
+                ready.add(node);
+            }
+        }
+
+        int resolved = 0;
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            beneficiariesByEntity.put(node, combineOwners(node));
+            resolved++;
+            for (Node owned : ownedEntities.getOrDefault(node, Collections.emptySet())) {
+                if (affected.contains(owned) && pendingOwners.merge(owned, -1, Integer::sum) == 0) {
+                    ready.add(owned);
+                }
+            }
+        }
+
+        if (resolved < affected.size()) {
+            List<Node> unresolved = new ArrayList<>();
+            for (Node node : affected) {
+                if (pendingOwners.get(node) > 0) {
+                    unresolved.add(node);
+                }
+            }
+            resolveCycles(unresolved);
+        }
+        logger.debug("Actualización incremental: {} entidades recalculadas", affected.size());
+        return affected.size();
+    }
+
+    /**
+     * Combina los vectores vigentes de los accionistas directos de una entidad.
+     */
+    private Map<Node, Double> combineOwners(Node node) {
+        if (!node.hasOwners()) {
+            return leafVector(node);
+        }
+        Map<Node, Double> vector = new HashMap<>();
+        node.forEachOwner((owner, percentage) -> {
+            for (Map.Entry<Node, Double> entry : beneficiariesByEntity.get(owner).entrySet()) {
+                vector.merge(entry.getKey(), percentage * entry.getValue(), Double::sum);
+            }
+        });
+        return vector;
+    }
+
+    /**
+     * Recalcula las entidades que quedaron en un ciclo o detrás de uno. Se agrupan en
+     * componentes fuertemente conexas, que se procesan con los accionistas primero: las
+     * entidades sueltas se combinan como siempre y cada ciclo se resuelve por separado.
+     *
+     * @param unresolved entidades afectadas que el orden topológico no alcanzó
+     */
+    private void resolveCycles(List<Node> unresolved) {
+        int cycles = 0;
+        int cycleMembers = 0;
+        for (List<Node> component : componentsOwnersFirst(unresolved)) {
+            if (component.size() == 1) {
+                // Un nodo no puede ser accionista de sí mismo: sin ciclo propio
+                beneficiariesByEntity.put(component.get(0), combineOwners(component.get(0)));
+                continue;
+            }
+            resolveCycle(component);
+            cycles++;
+            cycleMembers += component.size();
+        }
+        logger.debug("Actualización incremental: {} ciclos con {} entidades resueltos por separado", cycles, cycleMembers);
+    }
+
+    /**
+     * Componentes fuertemente conexas del subgrafo formado por las entidades dadas, con
+     * el algoritmo de Tarjan (iterativo). Tarjan emite cada componente después de las
+     * que alcanza siguiendo a los accionistas, así que salen con los accionistas primero.
+     */
+    private static List<List<Node>> componentsOwnersFirst(List<Node> nodes) {
+        Set<Node> subset = new HashSet<>(nodes);
+        Map<Node, Integer> index = new HashMap<>();
+        Map<Node, Integer> lowLink = new HashMap<>();
+        Set<Node> onStack = new HashSet<>();
+        ArrayDeque<Node> componentStack = new ArrayDeque<>();
+        ArrayDeque<Node> callStack = new ArrayDeque<>();
+        ArrayDeque<Iterator<Node>> ownerCursors = new ArrayDeque<>();
+        List<List<Node>> components = new ArrayList<>();
+
+        for (Node start : nodes) {
+            if (index.containsKey(start)) {
+                continue;
+            }
+            visit(start, subset, index, lowLink, onStack, componentStack, callStack, ownerCursors);
+            while (!callStack.isEmpty()) {
+                Node node = callStack.peek();
+                Iterator<Node> owners = ownerCursors.peek();
+                if (owners.hasNext()) {
+                    Node owner = owners.next();
+                    if (!index.containsKey(owner)) {
+                        visit(owner, subset, index, lowLink, onStack, componentStack, callStack, ownerCursors);
+                    } else if (onStack.contains(owner)) {
+                        lowLink.put(node, Math.min(lowLink.get(node), index.get(owner)));
+                    }
+                    continue;
+                }
+                callStack.pop();
+                ownerCursors.pop();
+                if (!callStack.isEmpty()) {
+                    Node parent = callStack.peek();
+                    lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(node)));
+                }
+                if (lowLink.get(node).equals(index.get(node))) {
+                    List<Node> component = new ArrayList<>();
+                    Node member;
+                    do {
+                        member = componentStack.pop();
+                        onStack.remove(member);
+                        component.add(member);
+                    } while (!member.equals(node));
+                    components.add(component);
+                }
+            }
+        }
+        return components;
+    }
+
+    private static void visit(Node node, Set<Node> subset, Map<Node, Integer> index, Map<Node, Integer> lowLink,
+                              Set<Node> onStack, ArrayDeque<Node> componentStack, ArrayDeque<Node> callStack,
+                              ArrayDeque<Iterator<Node>> ownerCursors) {
+        index.put(node, index.size());
+        lowLink.put(node, index.get(node));
+        componentStack.push(node);
+        onStack.add(node);
+        List<Node> owners = new ArrayList<>();
+        node.forEachOwner((owner, percentage) -> {
+            if (subset.contains(owner)) {
+                owners.add(owner);
+            }
+        });
+        callStack.push(node);
+        ownerCursors.push(owners.iterator());
+    }
+
+    /**
+     * Resuelve un ciclo con Gauss-Seidel: el vector de cada miembro es el aporte fijo de
+     * sus accionistas externos, ya vigentes, más el de sus accionistas dentro del ciclo.
+     */
+    private void resolveCycle(List<Node> members) {
+        Set<Node> memberSet = new HashSet<>(members);
+        Map<Node, Map<Node, Double>> externalInflow = new HashMap<>();
+        for (Node node : members) {
+            Map<Node, Double> inflow = new HashMap<>();
+            node.forEachOwner((owner, percentage) -> {
+                if (!memberSet.contains(owner)) {
+                    addScaled(inflow, beneficiariesByEntity.get(owner), percentage);
+                }
+            });
+            externalInflow.put(node, inflow);
+            beneficiariesByEntity.put(node, new HashMap<>(inflow));
+        }
+
+        int iterations = 0;
+        double change = Double.MAX_VALUE;
+        while (iterations < maxIterations && change > tolerance) {
+            change = 0.0;
+            for (Node node : members) {
+                Map<Node, Double> vector = new HashMap<>(externalInflow.get(node));
+                node.forEachOwner((owner, percentage) -> {
+                    if (memberSet.contains(owner)) {
+                        addScaled(vector, beneficiariesByEntity.get(owner), percentage);
+                    }
+                });
+                change = Math.max(change, maxDifference(beneficiariesByEntity.put(node, vector), vector));
+            }
+            iterations++;
+        }
+        if (change > tolerance) {
+            logger.warn("El ciclo de {} entidades no convergió en {} iteraciones (cambio {})",
+                       members.size(), iterations, change);
+        } else {
+            logger.debug("Ciclo de {} entidades resuelto en {} iteraciones", members.size(), iterations);
+        }
+    }
+
+    private static void addScaled(Map<Node, Double> target, Map<Node, Double> source, double factor) {
+        for (Map.Entry<Node, Double> entry : source.entrySet()) {
+            target.merge(entry.getKey(), factor * entry.getValue(), Double::sum);
+        }
+    }
+
+    private static double maxDifference(Map<Node, Double> previous, Map<Node, Double> current) {
+        double difference = 0.0;
+        for (Map.Entry<Node, Double> entry : current.entrySet()) {
+            difference = Math.max(difference, Math.abs(entry.getValue() - previous.getOrDefault(entry.getKey(), 0.0)));
+        }
+        for (Map.Entry<Node, Double> entry : previous.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                difference = Math.max(difference, Math.abs(entry.getValue()));
+            }
+        }
+        return difference;
+    }
+
+    private void linkOwned(Node owner, Node owned) {
+        ownedEntities.computeIfAbsent(owner, key -> new HashSet<>()).add(owned);
+    }
+
+    private static Map<Node, Double> leafVector(Node node) {
+        Map<Node, Double> vector = new HashMap<>();
+        vector.put(node, 1.0);
+        return vector;
+    }
+}
@@ -0,0 +1,191 @@
+package com.davivienda.excelpdf.application;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.davivienda.excelpdf.domain.OwnershipGraph;
+
+/**
+ * Resuelve la participación final como un sistema lineal disperso.
+ *
+ * <p>Si {@code A} es la matriz de participaciones directas (entidad → accionista),
+ * el porcentaje que llega a cada entidad desde la raíz es {@code m = e + Aᵀm},
+ * es decir {@code m = (I − Aᵀ)⁻¹ e}. El sistema se resuelve con Gauss-Seidel hasta
+ * que el residuo máximo queda por debajo de la tolerancia, de modo que las
+ * participaciones recíprocas se resuelven sin recorrer rutas.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public class IterativeOwnershipSolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(IterativeOwnershipSolver.class);
+
+    private final double tolerance;
+    private final int maxIterations;
+
+    /**
+     * Constructor del solucionador.
+     *
+     * @param tolerance residuo máximo aceptado entre iteraciones
+     * @param maxIterations número máximo de iteraciones
+     */
+    public IterativeOwnershipSolver(double tolerance, int maxIterations) {
+        if (tolerance <= 0.0) {
+            throw new IllegalArgumentException("La tolerancia debe ser mayor que cero");
+        }
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("El número máximo de iteraciones debe ser al menos 1");
+        }
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Calcula los beneficiarios finales alcanzables desde la raíz.
+     *
+     * @param ownershipGraph grafo compacto
+     * @param rootId identificador del nodo raíz
+     * @param rootEntityName nombre de la raíz tal como se usa en las rutas
+     * @param finalResults mapa donde se acumulan los beneficiarios finales
+     * @param beneficiaryPaths mapa donde se registra la ruta de mayor aporte
+     * @return reporte de convergencia
+     */
+    public SolverReport solve(OwnershipGraph ownershipGraph, int rootId, String rootEntityName,
+                              Map<String, Double> finalResults, Map<String, String> beneficiaryPaths) {
+        long startTime = System.nanoTime();
+
+        // Indexar el subgrafo alcanzable (índice local 0 = raíz)
+        int[] localIndex = new int[ownershipGraph.size()];
+        Arrays.fill(localIndex, -1);
+        int[] nodes = new int[ownershipGraph.size()];
+        int size = 0;
+        localIndex[rootId] = size;
+        nodes[size++] = rootId;
+
+        for (int i = 0; i < size; i++) {
+            int node = nodes[i];
+            for (int edge = ownershipGraph.ownerStart(node); edge < ownershipGraph.ownerEnd(node); edge++) {
+                int owner = ownershipGraph.ownerIdAt(edge);
+                if (localIndex[owner] < 0) {
+                    localIndex[owner] = size;
+                    nodes[size++] = owner;
+                }
+            }
+        }
+
+        // Matriz dispersa por filas: para cada entidad, quiénes le transfieren participación
+        int[] offsets = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            int node = nodes[i];
+            for (int edge = ownershipGraph.ownerStart(node); edge < ownershipGraph.ownerEnd(node); edge++) {
+                offsets[localIndex[ownershipGraph.ownerIdAt(edge)] + 1]++;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int edgeCount = offsets[size];
+        int[] sources = new int[edgeCount];
+        double[] weights = new double[edgeCount];
+        int[] cursor = Arrays.copyOf(offsets, size);
+        for (int i = 0; i < size; i++) {
+            int node = nodes[i];
+            for (int edge = ownershipGraph.ownerStart(node); edge < ownershipGraph.ownerEnd(node); edge++) {
+                int target = localIndex[ownershipGraph.ownerIdAt(edge)];
+                sources[cursor[target]] = i;
+                weights[cursor[target]] = ownershipGraph.weightAt(edge);
+                cursor[target]++;
+            }
+        }
+
+        // Iteración de Gauss-Seidel
+        double[] accumulated = new double[size];
+        int iterations = 0;
+        double residual = Double.POSITIVE_INFINITY;
+        while (iterations < maxIterations && residual > tolerance) {
+            residual = 0.0;
+            for (int v = 0; v < size; v++) {
+                double value = (v == 0) ? 1.0 : 0.0;
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    value += weights[e] * accumulated[sources[e]];
+                }
+                residual = Math.max(residual, Math.abs(value - accumulated[v]));
+                accumulated[v] = value;
+            }
+            iterations++;
+        }
+
+        boolean converged = residual <= tolerance;
+        if (!converged) {
+            logger.warn("El solucionador no convergió en {} iteraciones (residuo {})", iterations, residual);
+        }
+
+        // Predecesor de mayor aporte para reconstruir rutas
+        int[] dominantParent = new int[size];
+        for (int v = 0; v < size; v++) {
+            dominantParent[v] = -1;
+            double best = -1.0;
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                double contribution = weights[e] * accumulated[sources[e]];
+                if (contribution > best) {
+                    best = contribution;
+                    dominantParent[v] = sources[e];
+                }
+            }
+        }
+
+        boolean[] onPath = new boolean[size];
+        for (int v = 0; v < size; v++) {
+            if (!ownershipGraph.hasOwners(nodes[v]) && accumulated[v] > 0.0) {
+                String name = ownershipGraph.nameOf(nodes[v]);
+                finalResults.merge(name, accumulated[v], Double::sum);
+                beneficiaryPaths.put(name, OwnershipQueryService.buildDominantPath(
+                    v, 0, dominantParent, onPath, i -> ownershipGraph.nameOf(nodes[i]), rootEntityName));
+            }
+        }
+
+        return new SolverReport(iterations, residual, System.nanoTime() - startTime, converged, size, edgeCount);
+    }
+
+    /**
+     * Reporte de convergencia del solucionador.
+     */
+    public static class SolverReport {
+        private final int iterations;
+        private final double residual;
+        private final long elapsedNanos;
+        private final boolean converged;
+        private final int nodeCount;
+        private final int edgeCount;
+
+        public SolverReport(int iterations, double residual, long elapsedNanos, boolean converged,
+                            int nodeCount, int edgeCount) {
+            this.iterations = iterations;
+            this.residual = residual;
+            this.elapsedNanos = elapsedNanos;
+            this.converged = converged;
+            this.nodeCount = nodeCount;
+            this.edgeCount = edgeCount;
+        }
+
+        // Getters
+        public int getIterations() { return iterations; }
+        public double getResidual() { return residual; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public double getElapsedMillis() { return elapsedNanos / 1_000_000.0; }
+        public boolean isConverged() { return converged; }
+        public int getNodeCount() { return nodeCount; }
+        public int getEdgeCount() { return edgeCount; }
+
+        @Override
+        public String toString() {
+            return String.format("Solucionador iterativo: %s en %d iteraciones, residuo %.3e, %.3f ms (%d entidades, %d relaciones)",
+                               converged ? "convergió" : "NO convergió", iterations, residual,
+                               getElapsedMillis(), nodeCount, edgeCount);
+        }
+    }
+}
@@ -1,27 +1,43 @@
 package com.davivienda.excelpdf.application;
 
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.DoubleSupplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellType;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.davivienda.excelpdf.domain.Node;
+import com.davivienda.excelpdf.domain.OwnershipGraph;
+import com.davivienda.excelpdf.domain.OwnershipPath;
+import com.davivienda.excelpdf.infrastructure.CsvRowReader;
+import com.davivienda.excelpdf.infrastructure.GraphSnapshotFile;
+import com.davivienda.excelpdf.infrastructure.ParallelCsvReader;
+import com.davivienda.excelpdf.infrastructure.StreamingXlsxReader;
 
 /**
  * Calculadora de participaciones accionarias que procesa archivos Excel
  * y calcula recursivamente la composición final de beneficiarios.
  * Incluye detección de ciclos y validaciones robustas.
  * 
+ * <p>Por defecto usa el modo {@link CalculationMode#MEMOIZED_DAG}, que procesa cada
+ * entidad una sola vez; el recorrido de rutas original sigue disponible mediante
+ * {@link #setCalculationMode(CalculationMode)}.
+ * 
  * @author Davivienda
  * @version 1.0
  */
@@ -29,10 +45,141 @@ public class OwnershipCalculator {
     
     private static final Logger logger = LoggerFactory.getLogger(OwnershipCalculator.class);
     
-    private final Map<String, Node> graph = new HashMap<>();
-    private final Map<String, Double> finalResults = new HashMap<>();
-    private final Map<String, String> beneficiaryPaths = new HashMap<>();
-    private final Set<String> visitedInCurrentPath = new HashSet<>(); // Para detección de ciclos
+    /** Error máximo de las participaciones devueltas por {@link #topBeneficiaries(String, int)}. */
+    private static final double TOP_K_PRECISION = 1e-7;
+    private static final int MAX_LISTED_CYCLES = 10;
+    private static final int MAX_LISTED_CYCLE_MEMBERS = 10;
+    
+    private final Map<String, Node> graph = new HashMap<>(); // Vacío tras una instantánea hasta que se pida
+    private boolean graphFromSnapshot; // true si los nodos de graph aún están solo en snapshot
+    private OwnershipGraph snapshot; // Vista compacta (CSR) usada por los cálculos
+    private OwnershipCondensation condensation; // Componentes fuertemente conexas del grafo compacto
+    private OwnershipResult lastResult = OwnershipResult.empty();
+    private boolean lastResultStale; // El grafo cambió después del último cálculo
+    
+    private CalculationMode calculationMode = CalculationMode.MEMOIZED_DAG;
+    private double solverTolerance = 1e-12;
+    private int solverMaxIterations = 10_000;
+    private IterativeOwnershipSolver.SolverReport lastSolverReport;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private double beneficiaryThreshold = 0.0; // 0 = sin umbral
+    private IncrementalOwnershipIndex incrementalIndex; // Se crea con la primera actualización incremental
+    private Path snapshotDirectory; // null = sin instantáneas automáticas
+    private EntityNameResolver entityNameResolver; // null = sin resolución de nombres
+    private CorrectionRules correctionRules; // null = sin reglas de corrección
+    private GraphIntegrityReport.LoadIssues loadIssues = new GraphIntegrityReport.LoadIssues(); // Carga en curso
+    private GraphIntegrityReport integrityReport;
+    private EntityNameResolver.Resolution nameResolution;
+    private boolean nameResolutionPending; // Tras una instantánea se calcula al pedirla
+    
+    /**
+     * Establece el modo de cálculo usado por {@link #calculateFinalOwnership(String)}.
+     * 
+     * @param calculationMode modo de cálculo
+     */
+    public void setCalculationMode(CalculationMode calculationMode) {
+        if (calculationMode == null) {
+            throw new IllegalArgumentException("El modo de cálculo no puede ser null");
+        }
+        this.calculationMode = calculationMode;
+    }
+    
+    /**
+     * Obtiene el modo de cálculo actual.
+     * 
+     * @return modo de cálculo
+     */
+    public CalculationMode getCalculationMode() {
+        return calculationMode;
+    }
+    
+    /**
+     * Configura la convergencia del modo {@link CalculationMode#ITERATIVE_SOLVER} y de los ciclos
+     * en {@link CalculationMode#FIXED_POINT} (este último solo usa el número de iteraciones).
+     * 
+     * @param tolerance residuo máximo aceptado entre iteraciones
+     * @param maxIterations número máximo de iteraciones
+     */
+    public void setSolverParameters(double tolerance, int maxIterations) {
+        if (tolerance <= 0.0 || maxIterations < 1) {
+            throw new IllegalArgumentException("La tolerancia debe ser positiva y las iteraciones al menos 1");
+        }
+        this.solverTolerance = tolerance;
+        this.solverMaxIterations = maxIterations;
+    }
+    
+    public double getSolverTolerance() {
+        return solverTolerance;
+    }
+    
+    public int getSolverMaxIterations() {
+        return solverMaxIterations;
+    }
+    
+    /**
+     * Establece el número de hilos usados al leer archivos CSV grandes, al validar el grafo
+     * y en el modo {@link CalculationMode#PARALLEL_FORK_JOIN}. No cambia el modo de cálculo.
+     * 
+     * @param parallelism número de hilos (al menos 1)
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("El nivel de paralelismo debe ser al menos 1");
+        }
+        this.parallelism = parallelism;
+    }
+    
+    /**
+     * Obtiene el número de hilos de procesamiento.
+     * 
+     * @return número de hilos
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+    
+    /**
+     * Establece la participación mínima que debe tener un beneficiario para reportarse.
+     * Con un umbral mayor que cero, {@link #calculateFinalOwnership(String)} usa un recorrido
+     * que poda las ramas que no pueden alcanzarlo y agrupa la participación restante
+     * (consultable con {@link #getBelowThresholdShare()}).
+     * 
+     * @param threshold umbral (0.0 - 1.0); 0 desactiva la poda
+     */
+    public void setBeneficiaryThreshold(double threshold) {
+        if (threshold < 0.0 || threshold >= 1.0) {
+            throw new IllegalArgumentException("El umbral debe estar entre 0 y 1: " + threshold);
+        }
+        this.beneficiaryThreshold = threshold;
+    }
+    
+    /**
+     * Obtiene el umbral de participación configurado.
+     * 
+     * @return umbral (0.0 - 1.0), 0 si no hay umbral
+     */
+    public double getBeneficiaryThreshold() {
+        return beneficiaryThreshold;
+    }
+    
+    /**
+     * Obtiene la participación agrupada por debajo del umbral en el último cálculo:
+     * ramas podadas y beneficiarios que no alcanzaron el umbral.
+     * 
+     * @return participación agrupada (0.0 - 1.0), 0 si no hay umbral
+     */
+    public double getBelowThresholdShare() {
+        return currentResult().getBelowThresholdShare();
+    }
+    
+    /**
+     * Obtiene el reporte del último cálculo realizado con el solucionador iterativo.
+     * 
+     * @return reporte de convergencia, o null si no se ha usado el solucionador
+     */
+    public IterativeOwnershipSolver.SolverReport getLastSolverReport() {
+        return lastSolverReport;
+    }
     
     /**
      * Obtiene o crea un nodo en el grafo.
@@ -41,116 +188,747 @@ public class OwnershipCalculator {
      * @return nodo existente o nuevo nodo
      */
     private Node getOrCreateNode(String name) {
-        return graph.computeIfAbsent(name.trim(), Node::new);
+        return nodes().computeIfAbsent(name.trim(), Node::new);
+    }
+    
+    /**
+     * Obtiene el mapa de nodos del grafo. Tras cargar una instantánea el mapa se llena
+     * la primera vez que se pide, con las vistas de los nodos del grafo compacto.
+     */
+    private Map<String, Node> nodes() {
+        if (graphFromSnapshot) {
+            for (int id = 0; id < snapshot.size(); id++) {
+                graph.put(snapshot.nameOf(id), snapshot.nodeAt(id));
+            }
+            graphFromSnapshot = false;
+        }
+        return graph;
     }
     
     /**
      * Carga las relaciones de propiedad desde un archivo Excel.
      * Formato esperado: Columna A: Entidad, Columna B: Accionista, Columna C: % Participación
      * 
+     * <p>Si hay un directorio de instantáneas configurado y en él existe una instantánea
+     * del mismo archivo con igual tamaño y fecha de modificación, se carga la instantánea
+     * en lugar de leer el Excel; si no, se lee el Excel y se guarda su instantánea.
+     * 
      * @param excelPath ruta del archivo Excel
      * @throws IOException si hay problemas de acceso al archivo
      * @throws IllegalArgumentException si el formato del Excel es inválido
      */
     public void loadFromExcel(String excelPath) throws IOException {
-        logger.info("Cargando datos desde: {}", excelPath);
+        loadSource(excelPath, this::parseExcel);
+    }
+    
+    /**
+     * Carga las relaciones de propiedad desde un archivo CSV, sin pasar por una copia en
+     * Excel. Las columnas y validaciones son las mismas de {@link #loadFromExcel(String)};
+     * el delimitador (coma o punto y coma) se deduce de la primera línea y las líneas
+     * vacías se omiten. Las instantáneas se usan igual que con el Excel.
+     * 
+     * @param csvPath ruta del archivo CSV
+     * @throws IOException si hay problemas de acceso al archivo o está vacío
+     * @throws IllegalArgumentException si el formato del CSV es inválido
+     */
+    public void loadFromCsv(String csvPath) throws IOException {
+        loadSource(csvPath, this::parseCsv);
+    }
+    
+    /**
+     * Lee un archivo de origen, o su instantánea si hay una vigente.
+     */
+    private void loadSource(String sourcePath, SourceParser parser) throws IOException {
+        if (snapshotDirectory == null) {
+            parser.parse(sourcePath);
+            return;
+        }
         
-        try (FileInputStream fileInputStream = new FileInputStream(excelPath);
-             XSSFWorkbook workbook = new XSSFWorkbook(fileInputStream)) {
-            
-            Sheet sheet = workbook.getSheetAt(0);
-            int rowCount = 0;
-            int validRowCount = 0;
-            
-            // Validar que exista al menos una fila de encabezado
-            if (sheet.getLastRowNum() < 1) {
-                throw new IllegalArgumentException("El archivo Excel debe tener al menos una fila de datos además del encabezado");
+        Path source = Paths.get(sourcePath);
+        long sourceSize = Files.size(source);
+        long sourceModified = Files.getLastModifiedTime(source).toMillis();
+        Path snapshotPath = snapshotPathFor(source);
+        
+        if (GraphSnapshotFile.matchesSource(snapshotPath, sourceSize, sourceModified)) {
+            try {
+                loadFromSnapshot(snapshotPath);
+                return;
+            } catch (IOException e) {
+                logger.warn("No se pudo usar la instantánea {} ({}), se lee el archivo", snapshotPath, e.getMessage());
+            }
+        }
+        
+        parser.parse(sourcePath);
+        try {
+            GraphSnapshotFile.write(snapshotPath, snapshot, sourceSize, sourceModified, exportLoadIssues());
+        } catch (IOException e) {
+            logger.warn("No se pudo guardar la instantánea {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+    
+    /**
+     * Carga el grafo desde una instantánea binaria, sin leer el Excel de origen. El grafo
+     * compacto se arma directamente sobre los arreglos de la instantánea y reemplaza al
+     * grafo cargado; los nodos se crean solo si se piden. La instantánea ya tiene
+     * aplicadas la resolución de nombres y las reglas de corrección.
+     * 
+     * @param snapshotPath archivo de la instantánea
+     * @throws IOException si el archivo no es una instantánea válida, está dañado o no
+     *                     contiene relaciones; en ese caso el grafo cargado no cambia
+     */
+    public void loadFromSnapshot(Path snapshotPath) throws IOException {
+        long startTime = System.nanoTime();
+        GraphSnapshotFile.Contents contents = GraphSnapshotFile.read(snapshotPath);
+        if (contents.edgeCount() == 0) {
+            throw new IOException("La instantánea no contiene relaciones: " + snapshotPath);
+        }
+        OwnershipGraph ownershipGraph;
+        try {
+            ownershipGraph = contents.toOwnershipGraph();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Instantánea inválida " + snapshotPath + ": " + e.getMessage(), e);
+        }
+        
+        graph.clear();
+        graphFromSnapshot = true;
+        snapshot = ownershipGraph;
+        incrementalIndex = null;
+        loadIssues = importLoadIssues(contents.getIssues());
+        nameResolution = null;
+        nameResolutionPending = entityNameResolver != null;
+        logger.info("Instantánea cargada desde {}: {} entidades, {} relaciones en {} ms", snapshotPath,
+                   contents.size(), contents.edgeCount(), (System.nanoTime() - startTime) / 1_000_000);
+        
+        validateAndCondense();
+    }
+    
+    /**
+     * Guarda el grafo cargado en una instantánea binaria.
+     * 
+     * @param snapshotPath archivo de destino
+     * @throws IOException si no se puede escribir el archivo
+     */
+    public void saveSnapshot(Path snapshotPath) throws IOException {
+        GraphSnapshotFile.write(snapshotPath, ensureSnapshot(), 0L, 0L, exportLoadIssues());
+    }
+    
+    /**
+     * Observaciones de la carga vigente en el formato de la instantánea.
+     */
+    private List<GraphSnapshotFile.IssueCount> exportLoadIssues() {
+        List<GraphSnapshotFile.IssueCount> issues = new ArrayList<>();
+        for (GraphIntegrityReport.Check check : GraphIntegrityReport.Check.values()) {
+            if (loadIssues.getCount(check) > 0) {
+                issues.add(new GraphSnapshotFile.IssueCount(check.name(), loadIssues.getCount(check),
+                                                            loadIssues.getSamples(check)));
+            }
+        }
+        return issues;
+    }
+    
+    /**
+     * Recupera las observaciones de la carga guardadas en una instantánea.
+     */
+    private GraphIntegrityReport.LoadIssues importLoadIssues(List<GraphSnapshotFile.IssueCount> issues) {
+        GraphIntegrityReport.LoadIssues restored = new GraphIntegrityReport.LoadIssues();
+        for (GraphSnapshotFile.IssueCount issue : issues) {
+            try {
+                restored.restore(GraphIntegrityReport.Check.valueOf(issue.getName()), issue.getCount(),
+                                 issue.getSamples());
+            } catch (IllegalArgumentException e) {
+                logger.debug("Observación desconocida en la instantánea: {}", issue.getName());
             }
+        }
+        return restored;
+    }
+    
+    /**
+     * Configura el directorio donde se guardan y reutilizan las instantáneas de los
+     * archivos Excel cargados.
+     * 
+     * @param snapshotDirectory directorio de instantáneas, o null para desactivarlas
+     */
+    public void setSnapshotDirectory(Path snapshotDirectory) {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+    
+    /**
+     * Configura la resolución de nombres que se aplica al terminar cada carga: los
+     * nombres que el resolutor agrupa se fusionan en una sola entidad con el nombre
+     * canónico del grupo.
+     * 
+     * @param entityNameResolver resolutor de nombres, o null para desactivar la resolución
+     */
+    public void setEntityNameResolver(EntityNameResolver entityNameResolver) {
+        this.entityNameResolver = entityNameResolver;
+    }
+    
+    public EntityNameResolver getEntityNameResolver() {
+        return entityNameResolver;
+    }
+    
+    /**
+     * Configura las reglas de corrección que se aplican a cada fila durante la carga
+     * del Excel, antes de crear las relaciones.
+     * 
+     * @param correctionRules reglas compiladas, o null para no aplicar reglas
+     */
+    public void setCorrectionRules(CorrectionRules correctionRules) {
+        this.correctionRules = correctionRules;
+    }
+    
+    public CorrectionRules getCorrectionRules() {
+        return correctionRules;
+    }
+    
+    /**
+     * Obtiene el reporte de integridad de la última carga.
+     * 
+     * @return reporte de integridad, o null si todavía no se ha cargado un grafo
+     */
+    public GraphIntegrityReport getIntegrityReport() {
+        return integrityReport;
+    }
+    
+    /**
+     * Obtiene la resolución de nombres aplicada en la última carga.
+     * 
+     * @return resolución aplicada, o null si la resolución está desactivada
+     */
+    public EntityNameResolver.Resolution getNameResolution() {
+        ensureNameResolution();
+        return nameResolution;
+    }
+    
+    /**
+     * Traduce un nombre al usado en el grafo: si la última carga fusionó ese nombre con
+     * otros, devuelve el nombre canónico del grupo.
+     * 
+     * @param name nombre de la entidad tal como lo escribe el usuario
+     * @return nombre de la entidad en el grafo
+     */
+    public String resolveEntityName(String name) {
+        String trimmed = name.trim();
+        if (containsEntity(trimmed)) {
+            return trimmed;
+        }
+        ensureNameResolution();
+        return (nameResolution == null) ? trimmed : nameResolution.canonicalOf(trimmed);
+    }
+    
+    private boolean containsEntity(String name) {
+        return graphFromSnapshot ? snapshot.idOf(name) >= 0 : graph.containsKey(name);
+    }
+    
+    /**
+     * Tras cargar una instantánea, agrupa sus nombres con el resolutor para traducir los
+     * alias que escriba el usuario. Los grupos ya están fusionados en la instantánea, así
+     * que solo se arma el índice de nombres.
+     */
+    private void ensureNameResolution() {
+        if (!nameResolutionPending) {
+            return;
+        }
+        nameResolutionPending = false;
+        OwnershipGraph ownershipGraph = ensureSnapshot();
+        Map<String, Integer> relationCounts = new HashMap<>();
+        for (int id = 0; id < ownershipGraph.size(); id++) {
+            relationCounts.merge(ownershipGraph.nameOf(id), ownershipGraph.ownerEnd(id) - ownershipGraph.ownerStart(id),
+                                 Integer::sum);
+            for (int edge = ownershipGraph.ownerStart(id); edge < ownershipGraph.ownerEnd(id); edge++) {
+                relationCounts.merge(ownershipGraph.nameOf(ownershipGraph.ownerIdAt(edge)), 1, Integer::sum);
+            }
+        }
+        nameResolution = entityNameResolver.resolve(relationCounts);
+    }
+    
+    /**
+     * Nombre de la instantánea de un archivo: nombre del archivo más un hash de su ruta
+     * absoluta, para distinguir archivos homónimos en carpetas distintas. Con resolución
+     * de nombres o reglas de corrección activas se agrega su configuración, porque la
+     * instantánea guarda el grafo ya corregido.
+     */
+    private Path snapshotPathFor(Path source) {
+        Path absolute = source.toAbsolutePath().normalize();
+        String resolution = (entityNameResolver == null) ? ""
+            : String.format(Locale.ROOT, "-nombres%.0f", entityNameResolver.getSimilarityThreshold() * 100);
+        String rules = (correctionRules == null) ? "" : "-reglas" + correctionRules.getFingerprint();
+        return snapshotDirectory.resolve(absolute.getFileName() + "-"
+                                         + Integer.toHexString(absolute.toString().hashCode()) + resolution + rules + ".ubog");
+    }
+    
+    /**
+     * Lee las relaciones de propiedad del Excel con el modelo de eventos de POI: las filas
+     * se agregan al grafo a medida que se leen, sin cargar el libro completo en memoria.
+     */
+    private void parseExcel(String excelPath) throws IOException {
+        logger.info("Cargando datos desde: {}", excelPath);
+        
+        CorrectionRules.Session corrections = (correctionRules == null) ? null : correctionRules.newSession();
+        loadIssues = new GraphIntegrityReport.LoadIssues();
+        ExcelRowLoader rowLoader = new ExcelRowLoader(corrections);
+        
+        // Procesar filas (asumiendo que la primera fila son encabezados)
+        int lastRowIndex = StreamingXlsxReader.read(new File(excelPath), 3, rowLoader);
+        
+        // Validar que exista al menos una fila de encabezado
+        if (lastRowIndex < 1) {
+            throw new IllegalArgumentException("El archivo Excel debe tener al menos una fila de datos además del encabezado");
+        }
+        
+        completeLoading(rowLoader, "Excel");
+    }
+    
+    /**
+     * Lee las relaciones de propiedad del CSV línea por línea, agregándolas al grafo a
+     * medida que se leen.
+     */
+    private void parseCsv(String csvPath) throws IOException {
+        logger.info("Cargando datos desde: {}", csvPath);
+        
+        CorrectionRules.Session corrections = (correctionRules == null) ? null : correctionRules.newSession();
+        loadIssues = new GraphIntegrityReport.LoadIssues();
+        CsvRowLoader rowLoader = new CsvRowLoader(corrections);
+        
+        // Procesar líneas (asumiendo que la primera es el encabezado)
+        File csvFile = new File(csvPath);
+        int lineCount;
+        if (parallelism > 1 && csvFile.length() > ParallelCsvReader.DEFAULT_SECTION_SIZE) {
+            lineCount = ParallelCsvReader.read(csvFile, parallelism, ParallelCsvReader.DEFAULT_SECTION_SIZE,
+                                               new CsvSectionCollector(rowLoader));
+        } else {
+            lineCount = CsvRowReader.read(csvFile, rowLoader);
+        }
+        
+        if (lineCount == 0) {
+            throw new IOException("El archivo CSV está vacío");
+        }
+        if (lineCount < 2) {
+            throw new IllegalArgumentException("El archivo CSV debe tener al menos una fila de datos además del encabezado");
+        }
+        
+        completeLoading(rowLoader, "CSV");
+    }
+    
+    /**
+     * Agrega las relaciones de las reglas de corrección, verifica que se haya cargado algo
+     * y congela el grafo.
+     */
+    private void completeLoading(RowLoader rowLoader, String sourceType) {
+        int validRowCount = rowLoader.validRowCount;
+        if (rowLoader.corrections != null) {
+            validRowCount += addMissingEdges(rowLoader.corrections);
+        }
+        
+        logger.info("Carga completada. Filas procesadas: {}, Relaciones válidas: {}, Entidades: {}", 
+                   rowLoader.rowCount, validRowCount, graph.size());
+        
+        if (validRowCount == 0) {
+            throw new IllegalArgumentException("No se encontraron relaciones válidas en el archivo " + sourceType);
+        }
+        
+        finishLoading();
+    }
+    
+    /**
+     * Lectura de un archivo de origen.
+     */
+    @FunctionalInterface
+    private interface SourceParser {
+        void parse(String sourcePath) throws IOException;
+    }
+    
+    /**
+     * Valida cada fila leída de un archivo de origen y la agrega al grafo.
+     */
+    private class RowLoader {
+        final CorrectionRules.Session corrections;
+        int rowCount;
+        int validRowCount;
+        
+        RowLoader(CorrectionRules.Session corrections) {
+            this.corrections = corrections;
+        }
+        
+        /**
+         * Procesa una fila de datos.
+         * 
+         * @param rowNumber número de la fila en el archivo, para los mensajes
+         * @param entity valor de la columna de entidad
+         * @param owner valor de la columna de accionista
+         * @param percentageReader lee la columna de porcentaje (0 - 100); solo se invoca si
+         *                         ninguna regla de corrección fija el porcentaje
+         */
+        void addRow(int rowNumber, String entity, String owner, DoubleSupplier percentageReader) {
+            rowCount++;
             
-            // Procesar filas (asumiendo que la primera fila son encabezados)
-            for (int rowIndex = 1; rowIndex <= sheet.getLastRowNum(); rowIndex++) {
-                Row row = sheet.getRow(rowIndex);
-                rowCount++;
-                
-                if (row == null) {
-                    logger.warn("Fila {} está vacía, saltando...", rowIndex + 1);
-                    continue;
+            try {
+                // Validar que entidad y accionista no estén vacíos antes de leer porcentaje
+                if (entity.isEmpty() || owner.isEmpty()) {
+                    logger.warn("Fila {}: Entidad o Accionista vacío, saltando...", rowNumber);
+                    return;
                 }
                 
-                try {
-                    // Extraer datos de las celdas
-                    String entity = getCellStringValue(row.getCell(0));
-                    String owner = getCellStringValue(row.getCell(1));
-                    
-                    // Validar que entidad y accionista no estén vacíos antes de leer porcentaje
-                    if (entity.isEmpty() || owner.isEmpty()) {
-                        logger.warn("Fila {}: Entidad o Accionista vacío, saltando...", rowIndex + 1);
-                        continue;
+                // Aplicar reglas de corrección
+                Double correctedPercentage = null;
+                if (corrections != null) {
+                    entity = corrections.rename(entity);
+                    owner = corrections.rename(owner);
+                    if (corrections.isDropped(entity, owner)) {
+                        logger.debug("Fila {}: descartada por regla de corrección", rowNumber);
+                        return;
                     }
-                    
-                    double percentage;
+                    correctedPercentage = corrections.overrideFor(entity, owner);
+                }
+            
+                double percentage;
+                if (correctedPercentage != null) {
+                    percentage = correctedPercentage;
+                } else {
                     try {
-                        percentage = getCellNumericValue(row.getCell(2));
+                        percentage = percentageReader.getAsDouble();
                     } catch (IllegalArgumentException e) {
-                        logger.warn("Fila {}: {}, saltando...", rowIndex + 1, e.getMessage());
-                        continue;
-                    }
-                    
-                    // Validar datos
-                    if (percentage <= 0 || percentage > 100) {
-                        logger.warn("Fila {}: Porcentaje inválido ({}%), debe estar entre 0 y 100, saltando...", rowIndex + 1, percentage);
-                        continue;
+                        logger.warn("Fila {}: {}, saltando...", rowNumber, e.getMessage());
+                        return;
                     }
-                    
-                    // Convertir porcentaje de 0-100 a 0-1
-                    double normalizedPercentage = percentage / 100.0;
-                    
-                    // Crear nodos y relación
-                    Node entityNode = getOrCreateNode(entity);
-                    Node ownerNode = getOrCreateNode(owner);
-                    entityNode.addOwner(ownerNode, normalizedPercentage);
-                    
-                    validRowCount++;
-                    logger.debug("Procesada relación: {} -> {} ({}%)", entity, owner, percentage);
-                    
-                } catch (Exception e) {
-                    logger.error("Error procesando fila {}: {}", rowIndex + 1, e.getMessage());
-                    throw new IllegalArgumentException("Error en fila " + (rowIndex + 1) + ": " + e.getMessage());
                 }
-            }
             
-            logger.info("Carga completada. Filas procesadas: {}, Relaciones válidas: {}, Entidades: {}", 
-                       rowCount, validRowCount, graph.size());
+                // Validar datos
+                if (percentage <= 0 || percentage > 100) {
+                    logger.warn("Fila {}: Porcentaje inválido ({}%), debe estar entre 0 y 100, saltando...", rowNumber, percentage);
+                    return;
+                }
+            
+                // Convertir porcentaje de 0-100 a 0-1
+                double normalizedPercentage = percentage / 100.0;
             
-            if (validRowCount == 0) {
-                throw new IllegalArgumentException("No se encontraron relaciones válidas en el archivo Excel");
+                // Crear nodos y relación
+                Node entityNode = getOrCreateNode(entity);
+                Node ownerNode = getOrCreateNode(owner);
+                if (entityNode.equals(ownerNode)) {
+                    loadIssues.recordSelfLoop(entityNode.getName(), normalizedPercentage);
+                    logger.debug("Fila {}: {} figura como accionista de sí misma, saltando...", rowNumber, entity);
+                    return;
+                }
+                double previousPercentage = entityNode.getOwnershipPercentage(ownerNode);
+                if (previousPercentage > 0.0) {
+                    loadIssues.recordDuplicateEdge(entityNode.getName(), ownerNode.getName(),
+                                                   previousPercentage, normalizedPercentage);
+                }
+                entityNode.addOwner(ownerNode, normalizedPercentage);
+            
+                validRowCount++;
+                logger.debug("Procesada relación: {} -> {} ({}%)", entity, owner, percentage);
+                
+            } catch (Exception e) {
+                logger.error("Error procesando fila {}: {}", rowNumber, e.getMessage());
+                throw new IllegalArgumentException("Error en fila " + rowNumber + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Entrega al cargador las filas del Excel, contando como vacías las que faltan.
+     */
+    private class ExcelRowLoader extends RowLoader implements StreamingXlsxReader.RowHandler {
+        private int nextRowIndex = 1;
+        
+        ExcelRowLoader(CorrectionRules.Session corrections) {
+            super(corrections);
+        }
+        
+        @Override
+        public void onRow(int rowIndex, StreamingXlsxReader.CellValue[] cells) {
+            if (rowIndex == 0) {
+                return;
             }
+            // Las filas que no aparecen en el archivo están vacías
+            for (; nextRowIndex < rowIndex; nextRowIndex++) {
+                rowCount++;
+                logger.warn("Fila {} está vacía, saltando...", nextRowIndex + 1);
+            }
+            nextRowIndex = rowIndex + 1;
             
-            // Validar integridad del grafo
-            validateGraphIntegrity();
+            addRow(rowIndex + 1, getCellStringValue(cells[0]), getCellStringValue(cells[1]),
+                   () -> getCellNumericValue(cells[2]));
         }
     }
     
     /**
-     * Obtiene el valor string de una celda, manejando diferentes tipos.
+     * Entrega al cargador las líneas del CSV, omitiendo el encabezado.
+     */
+    private class CsvRowLoader extends RowLoader implements CsvRowReader.RowHandler {
+        private boolean headerSkipped;
+        
+        CsvRowLoader(CorrectionRules.Session corrections) {
+            super(corrections);
+        }
+        
+        @Override
+        public void onRow(CsvRowReader.CsvRow row) {
+            String percentage = row.getString(2);
+            onValues(row.getLineNumber(), row.getString(0), row.getString(1), () -> getCsvPercentage(percentage));
+        }
+        
+        void onValues(int lineNumber, String entity, String owner, DoubleSupplier percentageReader) {
+            if (!headerSkipped) {
+                headerSkipped = true;
+                return;
+            }
+            addRow(lineNumber, entity, owner, percentageReader);
+        }
+    }
+    
+    /**
+     * Lee los tramos de un CSV grande en paralelo y entrega sus filas al cargador en el
+     * orden del archivo. Los hilos de lectura copian los valores y convierten el porcentaje,
+     * que es lo más costoso de cada línea; la validación y el grafo quedan en un solo hilo,
+     * así que el resultado y los mensajes son los mismos que con la lectura secuencial.
+     */
+    private class CsvSectionCollector implements ParallelCsvReader.SectionCollector<CsvSectionRows> {
+        private final CsvRowLoader rowLoader;
+        
+        CsvSectionCollector(CsvRowLoader rowLoader) {
+            this.rowLoader = rowLoader;
+        }
+        
+        @Override
+        public CsvSectionRows newPartial() {
+            return new CsvSectionRows();
+        }
+        
+        @Override
+        public void onRow(CsvSectionRows partial, CsvRowReader.CsvRow row) {
+            String percentage = row.getString(2);
+            double value = Double.NaN;
+            String error = null;
+            try {
+                value = getCsvPercentage(percentage);
+            } catch (IllegalArgumentException e) {
+                error = e.getMessage();
+            }
+            partial.add(row.getLineNumber(), row.getString(0), row.getString(1), value, error);
+        }
+        
+        @Override
+        public void merge(CsvSectionRows partial, int lineOffset) {
+            for (int i = 0; i < partial.size; i++) {
+                String error = partial.errors[i];
+                double value = partial.percentages[i];
+                rowLoader.onValues(lineOffset + partial.lines[i], partial.entities[i], partial.owners[i], () -> {
+                    if (error != null) {
+                        throw new IllegalArgumentException(error);
+                    }
+                    return value;
+                });
+            }
+        }
+    }
+    
+    /**
+     * Filas leídas de un tramo del CSV, con el porcentaje ya convertido.
+     */
+    private static class CsvSectionRows {
+        private int size;
+        private int[] lines = new int[1024];
+        private String[] entities = new String[1024];
+        private String[] owners = new String[1024];
+        private double[] percentages = new double[1024];
+        private String[] errors = new String[1024];
+        
+        void add(int line, String entity, String owner, double percentage, String error) {
+            if (size == lines.length) {
+                int capacity = size * 2;
+                lines = Arrays.copyOf(lines, capacity);
+                entities = Arrays.copyOf(entities, capacity);
+                owners = Arrays.copyOf(owners, capacity);
+                percentages = Arrays.copyOf(percentages, capacity);
+                errors = Arrays.copyOf(errors, capacity);
+            }
+            lines[size] = line;
+            entities[size] = entity;
+            owners[size] = owner;
+            percentages[size] = percentage;
+            errors[size] = error;
+            size++;
+        }
+    }
+    
+    /**
+     * Agrega las relaciones de las reglas {@code ARISTA} que no estaban en el archivo.
+     * Pasan por las mismas reglas {@code DESCARTAR} y los mismos registros de carga que
+     * las filas del archivo.
+     * 
+     * @return número de relaciones agregadas
+     */
+    private int addMissingEdges(CorrectionRules.Session corrections) {
+        int addedEdges = 0;
+        for (CorrectionRules.Edge edge : corrections.missingEdges()) {
+            String entity = corrections.spellingOf(edge.getEntity());
+            String owner = corrections.spellingOf(edge.getOwner());
+            if (corrections.isDropped(entity, owner)) {
+                logger.warn("La relación {} -> {} de una regla ARISTA coincide con una regla DESCARTAR, se descarta",
+                           entity, owner);
+                continue;
+            }
+            double normalizedPercentage = edge.getPercentage() / 100.0;
+            Node entityNode = getOrCreateNode(entity);
+            Node ownerNode = getOrCreateNode(owner);
+            if (entityNode.equals(ownerNode)) {
+                loadIssues.recordSelfLoop(entityNode.getName(), normalizedPercentage);
+                logger.debug("Regla ARISTA: {} figura como accionista de sí misma, se descarta", entity);
+                continue;
+            }
+            double previousPercentage = entityNode.getOwnershipPercentage(ownerNode);
+            if (previousPercentage > 0.0) {
+                loadIssues.recordDuplicateEdge(entityNode.getName(), ownerNode.getName(),
+                                               previousPercentage, normalizedPercentage);
+            }
+            entityNode.addOwner(ownerNode, normalizedPercentage);
+            addedEdges++;
+            logger.debug("Relación agregada por regla de corrección: {} -> {} ({}%)",
+                        entityNode.getName(), ownerNode.getName(), edge.getPercentage());
+        }
+        logger.info("Reglas de corrección: {} nombres corregidos, {} filas descartadas, {} porcentajes reemplazados, {} relaciones agregadas",
+                   corrections.getRenamedNames(), corrections.getDroppedRows(), corrections.getOverriddenRows(),
+                   addedEdges);
+        return addedEdges;
+    }
+    
+    /**
+     * Valida y congela el grafo recién cargado.
+     */
+    private void finishLoading() {
+        // Fusionar las variantes de un mismo nombre
+        nameResolution = null;
+        nameResolutionPending = false;
+        if (entityNameResolver != null) {
+            mergeEntityNames();
+        }
+        
+        // Congelar el grafo en formato compacto para los cálculos
+        snapshot = OwnershipGraph.freeze(graph.values());
+        incrementalIndex = null;
+        logger.debug("Grafo compacto: {} entidades, {} relaciones", snapshot.size(), snapshot.edgeCount());
+        validateAndCondense();
+    }
+    
+    /**
+     * Valida el grafo compacto recién cargado y condensa sus ciclos.
      */
-    private String getCellStringValue(Cell cell) {
-        if (cell == null) return "";
+    private void validateAndCondense() {
+        // Validar integridad del grafo
+        integrityReport = GraphIntegrityReport.validate(snapshot, loadIssues, parallelism);
+        if (integrityReport.isClean()) {
+            logger.info("{}", integrityReport);
+        } else {
+            logger.warn("{}", integrityReport);
+        }
         
-        CellType cellType = cell.getCellType();
+        // Condensar los ciclos y precalcular su resolución interna
+        condensation = OwnershipCondensation.build(snapshot);
+    }
+    
+    /**
+     * Agrupa los nombres del grafo con el resolutor y fusiona cada alias en su nombre
+     * canónico: los accionistas del alias pasan a la entidad canónica y las relaciones
+     * en que el alias es accionista pasan a apuntar a ella. Las participaciones repetidas
+     * se suman y las que quedarían de una entidad sobre sí misma se descartan.
+     */
+    private void mergeEntityNames() {
+        long startTime = System.nanoTime();
+        Map<String, Integer> relationCounts = new HashMap<>();
+        for (Node node : graph.values()) {
+            relationCounts.merge(node.getName(), node.getOwnerCount(), Integer::sum);
+            node.forEachOwner((owner, percentage) -> relationCounts.merge(owner.getName(), 1, Integer::sum));
+        }
+        nameResolution = entityNameResolver.resolve(relationCounts);
+        if (nameResolution.getMergedCount() == 0) {
+            return;
+        }
         
-        // Si es una fórmula, obtener el tipo de resultado evaluado
-        if (cellType == CellType.FORMULA) {
-            cellType = cell.getCachedFormulaResultType();
+        Map<Node, Node> replacements = new HashMap<>();
+        for (Map.Entry<String, String> alias : nameResolution.getAliases().entrySet()) {
+            replacements.put(graph.remove(alias.getKey()), graph.get(alias.getValue()));
+        }
+        for (Map.Entry<Node, Node> replacement : replacements.entrySet()) {
+            Node canonical = replacement.getValue();
+            replacement.getKey().forEachOwner((owner, percentage) ->
+                mergeOwner(canonical, replacements.getOrDefault(owner, owner), percentage));
+        }
+        for (Node node : graph.values()) {
+            for (Map.Entry<Node, Double> owner : new HashMap<>(node.getOwners()).entrySet()) {
+                Node canonical = replacements.get(owner.getKey());
+                if (canonical != null) {
+                    node.removeOwner(owner.getKey());
+                    mergeOwner(node, canonical, owner.getValue());
+                }
+            }
         }
         
-        switch (cellType) {
+        for (List<String> cluster : nameResolution.getClusters()) {
+            logger.info("Nombres unificados en '{}': {}", cluster.get(0), cluster.subList(1, cluster.size()));
+        }
+        logger.info("Resolución de nombres: {} nombres fusionados en {} grupos en {} ms",
+                   nameResolution.getMergedCount(), nameResolution.getClusters().size(),
+                   (System.nanoTime() - startTime) / 1_000_000);
+    }
+    
+    /**
+     * Suma una participación a la que el accionista ya tenga en la entidad.
+     */
+    private void mergeOwner(Node entity, Node owner, double percentage) {
+        if (owner.equals(entity)) {
+            logger.debug("Se descarta la participación de {} sobre sí misma ({}%) tras unificar nombres",
+                        entity.getName(), percentage * 100);
+            loadIssues.recordSelfLoop(entity.getName(), percentage);
+            return;
+        }
+        double merged = entity.getOwnershipPercentage(owner) + percentage;
+        if (merged > 1.0) {
+            logger.warn("La participación unificada de {} en {} excede el 100% ({}%), se limita al 100%",
+                       owner.getName(), entity.getName(), merged * 100);
+            merged = 1.0;
+        }
+        entity.addOwner(owner, merged);
+    }
+    
+    /**
+     * Obtiene el porcentaje de una línea del CSV. El valor se interpreta igual que en la
+     * copia en Excel que genera {@link CsvToExcelConverter}, para que un CSV dé el mismo
+     * resultado leído directamente o a través de esa copia.
+     */
+    private double getCsvPercentage(String value) {
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Celda de porcentaje no puede estar vacía");
+        }
+        double percentage;
+        try {
+            percentage = CsvToExcelConverter.parsePercentage(value);
+        } catch (NumberFormatException e) {
+            try {
+                percentage = Double.parseDouble(value);
+            } catch (NumberFormatException e2) {
+                throw new IllegalArgumentException("Valor de porcentaje inválido: " + value);
+            }
+        }
+        if (Double.isNaN(percentage)) {
+            throw new IllegalArgumentException("Valor de porcentaje inválido: " + value);
+        }
+        return percentage;
+    }
+    
+    /**
+     * Obtiene el valor string de una celda, manejando diferentes tipos.
+     */
+    private String getCellStringValue(StreamingXlsxReader.CellValue cell) {
+        switch (cell.getKind()) {
             case STRING:
-                return cell.getStringCellValue().trim();
+                return cell.getText().trim();
             case NUMERIC:
-                return String.valueOf((long) cell.getNumericCellValue()).trim();
+                return String.valueOf((long) cell.getNumber()).trim();
             case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue()).trim();
+                return String.valueOf(cell.getBoolean()).trim();
             case BLANK:
                 return "";
             default:
@@ -161,23 +939,14 @@ public class OwnershipCalculator {
     /**
      * Obtiene el valor numérico de una celda.
      */
-    private double getCellNumericValue(Cell cell) {
-        if (cell == null || cell.getCellType() == CellType.BLANK) {
-            throw new IllegalArgumentException("Celda de porcentaje no puede estar vacía");
-        }
-        
-        CellType cellType = cell.getCellType();
-        
-        // Si es una fórmula, obtener el tipo de resultado evaluado
-        if (cellType == CellType.FORMULA) {
-            cellType = cell.getCachedFormulaResultType();
-        }
-        
-        switch (cellType) {
+    private double getCellNumericValue(StreamingXlsxReader.CellValue cell) {
+        switch (cell.getKind()) {
+            case BLANK:
+                throw new IllegalArgumentException("Celda de porcentaje no puede estar vacía");
             case NUMERIC:
-                return cell.getNumericCellValue();
+                return cell.getNumber();
             case STRING:
-                String strValue = cell.getStringCellValue().trim();
+                String strValue = cell.getText().trim();
                 if (strValue.isEmpty()) {
                     throw new IllegalArgumentException("Celda de porcentaje no puede estar vacía");
                 }
@@ -187,100 +956,405 @@ public class OwnershipCalculator {
                     throw new IllegalArgumentException("Valor de porcentaje inválido: " + strValue);
                 }
             default:
-                throw new IllegalArgumentException("Tipo de celda no soportado para porcentaje: " + cell.getCellType());
+                // Las fórmulas se informan como tales, sin importar el tipo de su resultado
+                throw new IllegalArgumentException("Tipo de celda no soportado para porcentaje: "
+                    + (cell.isFormula() ? "FORMULA" : cell.getKind()));
+        }
+    }
+    
+    /**
+     * Calcula las participaciones finales desde una entidad raíz y las deja disponibles
+     * en {@link #getFinalResults()} y {@link #getBeneficiaryPaths()}.
+     * Para consultas concurrentes use {@link #getQueryService()}.
+     * 
+     * @param rootEntityName nombre de la entidad raíz
+     * @throws IllegalArgumentException si la entidad raíz no existe
+     */
+    public void calculateFinalOwnership(String rootEntityName) {
+        OwnershipResult result = getQueryService().query(resolveEntityName(rootEntityName));
+        if (result.getSolverReport() != null) {
+            lastSolverReport = result.getSolverReport();
         }
+        lastResult = result;
+        lastResultStale = false;
     }
     
     /**
-     * Valida la integridad del grafo después de la carga.
+     * Último resultado calculado. Si el grafo cambió desde entonces con
+     * {@link #addOwnership}, {@link #updateOwnership} o {@link #removeOwnership}, la
+     * consulta se repite para la misma raíz antes de devolverlo.
      */
-    private void validateGraphIntegrity() {
-        for (Node node : graph.values()) {
-            try {
-                node.validateOwnership();
-            } catch (IllegalStateException e) {
-                logger.warn("Advertencia de integridad: {}", e.getMessage());
-                // No lanzamos excepción para permitir casos donde la suma sea menor al 100%
+    private OwnershipResult currentResult() {
+        if (lastResultStale) {
+            lastResultStale = false;
+            if (lastResult.getRootEntity() != null) {
+                calculateFinalOwnership(lastResult.getRootEntity());
             }
         }
+        return lastResult;
+    }
+    
+    /**
+     * Crea un servicio de consultas sin estado sobre el grafo congelado vigente, con la
+     * configuración actual de la calculadora. El servicio puede compartirse entre hilos;
+     * no refleja cambios posteriores en el grafo ni en la configuración.
+     * 
+     * @return servicio de consultas
+     */
+    public OwnershipQueryService getQueryService() {
+        return new OwnershipQueryService.Builder()
+            .withCalculationMode(calculationMode)
+            .withSolverParameters(solverTolerance, solverMaxIterations)
+            .withParallelism(parallelism)
+            .withBeneficiaryThreshold(beneficiaryThreshold)
+            .withCondensation(ensureCondensation())
+            .build(ensureSnapshot());
     }
     
     /**
-     * Calcula las participaciones finales desde una entidad raíz.
+     * Obtiene todas las entidades que una persona o sociedad posee directa o indirectamente,
+     * con su participación efectiva en cada una.
+     * 
+     * @param beneficiaryName nombre del beneficiario
+     * @return mapa de entidad -> participación efectiva (0.0 - 1.0), de mayor a menor
+     * @throws IllegalArgumentException si la entidad no existe
+     */
+    public Map<String, Double> getControlledEntities(String beneficiaryName) {
+        return getQueryService().queryControlledEntities(resolveEntityName(beneficiaryName));
+    }
+    
+    /**
+     * Obtiene los K mayores beneficiarios finales de una entidad sin calcular el resultado
+     * completo. No modifica los resultados de {@link #calculateFinalOwnership(String)}.
      * 
      * @param rootEntityName nombre de la entidad raíz
+     * @param k número de beneficiarios
+     * @return mapa de beneficiario -> porcentaje final (0.0 - 1.0), de mayor a menor
      * @throws IllegalArgumentException si la entidad raíz no existe
      */
-    public void calculateFinalOwnership(String rootEntityName) {
-        logger.info("Calculando participaciones finales desde: {}", rootEntityName);
-        
-        Node rootNode = graph.get(rootEntityName.trim());
-        if (rootNode == null) {
+    public Map<String, Double> topBeneficiaries(String rootEntityName, int k) {
+        OwnershipCondensation condensation = ensureCondensation();
+        int rootId = condensation.getOwnershipGraph().idOf(resolveEntityName(rootEntityName));
+        if (rootId < 0) {
             throw new IllegalArgumentException("Entidad raíz no encontrada: " + rootEntityName);
         }
         
-        // Limpiar resultados anteriores
-        finalResults.clear();
-        beneficiaryPaths.clear();
-        visitedInCurrentPath.clear();
-        
-        // Iniciar cálculo recursivo
-        calculateOwnershipRecursive(rootNode, 1.0, rootEntityName, new HashSet<>());
-        
-        logger.info("Cálculo completado. Beneficiarios finales encontrados: {}", finalResults.size());
+        long startTime = System.nanoTime();
+        Map<String, Double> top = new TopBeneficiariesQuery(condensation, TOP_K_PRECISION, solverTolerance,
+                                                            solverMaxIterations).query(rootId, k);
+        logger.info("Top {} beneficiarios de {} calculados en {} ms", k, rootEntityName,
+                   (System.nanoTime() - startTime) / 1_000_000.0);
+        return top;
     }
     
     /**
-     * Cálculo recursivo de participaciones con detección de ciclos.
+     * Enumera de forma perezosa las rutas por las que la raíz llega a un beneficiario,
+     * cada una con el porcentaje que aporta.
      * 
-     * @param node nodo actual
-     * @param accumulatedPercentage porcentaje acumulado hasta este nodo
-     * @param path ruta completa hasta este nodo
-     * @param visitedInPath nodos visitados en la ruta actual (para detectar ciclos)
+     * @param rootEntityName nombre de la entidad raíz
+     * @param beneficiaryName nombre del beneficiario
+     * @param maxPaths número máximo de rutas
+     * @param maxDepth número máximo de relaciones por ruta
+     * @return iterador de rutas
+     * @throws IllegalArgumentException si alguna entidad no existe
      */
-    private void calculateOwnershipRecursive(Node node, double accumulatedPercentage, 
-                                           String path, Set<String> visitedInPath) {
-        
-        String nodeName = node.getName();
-        
-        // Detectar ciclos
-        if (visitedInPath.contains(nodeName)) {
-            logger.warn("Ciclo detectado en la ruta: {} -> {}", path, nodeName);
-            // Tratamos el nodo como beneficiario final para evitar recursión infinita
-            finalResults.merge(nodeName, accumulatedPercentage, Double::sum);
-            beneficiaryPaths.put(nodeName, path + " [CICLO DETECTADO]");
-            return;
+    public OwnershipPathIterator pathIterator(String rootEntityName, String beneficiaryName, int maxPaths, int maxDepth) {
+        OwnershipGraph ownershipGraph = ensureSnapshot();
+        int rootId = ownershipGraph.idOf(resolveEntityName(rootEntityName));
+        if (rootId < 0) {
+            throw new IllegalArgumentException("Entidad raíz no encontrada: " + rootEntityName);
         }
-        
-        // Si no tiene propietarios, es un beneficiario final
-        if (!node.hasOwners()) {
-            finalResults.merge(nodeName, accumulatedPercentage, Double::sum);
-            beneficiaryPaths.put(nodeName, path);
-            logger.debug("Beneficiario final: {} ({}%)", nodeName, accumulatedPercentage * 100);
-            return;
+        int beneficiaryId = ownershipGraph.idOf(resolveEntityName(beneficiaryName));
+        if (beneficiaryId < 0) {
+            throw new IllegalArgumentException("Beneficiario no encontrado: " + beneficiaryName);
         }
+        return new OwnershipPathIterator(ownershipGraph, rootId, beneficiaryId, maxPaths, maxDepth);
+    }
+    
+    /**
+     * Versión {@link Stream} de {@link #pathIterator(String, String, int, int)}.
+     * Las rutas se generan a medida que se consumen.
+     * 
+     * @param rootEntityName nombre de la entidad raíz
+     * @param beneficiaryName nombre del beneficiario
+     * @param maxPaths número máximo de rutas
+     * @param maxDepth número máximo de relaciones por ruta
+     * @return flujo secuencial de rutas
+     */
+    public Stream<OwnershipPath> streamPaths(String rootEntityName, String beneficiaryName, int maxPaths, int maxDepth) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+            pathIterator(rootEntityName, beneficiaryName, maxPaths, maxDepth),
+            Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+    
+    /**
+     * Calcula los beneficiarios finales de todas las entidades en una sola pasada.
+     * Las componentes del grafo condensado se procesan en orden topológico inverso
+     * (primero los beneficiarios finales y luego quienes los poseen) y cada entidad combina
+     * los vectores ya calculados de sus accionistas directos, sin recalcular sociedades
+     * compartidas. Los miembros de un ciclo combinan los vectores de los accionistas fuera
+     * del ciclo y los reparten con la resolución precalculada del ciclo; solo los ciclos
+     * sin resolución precalculada se resuelven con el solucionador iterativo.
+     * 
+     * @return resultados por entidad, consultables y exportables
+     */
+    public UboResultStore calculateAllRoots() {
+        logger.info("Calculando beneficiarios finales de todas las entidades");
+        long startTime = System.currentTimeMillis();
+        
+        OwnershipGraph ownershipGraph = ensureSnapshot();
+        OwnershipCondensation condensation = ensureCondensation();
+        int size = ownershipGraph.size();
         
-        // Continuar recursión con los propietarios
-        Set<String> newVisitedPath = new HashSet<>(visitedInPath);
-        newVisitedPath.add(nodeName);
+        int[][] beneficiaryIds = new int[size][];
+        double[][] shares = new double[size][];
+        double[] scratch = new double[size];
+        boolean[] touched = new boolean[size];
+        int[] touchedIds = new int[size];
+        IterativeOwnershipSolver solver = null;
         
-        for (Map.Entry<Node, Double> ownerEntry : node.getOwners().entrySet()) {
-            Node owner = ownerEntry.getKey();
-            double ownershipPercentage = ownerEntry.getValue();
-            double newAccumulatedPercentage = accumulatedPercentage * ownershipPercentage;
-            String newPath = path + " → " + owner.getName();
+        for (int component = condensation.componentCount() - 1; component >= 0; component--) {
+            int first = condensation.componentStart(component);
+            int last = condensation.componentEnd(component);
             
-            calculateOwnershipRecursive(owner, newAccumulatedPercentage, newPath, newVisitedPath);
+            if (!condensation.isCyclic(component)) {
+                int id = condensation.memberAt(first);
+                if (!ownershipGraph.hasOwners(id)) {
+                    beneficiaryIds[id] = new int[] {id};
+                    shares[id] = new double[] {1.0};
+                    continue;
+                }
+                // Combinar los vectores de los accionistas directos
+                int touchedCount = 0;
+                for (int edge = ownershipGraph.ownerStart(id); edge < ownershipGraph.ownerEnd(id); edge++) {
+                    int owner = ownershipGraph.ownerIdAt(edge);
+                    touchedCount = accumulateVector(beneficiaryIds[owner], shares[owner], ownershipGraph.weightAt(edge),
+                                                    scratch, touched, touchedIds, touchedCount);
+                }
+                beneficiaryIds[id] = Arrays.copyOf(touchedIds, touchedCount);
+                shares[id] = drainScratch(touchedIds, touchedCount, scratch, touched);
+                continue;
+            }
+            
+            if (!condensation.hasResolution(component)) {
+                if (solver == null) {
+                    solver = new IterativeOwnershipSolver(solverTolerance, solverMaxIterations);
+                }
+                logger.warn("Ciclo de {} entidades sin resolución precalculada, se resuelve con el solucionador iterativo",
+                           last - first);
+                for (int pos = first; pos < last; pos++) {
+                    int id = condensation.memberAt(pos);
+                    Map<String, Double> rootResults = new HashMap<>();
+                    solver.solve(ownershipGraph, id, ownershipGraph.nameOf(id), rootResults, new HashMap<>());
+                    beneficiaryIds[id] = new int[rootResults.size()];
+                    shares[id] = new double[rootResults.size()];
+                    int k = 0;
+                    for (Map.Entry<String, Double> entry : rootResults.entrySet()) {
+                        beneficiaryIds[id][k] = ownershipGraph.idOf(entry.getKey());
+                        shares[id][k] = entry.getValue();
+                        k++;
+                    }
+                }
+                continue;
+            }
+            
+            // Vector que cada miembro recibe de sus accionistas fuera del ciclo
+            int k = last - first;
+            int[][] externalIds = new int[k][];
+            double[][] externalShares = new double[k][];
+            for (int pos = first; pos < last; pos++) {
+                int id = condensation.memberAt(pos);
+                int touchedCount = 0;
+                for (int edge = ownershipGraph.ownerStart(id); edge < ownershipGraph.ownerEnd(id); edge++) {
+                    int owner = ownershipGraph.ownerIdAt(edge);
+                    if (condensation.componentOf(owner) != component) {
+                        touchedCount = accumulateVector(beneficiaryIds[owner], shares[owner], ownershipGraph.weightAt(edge),
+                                                        scratch, touched, touchedIds, touchedCount);
+                    }
+                }
+                externalIds[pos - first] = Arrays.copyOf(touchedIds, touchedCount);
+                externalShares[pos - first] = drainScratch(touchedIds, touchedCount, scratch, touched);
+            }
+            
+            // Repartir dentro del ciclo: x(i) = Σ N[i][j] · b(j)
+            for (int i = 0; i < k; i++) {
+                int id = condensation.memberAt(first + i);
+                int touchedCount = 0;
+                for (int j = 0; j < k; j++) {
+                    double coefficient = condensation.resolutionAt(component, i, j);
+                    if (coefficient != 0.0) {
+                        touchedCount = accumulateVector(externalIds[j], externalShares[j], coefficient,
+                                                        scratch, touched, touchedIds, touchedCount);
+                    }
+                }
+                beneficiaryIds[id] = Arrays.copyOf(touchedIds, touchedCount);
+                shares[id] = drainScratch(touchedIds, touchedCount, scratch, touched);
+            }
+        }
+        
+        UboResultStore store = new UboResultStore(ownershipGraph, beneficiaryIds, shares);
+        logger.info("Cálculo completado para {} entidades ({} participaciones finales) en {} ms",
+                   size, store.getEntryCount(), System.currentTimeMillis() - startTime);
+        return store;
+    }
+    
+    /**
+     * Suma {@code weight × vector} al acumulador disperso y devuelve el nuevo número
+     * de beneficiarios tocados.
+     */
+    private static int accumulateVector(int[] ids, double[] values, double weight, double[] scratch,
+                                        boolean[] touched, int[] touchedIds, int touchedCount) {
+        for (int k = 0; k < ids.length; k++) {
+            int beneficiary = ids[k];
+            if (!touched[beneficiary]) {
+                touched[beneficiary] = true;
+                touchedIds[touchedCount++] = beneficiary;
+            }
+            scratch[beneficiary] += weight * values[k];
         }
+        return touchedCount;
     }
     
     /**
-     * Obtiene los resultados finales de participación.
+     * Copia los valores acumulados en el orden de {@code touchedIds} y limpia el acumulador.
+     */
+    private static double[] drainScratch(int[] touchedIds, int touchedCount, double[] scratch, boolean[] touched) {
+        double[] values = new double[touchedCount];
+        for (int k = 0; k < touchedCount; k++) {
+            int beneficiary = touchedIds[k];
+            values[k] = scratch[beneficiary];
+            scratch[beneficiary] = 0.0;
+            touched[beneficiary] = false;
+        }
+        return values;
+    }
+    
+    /**
+     * Agrega una relación de propiedad y actualiza los resultados incrementales.
+     * Si el accionista ya era propietario de la entidad, su porcentaje se reemplaza.
+     * 
+     * @param entityName entidad poseída
+     * @param ownerName accionista (se crea si no existe)
+     * @param percentage porcentaje de participación (0.0 - 1.0)
+     * @return número de entidades recalculadas
+     */
+    public int addOwnership(String entityName, String ownerName, double percentage) {
+        IncrementalOwnershipIndex index = ensureIncrementalIndex();
+        Node entityNode = getOrCreateNode(resolveEntityName(entityName));
+        Node ownerNode = getOrCreateNode(resolveEntityName(ownerName));
+        entityNode.addOwner(ownerNode, percentage);
+        lastResultStale = true;
+        warnIfOversubscribed(entityNode);
+        return index.onOwnershipChanged(entityNode, ownerNode, true);
+    }
+    
+    /**
+     * Modifica el porcentaje de una relación de propiedad existente.
+     * 
+     * @param entityName entidad poseída
+     * @param ownerName accionista
+     * @param percentage nuevo porcentaje de participación (0.0 - 1.0)
+     * @return número de entidades recalculadas
+     * @throws IllegalArgumentException si la relación no existe
+     */
+    public int updateOwnership(String entityName, String ownerName, double percentage) {
+        Node entityNode = requireNode(entityName);
+        if (entityNode.getOwnershipPercentage(requireNode(ownerName)) == 0.0) {
+            throw new IllegalArgumentException("No existe la relación: " + entityName + " -> " + ownerName);
+        }
+        return addOwnership(entityName, ownerName, percentage);
+    }
+    
+    /**
+     * Elimina una relación de propiedad y actualiza los resultados incrementales.
+     * 
+     * @param entityName entidad poseída
+     * @param ownerName accionista
+     * @return número de entidades recalculadas
+     * @throws IllegalArgumentException si la relación no existe
+     */
+    public int removeOwnership(String entityName, String ownerName) {
+        IncrementalOwnershipIndex index = ensureIncrementalIndex();
+        Node entityNode = requireNode(entityName);
+        Node ownerNode = requireNode(ownerName);
+        if (!entityNode.removeOwner(ownerNode)) {
+            throw new IllegalArgumentException("No existe la relación: " + entityName + " -> " + ownerName);
+        }
+        lastResultStale = true;
+        return index.onOwnershipChanged(entityNode, ownerNode, false);
+    }
+    
+    /**
+     * Obtiene los beneficiarios finales vigentes de cualquier entidad, aprovechando los
+     * resultados incrementales (se calculan para todas las entidades la primera vez).
+     * 
+     * @param entityName nombre de la entidad
+     * @return mapa de beneficiario -> porcentaje final (0.0 - 1.0), ordenado de mayor a menor
+     * @throws IllegalArgumentException si la entidad no existe
+     */
+    public Map<String, Double> getCurrentBeneficiaries(String entityName) {
+        return ensureIncrementalIndex().getBeneficiaries(resolveEntityName(entityName));
+    }
+    
+    /**
+     * Obtiene el índice incremental, construyéndolo con un cálculo completo si no existe.
+     */
+    private IncrementalOwnershipIndex ensureIncrementalIndex() {
+        if (incrementalIndex == null) {
+            incrementalIndex = new IncrementalOwnershipIndex(nodes(), calculateAllRoots(), solverTolerance,
+                                                             solverMaxIterations);
+        }
+        return incrementalIndex;
+    }
+    
+    private Node requireNode(String name) {
+        Node node = nodes().get(resolveEntityName(name));
+        if (node == null) {
+            throw new IllegalArgumentException("Entidad no encontrada: " + name);
+        }
+        return node;
+    }
+    
+    private void warnIfOversubscribed(Node node) {
+        try {
+            node.validateOwnership();
+        } catch (IllegalStateException e) {
+            logger.warn("Advertencia de integridad: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Obtiene el grafo compacto vigente, reconstruyéndolo si el grafo cambió desde la última carga.
+     */
+    private OwnershipGraph ensureSnapshot() {
+        if (graphFromSnapshot) {
+            return snapshot;
+        }
+        if (snapshot == null || snapshot.isStale() || snapshot.size() != graph.size()) {
+            snapshot = OwnershipGraph.freeze(graph.values());
+        }
+        return snapshot;
+    }
+    
+    /**
+     * Obtiene la condensación del grafo compacto vigente, recalculándola si el grafo cambió.
+     */
+    private OwnershipCondensation ensureCondensation() {
+        OwnershipGraph ownershipGraph = ensureSnapshot();
+        if (condensation == null || condensation.getOwnershipGraph() != ownershipGraph) {
+            condensation = OwnershipCondensation.build(ownershipGraph);
+        }
+        return condensation;
+    }
+    
+    /**
+     * Obtiene los resultados finales de participación del último cálculo, repetido si el
+     * grafo cambió desde entonces.
      * 
      * @return mapa de beneficiario -> porcentaje final (0.0 - 1.0)
      */
     public Map<String, Double> getFinalResults() {
-        return new HashMap<>(finalResults);
+        return currentResult().getFinalResults();
     }
     
     /**
@@ -289,7 +1363,7 @@ public class OwnershipCalculator {
      * @return mapa de beneficiario -> ruta completa
      */
     public Map<String, String> getBeneficiaryPaths() {
-        return new HashMap<>(beneficiaryPaths);
+        return currentResult().getBeneficiaryPaths();
     }
     
     /**
@@ -298,7 +1372,7 @@ public class OwnershipCalculator {
      * @return mapa de nombre -> nodo
      */
     public Map<String, Node> getGraph() {
-        return new HashMap<>(graph);
+        return Collections.unmodifiableMap(nodes());
     }
     
     /**
@@ -307,11 +1381,47 @@ public class OwnershipCalculator {
      * @return estadísticas como string
      */
     public String getGraphStatistics() {
-        int totalEntities = graph.size();
-        int entitiesWithOwners = (int) graph.values().stream().filter(Node::hasOwners).count();
+        OwnershipGraph ownershipGraph = ensureSnapshot();
+        int totalEntities = ownershipGraph.size();
+        int entitiesWithOwners = 0;
+        for (int id = 0; id < totalEntities; id++) {
+            if (ownershipGraph.hasOwners(id)) {
+                entitiesWithOwners++;
+            }
+        }
         int finalBeneficiaries = totalEntities - entitiesWithOwners;
         
-        return String.format("Estadísticas del grafo: %d entidades totales, %d con propietarios, %d beneficiarios finales",
-                           totalEntities, entitiesWithOwners, finalBeneficiaries);
+        StringBuilder statistics = new StringBuilder(String.format(
+            "Estadísticas del grafo: %d entidades totales, %d con propietarios, %d beneficiarios finales",
+            totalEntities, entitiesWithOwners, finalBeneficiaries));
+        
+        if (nameResolution != null && nameResolution.getMergedCount() > 0) {
+            statistics.append(String.format(", %d nombres unificados en %d entidades",
+                nameResolution.getMergedCount(), nameResolution.getClusters().size()));
+        }
+        
+        OwnershipCondensation graphCondensation = ensureCondensation();
+        int cycles = graphCondensation.getCyclicComponentCount();
+        if (cycles > 0) {
+            statistics.append(String.format(", %d ciclos (componentes fuertemente conexas):", cycles));
+            int listed = 0;
+            for (int component = 0; component < graphCondensation.componentCount(); component++) {
+                if (!graphCondensation.isCyclic(component)) {
+                    continue;
+                }
+                if (listed == MAX_LISTED_CYCLES) {
+                    statistics.append(String.format(" ... y %d más", cycles - listed));
+                    break;
+                }
+                List<String> members = graphCondensation.getComponentMembers(component);
+                String memberList = members.size() > MAX_LISTED_CYCLE_MEMBERS
+                    ? String.join(", ", members.subList(0, MAX_LISTED_CYCLE_MEMBERS))
+                        + String.format(" ... y %d más", members.size() - MAX_LISTED_CYCLE_MEMBERS)
+                    : String.join(", ", members);
+                statistics.append(String.format(" [%d entidades: %s]", members.size(), memberList));
+                listed++;
+            }
+        }
+        return statistics.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,397 @@
+package com.davivienda.excelpdf.application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.davivienda.excelpdf.domain.OwnershipGraph;
+
+/**
+ * Condensación del grafo de participaciones en componentes fuertemente conexas.
+ *
+ * <p>Se calcula una sola vez al cargar el grafo con el algoritmo de Tarjan (iterativo).
+ * Cada ciclo de participaciones cruzadas queda agrupado en una componente, y las
+ * componentes se numeran en orden topológico: las relaciones entre componentes distintas
+ * siempre van de una componente a otra de número mayor, por lo que el grafo condensado
+ * es acíclico.
+ *
+ * <p>Para cada componente cíclica se precalcula su resolución interna
+ * {@code N = (I − W)⁻¹}, donde {@code W} son las participaciones entre sus miembros.
+ * El porcentaje que entra a la componente se reparte entre sus miembros con {@code Nᵀ}
+ * y el vector de beneficiarios de cada miembro se obtiene con {@code N}. Las componentes
+ * demasiado grandes, o que no ceden participación hacia fuera, se resuelven en cada
+ * consulta con Gauss-Seidel.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public final class OwnershipCondensation {
+
+    private static final Logger logger = LoggerFactory.getLogger(OwnershipCondensation.class);
+
+    /** Tamaño máximo de un ciclo para precalcular su resolución densa. */
+    static final int MAX_DENSE_COMPONENT_SIZE = 512;
+
+    private static final double SINGULAR_PIVOT = 1e-12;
+
+    private final OwnershipGraph ownershipGraph;
+    private final int[] componentOf;
+    private final int[] localIndex;
+    private final int[] componentOffsets;
+    private final int[] members;
+    private final boolean[] cyclic;
+    private final double[][] resolutions;
+    private final int cyclicCount;
+
+    private OwnershipCondensation(OwnershipGraph ownershipGraph, int[] componentOf, int[] componentOffsets,
+                                  int[] members, boolean[] cyclic) {
+        this.ownershipGraph = ownershipGraph;
+        this.componentOf = componentOf;
+        this.componentOffsets = componentOffsets;
+        this.members = members;
+        this.cyclic = cyclic;
+
+        this.localIndex = new int[componentOf.length];
+        for (int c = 0; c < cyclic.length; c++) {
+            for (int pos = componentOffsets[c]; pos < componentOffsets[c + 1]; pos++) {
+                localIndex[members[pos]] = pos - componentOffsets[c];
+            }
+        }
+
+        int count = 0;
+        this.resolutions = new double[cyclic.length][];
+        for (int c = 0; c < cyclic.length; c++) {
+            if (cyclic[c]) {
+                count++;
+                resolutions[c] = precomputeResolution(c);
+            }
+        }
+        this.cyclicCount = count;
+    }
+
+    /**
+     * Calcula la condensación de un grafo congelado.
+     *
+     * @param ownershipGraph grafo compacto
+     * @return condensación del grafo
+     */
+    public static OwnershipCondensation build(OwnershipGraph ownershipGraph) {
+        long startTime = System.nanoTime();
+        int size = ownershipGraph.size();
+
+        int[] index = new int[size];
+        int[] lowLink = new int[size];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[size];
+        int[] componentStack = new int[size];
+        int componentTop = 0;
+        int[] callStack = new int[size];
+        int[] edgeCursor = new int[size];
+        int callDepth = 0;
+        int nextIndex = 0;
+
+        // Orden de emisión de Tarjan: primero las componentes sin salida (beneficiarios)
+        int[] emittedComponent = new int[size];
+        int emittedCount = 0;
+
+        for (int start = 0; start < size; start++) {
+            if (index[start] >= 0) {
+                continue;
+            }
+            index[start] = lowLink[start] = nextIndex++;
+            componentStack[componentTop++] = start;
+            onStack[start] = true;
+            callStack[callDepth] = start;
+            edgeCursor[callDepth] = ownershipGraph.ownerStart(start);
+            callDepth++;
+
+            while (callDepth > 0) {
+                int top = callDepth - 1;
+                int node = callStack[top];
+                if (edgeCursor[top] < ownershipGraph.ownerEnd(node)) {
+                    int owner = ownershipGraph.ownerIdAt(edgeCursor[top]++);
+                    if (index[owner] < 0) {
+                        index[owner] = lowLink[owner] = nextIndex++;
+                        componentStack[componentTop++] = owner;
+                        onStack[owner] = true;
+                        callStack[callDepth] = owner;
+                        edgeCursor[callDepth] = ownershipGraph.ownerStart(owner);
+                        callDepth++;
+                    } else if (onStack[owner]) {
+                        lowLink[node] = Math.min(lowLink[node], index[owner]);
+                    }
+                    continue;
+                }
+
+                callDepth--;
+                if (callDepth > 0) {
+                    int parent = callStack[callDepth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+                if (lowLink[node] == index[node]) {
+                    int member;
+                    do {
+                        member = componentStack[--componentTop];
+                        onStack[member] = false;
+                        emittedComponent[member] = emittedCount;
+                    } while (member != node);
+                    emittedCount++;
+                }
+            }
+        }
+
+        // Numerar en orden topológico (inverso al de emisión) y agrupar miembros
+        int[] componentOf = new int[size];
+        int[] componentOffsets = new int[emittedCount + 1];
+        for (int id = 0; id < size; id++) {
+            componentOf[id] = emittedCount - 1 - emittedComponent[id];
+            componentOffsets[componentOf[id] + 1]++;
+        }
+        for (int c = 0; c < emittedCount; c++) {
+            componentOffsets[c + 1] += componentOffsets[c];
+        }
+        int[] members = new int[size];
+        int[] cursor = Arrays.copyOf(componentOffsets, emittedCount);
+        for (int id = 0; id < size; id++) {
+            members[cursor[componentOf[id]]++] = id;
+        }
+
+        boolean[] cyclic = new boolean[emittedCount];
+        for (int c = 0; c < emittedCount; c++) {
+            if (componentOffsets[c + 1] - componentOffsets[c] > 1) {
+                cyclic[c] = true;
+            } else {
+                int id = members[componentOffsets[c]];
+                for (int edge = ownershipGraph.ownerStart(id); edge < ownershipGraph.ownerEnd(id); edge++) {
+                    if (ownershipGraph.ownerIdAt(edge) == id) {
+                        cyclic[c] = true;
+                    }
+                }
+            }
+        }
+
+        OwnershipCondensation condensation =
+            new OwnershipCondensation(ownershipGraph, componentOf, componentOffsets, members, cyclic);
+        logger.info("Condensación del grafo: {} componentes, {} ciclos, {} ms", emittedCount,
+                   condensation.cyclicCount, (System.nanoTime() - startTime) / 1_000_000);
+        return condensation;
+    }
+
+    /**
+     * Calcula {@code (I − W)⁻¹} de una componente cíclica con Gauss-Jordan.
+     *
+     * @return matriz por filas de tamaño k×k, o null si no se precalcula
+     */
+    private double[] precomputeResolution(int component) {
+        int start = componentOffsets[component];
+        int k = componentOffsets[component + 1] - start;
+        if (k > MAX_DENSE_COMPONENT_SIZE) {
+            logger.info("Ciclo de {} entidades: se resolverá en cada consulta", k);
+            return null;
+        }
+
+        // Matriz aumentada [I − W | I]
+        int width = 2 * k;
+        double[] augmented = new double[k * width];
+        for (int i = 0; i < k; i++) {
+            augmented[i * width + i] = 1.0;
+            augmented[i * width + k + i] = 1.0;
+            int id = members[start + i];
+            for (int edge = ownershipGraph.ownerStart(id); edge < ownershipGraph.ownerEnd(id); edge++) {
+                int owner = ownershipGraph.ownerIdAt(edge);
+                if (componentOf[owner] == component) {
+                    augmented[i * width + localIndex[owner]] -= ownershipGraph.weightAt(edge);
+                }
+            }
+        }
+
+        for (int col = 0; col < k; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < k; row++) {
+                if (Math.abs(augmented[row * width + col]) > Math.abs(augmented[pivot * width + col])) {
+                    pivot = row;
+                }
+            }
+            if (Math.abs(augmented[pivot * width + col]) < SINGULAR_PIVOT) {
+                logger.warn("El ciclo que contiene a {} no cede participación hacia fuera; se resolverá en cada consulta",
+                           ownershipGraph.nameOf(members[start]));
+                return null;
+            }
+            if (pivot != col) {
+                for (int j = 0; j < width; j++) {
+                    double swap = augmented[col * width + j];
+                    augmented[col * width + j] = augmented[pivot * width + j];
+                    augmented[pivot * width + j] = swap;
+                }
+            }
+            double scale = 1.0 / augmented[col * width + col];
+            for (int j = 0; j < width; j++) {
+                augmented[col * width + j] *= scale;
+            }
+            for (int row = 0; row < k; row++) {
+                double factor = augmented[row * width + col];
+                if (row != col && factor != 0.0) {
+                    for (int j = 0; j < width; j++) {
+                        augmented[row * width + j] -= factor * augmented[col * width + j];
+                    }
+                }
+            }
+        }
+
+        double[] inverse = new double[k * k];
+        for (int i = 0; i < k; i++) {
+            System.arraycopy(augmented, i * width + k, inverse, i * k, k);
+        }
+        return inverse;
+    }
+
+    /**
+     * Reparte entre los miembros de una componente cíclica el porcentaje que entra desde
+     * fuera. Al llamar, {@code mass} contiene para cada miembro solo lo recibido desde otras
+     * componentes; al volver contiene el porcentaje total que llega a cada miembro.
+     *
+     * @param component componente cíclica
+     * @param mass porcentaje por identificador de entidad
+     * @param tolerance residuo máximo si hay que iterar
+     * @param maxIterations iteraciones máximas si hay que iterar
+     */
+    public void resolveInflow(int component, double[] mass, double tolerance, int maxIterations) {
+        int start = componentOffsets[component];
+        int k = componentOffsets[component + 1] - start;
+        double[] inflow = new double[k];
+        for (int i = 0; i < k; i++) {
+            inflow[i] = mass[members[start + i]];
+        }
+
+        double[] inverse = resolutions[component];
+        if (inverse != null) {
+            for (int j = 0; j < k; j++) {
+                double value = 0.0;
+                for (int i = 0; i < k; i++) {
+                    value += inverse[i * k + j] * inflow[i];
+                }
+                mass[members[start + j]] = value;
+            }
+            return;
+        }
+
+        // Gauss-Seidel restringido a la componente
+        int iterations = 0;
+        double residual = Double.POSITIVE_INFINITY;
+        while (iterations < maxIterations && residual > tolerance) {
+            residual = 0.0;
+            for (int j = 0; j < k; j++) {
+                int id = members[start + j];
+                double value = inflow[j];
+                for (int pos = ownershipGraph.ownedStart(id); pos < ownershipGraph.ownedEnd(id); pos++) {
+                    int owned = ownershipGraph.ownedIdAt(pos);
+                    if (componentOf[owned] == component) {
+                        value += ownershipGraph.ownedWeightAt(pos) * mass[owned];
+                    }
+                }
+                residual = Math.max(residual, Math.abs(value - mass[id]));
+                mass[id] = value;
+            }
+            iterations++;
+        }
+        if (residual > tolerance) {
+            logger.warn("El ciclo que contiene a {} no convergió en {} iteraciones (residuo {})",
+                       ownershipGraph.nameOf(members[start]), iterations, residual);
+        }
+    }
+
+    /**
+     * @return grafo condensado
+     */
+    public OwnershipGraph getOwnershipGraph() {
+        return ownershipGraph;
+    }
+
+    /**
+     * @return número de componentes (en orden topológico, de 0 a count − 1)
+     */
+    public int componentCount() {
+        return cyclic.length;
+    }
+
+    public int componentOf(int id) {
+        return componentOf[id];
+    }
+
+    /**
+     * @return posición del miembro dentro de su componente
+     */
+    public int localIndexOf(int id) {
+        return localIndex[id];
+    }
+
+    /**
+     * @return primera posición de los miembros de la componente
+     */
+    public int componentStart(int component) {
+        return componentOffsets[component];
+    }
+
+    /**
+     * @return posición siguiente al último miembro de la componente
+     */
+    public int componentEnd(int component) {
+        return componentOffsets[component + 1];
+    }
+
+    public int memberAt(int position) {
+        return members[position];
+    }
+
+    /**
+     * @return true si la componente tiene más de un miembro o una participación propia
+     */
+    public boolean isCyclic(int component) {
+        return cyclic[component];
+    }
+
+    /**
+     * @return true si la resolución interna de la componente está precalculada
+     */
+    public boolean hasResolution(int component) {
+        return resolutions[component] != null;
+    }
+
+    /**
+     * Obtiene un coeficiente de la resolución interna precalculada.
+     *
+     * @param component componente cíclica con resolución
+     * @param from posición local del miembro que recibe la participación
+     * @param to posición local del miembro que la transmite
+     * @return coeficiente {@code N[from][to]}
+     */
+    public double resolutionAt(int component, int from, int to) {
+        int k = componentOffsets[component + 1] - componentOffsets[component];
+        return resolutions[component][from * k + to];
+    }
+
+    /**
+     * @return número de componentes cíclicas
+     */
+    public int getCyclicComponentCount() {
+        return cyclicCount;
+    }
+
+    /**
+     * Obtiene los nombres de los miembros de una componente.
+     *
+     * @param component componente
+     * @return lista de nombres de solo lectura
+     */
+    public List<String> getComponentMembers(int component) {
+        List<String> names = new ArrayList<>(componentOffsets[component + 1] - componentOffsets[component]);
+        for (int pos = componentOffsets[component]; pos < componentOffsets[component + 1]; pos++) {
+            names.add(ownershipGraph.nameOf(members[pos]));
+        }
+        return Collections.unmodifiableList(names);
+    }
+}
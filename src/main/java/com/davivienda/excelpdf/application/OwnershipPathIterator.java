@@ -0,0 +1,214 @@
+package com.davivienda.excelpdf.application;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.davivienda.excelpdf.domain.OwnershipGraph;
+import com.davivienda.excelpdf.domain.OwnershipPath;
+
+/**
+ * Enumera de forma perezosa las rutas desde una raíz hasta un beneficiario.
+ *
+ * <p>El recorrido en profundidad usa una pila explícita y solo avanza cuando se pide
+ * la siguiente ruta, por lo que en memoria hay a lo sumo una ruta en curso. Antes de
+ * empezar se marcan las entidades desde las que se puede llegar al beneficiario, y
+ * las ramas que no lo alcanzan se descartan sin recorrerlas. Las rutas siguen la misma
+ * lógica que el recorrido recursivo: terminan en el beneficiario o, si este tiene
+ * accionistas, al cerrarse un ciclo sobre él.
+ *
+ * <p>Con {@link #reset(String)} el mismo iterador enumera las rutas hacia otro
+ * beneficiario reutilizando sus arreglos; solo se desmarcan las entidades marcadas en la
+ * búsqueda anterior, así que recorrer varios beneficiarios no cuesta O(V) cada uno.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public class OwnershipPathIterator implements Iterator<OwnershipPath> {
+
+    private final OwnershipGraph ownershipGraph;
+    private final int rootId;
+    private final int maxPaths;
+    private final int maxDepth;
+    private final boolean[] canReachTarget;
+    private final boolean[] onPath;
+    private final int[] markedQueue;
+    private int markedCount;
+    private int targetId;
+
+    private int[] entityStack = new int[32];
+    private int[] edgeCursor = new int[32];
+    private double[] percentageStack = new double[32];
+    private int depth;
+
+    private OwnershipPath nextPath;
+    private int emitted;
+    private boolean depthLimited;
+
+    /**
+     * Constructor del iterador.
+     *
+     * @param ownershipGraph grafo compacto
+     * @param rootId identificador de la raíz
+     * @param targetId identificador del beneficiario
+     * @param maxPaths número máximo de rutas a devolver
+     * @param maxDepth número máximo de relaciones por ruta
+     */
+    public OwnershipPathIterator(OwnershipGraph ownershipGraph, int rootId, int targetId, int maxPaths, int maxDepth) {
+        if (maxPaths < 1 || maxDepth < 1) {
+            throw new IllegalArgumentException("Los límites de rutas y profundidad deben ser al menos 1");
+        }
+        this.ownershipGraph = ownershipGraph;
+        this.rootId = rootId;
+        this.maxPaths = maxPaths;
+        this.maxDepth = maxDepth;
+        this.canReachTarget = new boolean[ownershipGraph.size()];
+        this.onPath = new boolean[ownershipGraph.size()];
+        this.markedQueue = new int[ownershipGraph.size()];
+        start(targetId);
+    }
+
+    /**
+     * Reinicia el iterador para enumerar, desde la misma raíz y con los mismos límites,
+     * las rutas hacia otro beneficiario.
+     *
+     * @param targetName nombre exacto del beneficiario en el grafo
+     * @throws IllegalArgumentException si el beneficiario no existe
+     */
+    public void reset(String targetName) {
+        int id = ownershipGraph.idOf(targetName);
+        if (id < 0) {
+            throw new IllegalArgumentException("Beneficiario no encontrado: " + targetName);
+        }
+        while (depth > 0) {
+            pop();
+        }
+        for (int i = 0; i < markedCount; i++) {
+            canReachTarget[markedQueue[i]] = false;
+        }
+        nextPath = null;
+        emitted = 0;
+        depthLimited = false;
+        start(id);
+    }
+
+    private void start(int targetId) {
+        this.targetId = targetId;
+        markEntitiesReachingTarget();
+
+        if (rootId == targetId && !ownershipGraph.hasOwners(rootId)) {
+            nextPath = new OwnershipPath(ownershipGraph, new int[] {rootId}, 1.0, false);
+        } else if (canReachTarget[rootId]) {
+            push(rootId, 1.0);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextPath == null && emitted < maxPaths) {
+            nextPath = advance();
+        }
+        return nextPath != null;
+    }
+
+    @Override
+    public OwnershipPath next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        OwnershipPath path = nextPath;
+        nextPath = null;
+        emitted++;
+        return path;
+    }
+
+    /**
+     * Indica si se omitieron ramas por superar la profundidad máxima.
+     *
+     * @return true si alguna ruta pudo quedar fuera por el límite de profundidad
+     */
+    public boolean isDepthLimited() {
+        return depthLimited;
+    }
+
+    /**
+     * Avanza el recorrido hasta la siguiente ruta que termina en el beneficiario.
+     */
+    private OwnershipPath advance() {
+        while (depth > 0) {
+            int top = depth - 1;
+            int node = entityStack[top];
+            if (edgeCursor[top] == ownershipGraph.ownerEnd(node)) {
+                pop();
+                continue;
+            }
+
+            int edge = edgeCursor[top]++;
+            int owner = ownershipGraph.ownerIdAt(edge);
+            if (!canReachTarget[owner]) {
+                continue;
+            }
+            double percentage = percentageStack[top] * ownershipGraph.weightAt(edge);
+
+            if (onPath[owner]) {
+                if (owner == targetId) {
+                    return currentPath(owner, percentage, true);
+                }
+                continue;
+            }
+            if (!ownershipGraph.hasOwners(owner)) {
+                return currentPath(owner, percentage, false);
+            }
+            if (depth >= maxDepth) {
+                depthLimited = true;
+                continue;
+            }
+            push(owner, percentage);
+        }
+        return null;
+    }
+
+    private OwnershipPath currentPath(int last, double percentage, boolean cycle) {
+        int[] ids = Arrays.copyOf(entityStack, depth + 1);
+        ids[depth] = last;
+        return new OwnershipPath(ownershipGraph, ids, percentage, cycle);
+    }
+
+    private void push(int node, double percentage) {
+        if (depth == entityStack.length) {
+            entityStack = Arrays.copyOf(entityStack, depth * 2);
+            edgeCursor = Arrays.copyOf(edgeCursor, depth * 2);
+            percentageStack = Arrays.copyOf(percentageStack, depth * 2);
+        }
+        entityStack[depth] = node;
+        edgeCursor[depth] = ownershipGraph.ownerStart(node);
+        percentageStack[depth] = percentage;
+        onPath[node] = true;
+        depth++;
+    }
+
+    private void pop() {
+        onPath[entityStack[--depth]] = false;
+    }
+
+    /**
+     * Marca las entidades desde las que se llega al beneficiario siguiendo accionistas.
+     */
+    private void markEntitiesReachingTarget() {
+        int head = 0;
+        int tail = 0;
+        canReachTarget[targetId] = true;
+        markedQueue[tail++] = targetId;
+        while (head < tail) {
+            int node = markedQueue[head++];
+            for (int k = ownershipGraph.ownedStart(node); k < ownershipGraph.ownedEnd(node); k++) {
+                int owned = ownershipGraph.ownedIdAt(k);
+                if (!canReachTarget[owned]) {
+                    canReachTarget[owned] = true;
+                    markedQueue[tail++] = owned;
+                }
+            }
+        }
+        markedCount = tail;
+    }
+}
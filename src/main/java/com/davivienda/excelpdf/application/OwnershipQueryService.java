@@ -0,0 +1,558 @@
+package com.davivienda.excelpdf.application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.davivienda.excelpdf.domain.OwnershipGraph;
+
+/**
+ * Consultas de participación final sobre un {@link OwnershipGraph} congelado.
+ *
+ * <p>El servicio no guarda estado entre consultas: su configuración y el grafo son
+ * inmutables, y cada llamada a {@link #query(String)} trabaja con estructuras propias
+ * y devuelve un {@link OwnershipResult} nuevo. Por eso varios hilos pueden consultar
+ * raíces distintas del mismo conjunto de datos a la vez, sin copias ni bloqueos.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public class OwnershipQueryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OwnershipQueryService.class);
+
+    private final OwnershipGraph ownershipGraph;
+    private final CalculationMode calculationMode;
+    private final double solverTolerance;
+    private final int solverMaxIterations;
+    private final int parallelism;
+    private final double beneficiaryThreshold;
+    private final OwnershipCondensation condensation;
+    private final ThreadLocal<FixedPointOwnershipPropagation> fixedPointPropagation; // Arreglos reutilizados por hilo
+
+    private OwnershipQueryService(Builder builder, OwnershipGraph ownershipGraph, OwnershipCondensation condensation) {
+        this.ownershipGraph = ownershipGraph;
+        this.condensation = condensation;
+        this.calculationMode = builder.calculationMode;
+        this.solverTolerance = builder.solverTolerance;
+        this.solverMaxIterations = builder.solverMaxIterations;
+        this.parallelism = builder.parallelism;
+        this.beneficiaryThreshold = builder.beneficiaryThreshold;
+        this.fixedPointPropagation = ThreadLocal.withInitial(
+            () -> new FixedPointOwnershipPropagation(condensation, solverMaxIterations));
+    }
+
+    /**
+     * Calcula las participaciones finales desde una entidad raíz.
+     *
+     * @param rootEntityName nombre de la entidad raíz
+     * @return resultado inmutable de la consulta
+     * @throws IllegalArgumentException si la entidad raíz no existe
+     */
+    public OwnershipResult query(String rootEntityName) {
+        logger.info("Calculando participaciones finales desde: {}", rootEntityName);
+        long startTime = System.nanoTime();
+
+        int rootId = ownershipGraph.idOf(rootEntityName.trim());
+        if (rootId < 0) {
+            throw new IllegalArgumentException("Entidad raíz no encontrada: " + rootEntityName);
+        }
+
+        Map<String, Double> finalResults = new HashMap<>();
+        Map<String, String> beneficiaryPaths = new HashMap<>();
+        double belowThresholdShare = 0.0;
+        IterativeOwnershipSolver.SolverReport solverReport = null;
+
+        boolean completed = false;
+        if (beneficiaryThreshold > 0.0) {
+            logger.info("Recorrido con umbral de {}% (el modo {} no aplica)", beneficiaryThreshold * 100, calculationMode);
+            belowThresholdShare = new ThresholdOwnershipTraversal(ownershipGraph, beneficiaryThreshold)
+                .calculate(rootId, rootEntityName, finalResults, beneficiaryPaths);
+            completed = true;
+        } else if (calculationMode == CalculationMode.ITERATIVE_SOLVER) {
+            IterativeOwnershipSolver solver = new IterativeOwnershipSolver(solverTolerance, solverMaxIterations);
+            solverReport = solver.solve(ownershipGraph, rootId, rootEntityName, finalResults, beneficiaryPaths);
+            logger.info("{}", solverReport);
+            completed = true;
+        } else if (calculationMode == CalculationMode.PARALLEL_FORK_JOIN) {
+            logger.info("Recorrido paralelo con {} hilos", parallelism);
+            new ParallelOwnershipTraversal(ownershipGraph, parallelism)
+                .calculate(rootId, rootEntityName, finalResults, beneficiaryPaths);
+            completed = true;
+        } else if (calculationMode == CalculationMode.FIXED_POINT) {
+            fixedPointPropagation.get()
+                .calculate(rootId, rootEntityName, finalResults, beneficiaryPaths);
+            completed = true;
+        } else if (calculationMode == CalculationMode.MEMOIZED_DAG) {
+            calculateOwnershipMemoized(rootId, rootEntityName, finalResults, beneficiaryPaths);
+            completed = true;
+        }
+
+        if (!completed) {
+            // Iniciar cálculo recursivo
+            calculateOwnershipByPaths(rootId, rootEntityName, finalResults, beneficiaryPaths);
+        }
+
+        logger.info("Cálculo completado ({}). Beneficiarios finales encontrados: {}",
+                   calculationMode, finalResults.size());
+        return new OwnershipResult(rootEntityName, calculationMode, finalResults, beneficiaryPaths,
+                                   belowThresholdShare, solverReport, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Calcula todas las entidades que un beneficiario posee directa o indirectamente,
+     * con su participación efectiva en cada una, en un solo recorrido hacia abajo por el
+     * índice inverso. La participación de una entidad es la suma, sobre sus accionistas
+     * alcanzados, del porcentaje directo por la participación efectiva en el accionista.
+     * Sin ciclos se resuelve en orden topológico; si el recorrido encuentra ciclos, los
+     * valores se completan con Gauss-Seidel sobre las entidades alcanzadas.
+     *
+     * <p>Si la entidad consultada tiene a su vez accionistas, el resultado es la
+     * participación que se tiene a través de ella, no la de un beneficiario final.
+     *
+     * @param beneficiaryName nombre del beneficiario (o de cualquier entidad accionista)
+     * @return mapa de entidad -> participación efectiva (0.0 - 1.0), de mayor a menor
+     * @throws IllegalArgumentException si la entidad no existe
+     */
+    public Map<String, Double> queryControlledEntities(String beneficiaryName) {
+        int sourceId = ownershipGraph.idOf(beneficiaryName.trim());
+        if (sourceId < 0) {
+            throw new IllegalArgumentException("Beneficiario no encontrado: " + beneficiaryName);
+        }
+        int size = ownershipGraph.size();
+
+        // Entidades alcanzables hacia abajo y accionistas alcanzados de cada una
+        boolean[] reached = new boolean[size];
+        int[] nodes = new int[size];
+        int[] pendingOwners = new int[size];
+        int count = 0;
+        reached[sourceId] = true;
+        nodes[count++] = sourceId;
+        for (int i = 0; i < count; i++) {
+            int node = nodes[i];
+            for (int k = ownershipGraph.ownedStart(node); k < ownershipGraph.ownedEnd(node); k++) {
+                int owned = ownershipGraph.ownedIdAt(k);
+                pendingOwners[owned]++;
+                if (!reached[owned]) {
+                    reached[owned] = true;
+                    nodes[count++] = owned;
+                }
+            }
+        }
+
+        // Propagación en orden topológico
+        double[] share = new double[size];
+        share[sourceId] = 1.0;
+        int[] ready = new int[count];
+        int head = 0;
+        int tail = 0;
+        if (pendingOwners[sourceId] == 0) {
+            ready[tail++] = sourceId;
+        }
+        while (head < tail) {
+            int node = ready[head++];
+            for (int k = ownershipGraph.ownedStart(node); k < ownershipGraph.ownedEnd(node); k++) {
+                int owned = ownershipGraph.ownedIdAt(k);
+                share[owned] += share[node] * ownershipGraph.ownedWeightAt(k);
+                if (--pendingOwners[owned] == 0) {
+                    ready[tail++] = owned;
+                }
+            }
+        }
+
+        if (head < count) {
+            logger.warn("Se detectaron ciclos bajo {}, resolviendo con Gauss-Seidel", beneficiaryName);
+            resolveDownwardCycles(sourceId, nodes, count, reached, share);
+        }
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (nodes[i] != sourceId && share[nodes[i]] > 0.0) {
+                order.add(nodes[i]);
+            }
+        }
+        order.sort((a, b) -> Double.compare(share[b], share[a]));
+        Map<String, Double> controlled = new LinkedHashMap<>();
+        for (int id : order) {
+            controlled.put(ownershipGraph.nameOf(id), share[id]);
+        }
+        return controlled;
+    }
+
+    /**
+     * Completa la propagación hacia abajo con Gauss-Seidel cuando hay ciclos:
+     * {@code x(e) = [e = origen] + Σ peso × x(accionista alcanzado)}.
+     */
+    private void resolveDownwardCycles(int sourceId, int[] nodes, int count, boolean[] reached, double[] share) {
+        int iterations = 0;
+        double residual = Double.POSITIVE_INFINITY;
+        while (iterations < solverMaxIterations && residual > solverTolerance) {
+            residual = 0.0;
+            for (int i = 0; i < count; i++) {
+                int node = nodes[i];
+                double value = (node == sourceId) ? 1.0 : 0.0;
+                for (int edge = ownershipGraph.ownerStart(node); edge < ownershipGraph.ownerEnd(node); edge++) {
+                    int owner = ownershipGraph.ownerIdAt(edge);
+                    if (reached[owner]) {
+                        value += ownershipGraph.weightAt(edge) * share[owner];
+                    }
+                }
+                residual = Math.max(residual, Math.abs(value - share[node]));
+                share[node] = value;
+            }
+            iterations++;
+        }
+        if (residual > solverTolerance) {
+            logger.warn("La propagación hacia abajo no convergió en {} iteraciones (residuo {})", iterations, residual);
+        }
+    }
+
+    /**
+     * @return grafo consultado
+     */
+    public OwnershipGraph getOwnershipGraph() {
+        return ownershipGraph;
+    }
+
+    /**
+     * Cálculo memoizado en orden topológico sobre el grafo condensado alcanzable desde la raíz.
+     * Cada componente acumula primero todo el porcentaje que le llega desde otras componentes;
+     * si es un ciclo, lo reparte entre sus miembros con la resolución precalculada, y luego
+     * cada miembro lo transmite una sola vez a sus propietarios fuera de la componente.
+     * 
+     * @param rootId identificador del nodo raíz
+     * @param rootEntityName nombre de la raíz tal como se usa en las rutas
+     * @param finalResults mapa donde se acumulan los beneficiarios finales
+     * @param beneficiaryPaths mapa donde se registra la ruta de mayor aporte
+     */
+    private void calculateOwnershipMemoized(int rootId, String rootEntityName,
+                                            Map<String, Double> finalResults, Map<String, String> beneficiaryPaths) {
+        int size = ownershipGraph.size();
+        
+        // Descubrir el subgrafo alcanzable y contar las relaciones entre componentes
+        int[] pendingIncoming = new int[condensation.componentCount()];
+        boolean[] reached = new boolean[size];
+        int[] stack = new int[size];
+        int top = 0;
+        reached[rootId] = true;
+        stack[top++] = rootId;
+        
+        while (top > 0) {
+            int current = stack[--top];
+            int component = condensation.componentOf(current);
+            for (int edge = ownershipGraph.ownerStart(current); edge < ownershipGraph.ownerEnd(current); edge++) {
+                int owner = ownershipGraph.ownerIdAt(edge);
+                if (condensation.componentOf(owner) != component) {
+                    pendingIncoming[condensation.componentOf(owner)]++;
+                }
+                if (!reached[owner]) {
+                    reached[owner] = true;
+                    stack[top++] = owner;
+                }
+            }
+        }
+        
+        // Propagar el porcentaje acumulado en orden topológico de componentes
+        double[] accumulated = new double[size];
+        double[] dominantContribution = new double[size];
+        int[] dominantParent = new int[size];
+        Arrays.fill(dominantParent, -1);
+        int[] ready = new int[condensation.componentCount()];
+        int head = 0;
+        int tail = 0;
+        accumulated[rootId] = 1.0;
+        ready[tail++] = condensation.componentOf(rootId);
+        
+        while (head < tail) {
+            int component = ready[head++];
+            if (condensation.isCyclic(component)) {
+                condensation.resolveInflow(component, accumulated, solverTolerance, solverMaxIterations);
+                recordInternalContributions(component, accumulated, dominantContribution, dominantParent);
+            }
+            
+            for (int pos = condensation.componentStart(component); pos < condensation.componentEnd(component); pos++) {
+                int node = condensation.memberAt(pos);
+                double nodePercentage = accumulated[node];
+                
+                if (!ownershipGraph.hasOwners(node)) {
+                    finalResults.merge(ownershipGraph.nameOf(node), nodePercentage, Double::sum);
+                    logger.debug("Beneficiario final: {} ({}%)", ownershipGraph.nameOf(node), nodePercentage * 100);
+                    continue;
+                }
+                
+                for (int edge = ownershipGraph.ownerStart(node); edge < ownershipGraph.ownerEnd(node); edge++) {
+                    int owner = ownershipGraph.ownerIdAt(edge);
+                    int ownerComponent = condensation.componentOf(owner);
+                    if (ownerComponent == component) {
+                        continue;
+                    }
+                    double contribution = nodePercentage * ownershipGraph.weightAt(edge);
+                    accumulated[owner] += contribution;
+                    
+                    if (dominantParent[owner] < 0 || contribution > dominantContribution[owner]) {
+                        dominantContribution[owner] = contribution;
+                        dominantParent[owner] = node;
+                    }
+                    
+                    if (--pendingIncoming[ownerComponent] == 0) {
+                        ready[tail++] = ownerComponent;
+                    }
+                }
+            }
+        }
+        
+        // Ruta de mayor aporte hacia cada beneficiario
+        boolean[] onPath = new boolean[size];
+        for (String beneficiary : finalResults.keySet()) {
+            beneficiaryPaths.put(beneficiary, buildDominantPath(ownershipGraph.idOf(beneficiary), rootId, dominantParent,
+                                                                onPath, ownershipGraph::nameOf, rootEntityName));
+        }
+    }
+    
+    /**
+     * Registra, dentro de un ciclo ya resuelto, el aporte de cada relación interna
+     * como candidato a predecesor de mayor aporte.
+     */
+    private void recordInternalContributions(int component, double[] accumulated,
+                                             double[] dominantContribution, int[] dominantParent) {
+        for (int pos = condensation.componentStart(component); pos < condensation.componentEnd(component); pos++) {
+            int node = condensation.memberAt(pos);
+            for (int edge = ownershipGraph.ownerStart(node); edge < ownershipGraph.ownerEnd(node); edge++) {
+                int owner = ownershipGraph.ownerIdAt(edge);
+                if (owner == node || condensation.componentOf(owner) != component) {
+                    continue;
+                }
+                double contribution = accumulated[node] * ownershipGraph.weightAt(edge);
+                if (dominantParent[owner] < 0 || contribution > dominantContribution[owner]) {
+                    dominantContribution[owner] = contribution;
+                    dominantParent[owner] = node;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Construye la ruta desde la raíz siguiendo el predecesor de mayor aporte de cada nodo.
+     * Si la cadena de predecesores se cierra sobre sí misma sin llegar a la raíz, la ruta
+     * se marca con [CICLO]. El costo es proporcional al largo de la ruta: las marcas de
+     * {@code onPath} se borran al terminar, así que el mismo arreglo sirve para todos los
+     * beneficiarios de un cálculo.
+     * 
+     * @param target nodo final de la ruta
+     * @param rootIndex índice de la raíz
+     * @param dominantParent predecesor de mayor aporte de cada índice
+     * @param onPath arreglo de trabajo del tamaño de {@code dominantParent}, todo en false
+     * @param nameOf nombre de cada índice
+     * @param rootEntityName nombre de la raíz tal como se usa en las rutas
+     * @return ruta legible
+     */
+    static String buildDominantPath(int target, int rootIndex, int[] dominantParent, boolean[] onPath,
+                                    IntFunction<String> nameOf, String rootEntityName) {
+        List<String> names = new ArrayList<>();
+        int current = target;
+        while (current >= 0 && current != rootIndex && !onPath[current]) {
+            onPath[current] = true;
+            names.add(nameOf.apply(current));
+            current = dominantParent[current];
+        }
+        for (int id = target; id >= 0 && onPath[id]; id = dominantParent[id]) {
+            onPath[id] = false;
+        }
+        if (current != rootIndex) {
+            names.add("[CICLO]");
+        }
+        names.add(rootEntityName);
+        Collections.reverse(names);
+        return String.join(" → ", names);
+    }
+    
+    /**
+     * Recorrido de todas las rutas desde la raíz con detección de ciclos.
+     * Las rutas se guardan como cadenas de {@link PathNode} compartidas y los ciclos se
+     * detectan con un arreglo de nodos en la pila; el texto de la ruta solo se construye
+     * al final, para los beneficiarios encontrados.
+     * 
+     * @param rootId identificador del nodo raíz
+     * @param rootEntityName nombre de la raíz tal como se usa en las rutas
+     * @param finalResults mapa donde se acumulan los beneficiarios finales
+     * @param beneficiaryPaths mapa donde se registra la última ruta de cada beneficiario
+     */
+    private void calculateOwnershipByPaths(int rootId, String rootEntityName,
+                                           Map<String, Double> finalResults, Map<String, String> beneficiaryPaths) {
+        PathWalkState state = new PathWalkState(ownershipGraph);
+        calculateOwnershipIterative(rootId, state);
+        
+        for (int k = 0; k < state.touchedCount; k++) {
+            int id = state.touchedIds[k];
+            String nodeName = ownershipGraph.nameOf(id);
+            finalResults.merge(nodeName, state.shares[id], Double::sum);
+            beneficiaryPaths.put(nodeName, state.lastPath[id].render(ownershipGraph, rootEntityName)
+                                           + (state.lastPathIsCycle[id] ? " [CICLO DETECTADO]" : ""));
+        }
+    }
+    
+    /**
+     * Recorrido en profundidad de todas las rutas con una pila explícita, de modo que
+     * las cadenas de propiedad muy largas no dependen de la pila del hilo. Visita las
+     * rutas en el mismo orden que el recorrido recursivo.
+     * 
+     * @param rootId nodo raíz
+     * @param state acumulados, pila y rutas de cada nivel
+     */
+    private void calculateOwnershipIterative(int rootId, PathWalkState state) {
+        OwnershipWalkStack stack = state.stack;
+        visitPathNode(rootId, 1.0, PathNode.root(rootId), state);
+        
+        while (stack.depth() > 0) {
+            int edge = stack.nextEdge();
+            if (edge < 0) {
+                stack.pop();
+                continue;
+            }
+            int ownerId = ownershipGraph.ownerIdAt(edge);
+            double newAccumulatedPercentage = stack.topPercentage() * ownershipGraph.weightAt(edge);
+            visitPathNode(ownerId, newAccumulatedPercentage, state.framePath(stack.depth() - 1).extend(ownerId), state);
+        }
+    }
+    
+    /**
+     * Procesa una entidad alcanzada por una ruta: la registra si cierra un ciclo o es
+     * beneficiario final, o la agrega a la pila para continuar con sus propietarios.
+     */
+    private void visitPathNode(int nodeId, double accumulatedPercentage, PathNode path, PathWalkState state) {
+        
+        // Detectar ciclos
+        if (state.stack.isOnPath(nodeId)) {
+            logger.warn("Ciclo detectado en la ruta hacia {}", ownershipGraph.nameOf(nodeId));
+            // Tratamos el nodo como beneficiario final para no volver a recorrer el ciclo
+            state.record(nodeId, accumulatedPercentage, path, true);
+            return;
+        }
+        
+        // Si no tiene propietarios, es un beneficiario final
+        if (!ownershipGraph.hasOwners(nodeId)) {
+            state.record(nodeId, accumulatedPercentage, path, false);
+            logger.debug("Beneficiario final: {} ({}%)", ownershipGraph.nameOf(nodeId), accumulatedPercentage * 100);
+            return;
+        }
+        
+        // Continuar con los propietarios
+        state.pushFrame(nodeId, accumulatedPercentage, path);
+    }
+    
+    /**
+     * Estado del recorrido de rutas: pila explícita con la ruta de cada nivel y, por
+     * beneficiario, la participación acumulada y la última ruta encontrada.
+     */
+    private static class PathWalkState {
+        private final OwnershipWalkStack stack;
+        private PathNode[] framePaths = new PathNode[64];
+        private final double[] shares;
+        private final PathNode[] lastPath;
+        private final boolean[] lastPathIsCycle;
+        private final int[] touchedIds;
+        private int touchedCount;
+        
+        PathWalkState(OwnershipGraph ownershipGraph) {
+            int size = ownershipGraph.size();
+            this.stack = new OwnershipWalkStack(ownershipGraph);
+            this.shares = new double[size];
+            this.lastPath = new PathNode[size];
+            this.lastPathIsCycle = new boolean[size];
+            this.touchedIds = new int[size];
+        }
+        
+        void pushFrame(int nodeId, double accumulatedPercentage, PathNode path) {
+            int level = stack.depth();
+            if (level == framePaths.length) {
+                framePaths = Arrays.copyOf(framePaths, level * 2);
+            }
+            framePaths[level] = path;
+            stack.push(nodeId, accumulatedPercentage);
+        }
+        
+        PathNode framePath(int level) {
+            return framePaths[level];
+        }
+        
+        void record(int nodeId, double contribution, PathNode path, boolean cycle) {
+            if (lastPath[nodeId] == null) {
+                touchedIds[touchedCount++] = nodeId;
+            }
+            shares[nodeId] += contribution;
+            lastPath[nodeId] = path;
+            lastPathIsCycle[nodeId] = cycle;
+        }
+    }
+
+    /**
+     * Builder para configurar el servicio de consultas.
+     */
+    public static class Builder {
+        private CalculationMode calculationMode = CalculationMode.MEMOIZED_DAG;
+        private double solverTolerance = 1e-12;
+        private int solverMaxIterations = 10_000;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private double beneficiaryThreshold = 0.0;
+        private OwnershipCondensation condensation;
+
+        public Builder withCalculationMode(CalculationMode calculationMode) {
+            if (calculationMode == null) {
+                throw new IllegalArgumentException("El modo de cálculo no puede ser null");
+            }
+            this.calculationMode = calculationMode;
+            return this;
+        }
+
+        public Builder withSolverParameters(double solverTolerance, int solverMaxIterations) {
+            if (solverTolerance <= 0.0 || solverMaxIterations < 1) {
+                throw new IllegalArgumentException("La tolerancia debe ser positiva y las iteraciones al menos 1");
+            }
+            this.solverTolerance = solverTolerance;
+            this.solverMaxIterations = solverMaxIterations;
+            return this;
+        }
+
+        public Builder withParallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("El nivel de paralelismo debe ser al menos 1");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public Builder withBeneficiaryThreshold(double beneficiaryThreshold) {
+            if (beneficiaryThreshold < 0.0 || beneficiaryThreshold >= 1.0) {
+                throw new IllegalArgumentException("El umbral debe estar entre 0 y 1: " + beneficiaryThreshold);
+            }
+            this.beneficiaryThreshold = beneficiaryThreshold;
+            return this;
+        }
+
+        /**
+         * Reutiliza una condensación ya calculada; si no corresponde al grafo
+         * del servicio, se calcula de nuevo al construirlo.
+         */
+        public Builder withCondensation(OwnershipCondensation condensation) {
+            this.condensation = condensation;
+            return this;
+        }
+
+        public OwnershipQueryService build(OwnershipGraph ownershipGraph) {
+            if (ownershipGraph == null) {
+                throw new IllegalArgumentException("El grafo no puede ser null");
+            }
+            OwnershipCondensation graphCondensation = (condensation != null && condensation.getOwnershipGraph() == ownershipGraph)
+                ? condensation : OwnershipCondensation.build(ownershipGraph);
+            return new OwnershipQueryService(this, ownershipGraph, graphCondensation);
+        }
+    }
+}
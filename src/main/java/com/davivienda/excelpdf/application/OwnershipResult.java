@@ -0,0 +1,50 @@
+package com.davivienda.excelpdf.application;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Resultado inmutable de una consulta de participaciones finales.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public final class OwnershipResult {
+
+    private final String rootEntity;
+    private final CalculationMode calculationMode;
+    private final Map<String, Double> finalResults;
+    private final Map<String, String> beneficiaryPaths;
+    private final double belowThresholdShare;
+    private final IterativeOwnershipSolver.SolverReport solverReport;
+    private final long elapsedNanos;
+
+    OwnershipResult(String rootEntity, CalculationMode calculationMode,
+                    Map<String, Double> finalResults, Map<String, String> beneficiaryPaths,
+                    double belowThresholdShare, IterativeOwnershipSolver.SolverReport solverReport,
+                    long elapsedNanos) {
+        this.rootEntity = rootEntity;
+        this.calculationMode = calculationMode;
+        this.finalResults = Collections.unmodifiableMap(finalResults);
+        this.beneficiaryPaths = Collections.unmodifiableMap(beneficiaryPaths);
+        this.belowThresholdShare = belowThresholdShare;
+        this.solverReport = solverReport;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Resultado vacío, usado antes del primer cálculo.
+     */
+    static OwnershipResult empty() {
+        return new OwnershipResult(null, null, Collections.emptyMap(), Collections.emptyMap(), 0.0, null, 0);
+    }
+
+    // Getters
+    public String getRootEntity() { return rootEntity; }
+    public CalculationMode getCalculationMode() { return calculationMode; }
+    public Map<String, Double> getFinalResults() { return finalResults; }
+    public Map<String, String> getBeneficiaryPaths() { return beneficiaryPaths; }
+    public double getBelowThresholdShare() { return belowThresholdShare; }
+    public IterativeOwnershipSolver.SolverReport getSolverReport() { return solverReport; }
+    public long getElapsedNanos() { return elapsedNanos; }
+}
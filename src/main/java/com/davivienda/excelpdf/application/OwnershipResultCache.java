@@ -0,0 +1,490 @@
+package com.davivienda.excelpdf.application;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caché de resultados de análisis, con clave por contenido del archivo de entrada,
+ * entidad raíz y opciones de cálculo.
+ *
+ * <p>La clave es el SHA-256 del contenido del archivo junto con la raíz y las opciones,
+ * así que un archivo copiado o renombrado reutiliza sus resultados y uno modificado no.
+ * El hash de cada archivo se recuerda mientras no cambien su tamaño ni su fecha de
+ * modificación. En memoria se conservan las entradas usadas más recientemente, hasta
+ * un máximo de entradas y de antigüedad. Opcionalmente las entradas se guardan también
+ * en un directorio, de modo que sobreviven entre ejecuciones; el directorio respeta los
+ * mismos límites, y al guardar se borran los archivos vencidos y los más antiguos que
+ * excedan el máximo de entradas.
+ *
+ * <p>Los métodos son seguros para uso concurrente. La lectura y escritura de archivos se
+ * hace fuera del bloqueo de la caché, así que no detiene las consultas en memoria.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public class OwnershipResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(OwnershipResultCache.class);
+
+    private static final int DISK_FORMAT_MAGIC = 0x55424F43; // "UBOC"
+    private static final int DISK_FORMAT_VERSION = 2;
+    private static final String DISK_SUFFIX = ".uboc";
+
+    private final int maxEntries;
+    private final long maxAgeMillis;
+    private final Path diskDirectory;
+    private final LinkedHashMap<String, CachedAnalysis> entries;
+    private final Map<Path, FileFingerprint> fingerprints = new HashMap<>();
+    private final Object diskLock = new Object(); // Solo para depurar el directorio
+
+    private long hits;
+    private long diskHits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    private OwnershipResultCache(Builder builder) {
+        this.maxEntries = builder.maxEntries;
+        this.maxAgeMillis = builder.maxAge.toMillis();
+        this.diskDirectory = builder.diskDirectory;
+        this.entries = new LinkedHashMap<String, CachedAnalysis>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedAnalysis> eldest) {
+                if (size() > OwnershipResultCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Calcula la clave de caché de un análisis.
+     *
+     * @param inputFile archivo de entrada
+     * @param rootEntity entidad raíz
+     * @param options descripción de las opciones que afectan el resultado
+     * @return clave hexadecimal
+     * @throws IOException si no se puede leer el archivo
+     */
+    public String keyFor(Path inputFile, String rootEntity, String options) throws IOException {
+        MessageDigest digest = newDigest();
+        digest.update(contentHash(inputFile).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(rootEntity.trim().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(options.getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Busca un resultado en memoria y, si no está, en el directorio de caché.
+     *
+     * @param key clave calculada con {@link #keyFor(Path, String, String)}
+     * @return resultado guardado, o null si no existe o expiró
+     */
+    public CachedAnalysis get(String key) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            CachedAnalysis cached = entries.get(key);
+            if (cached != null && isExpired(cached, now)) {
+                entries.remove(key);
+                expirations++;
+                cached = null;
+            }
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+        }
+
+        CachedAnalysis cached = readFromDisk(key, now);
+        synchronized (this) {
+            if (cached != null) {
+                diskHits++;
+                entries.put(key, cached);
+                return cached;
+            }
+            misses++;
+            return null;
+        }
+    }
+
+    /**
+     * Guarda un resultado en memoria y, si está configurado, en el directorio de caché.
+     *
+     * @param key clave calculada con {@link #keyFor(Path, String, String)}
+     * @param analysis resultado a guardar
+     */
+    public void put(String key, CachedAnalysis analysis) {
+        synchronized (this) {
+            entries.put(key, analysis);
+        }
+        if (diskDirectory != null) {
+            writeToDisk(key, analysis);
+            pruneDisk(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Elimina todas las entradas en memoria; el directorio de caché no se modifica.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        fingerprints.clear();
+    }
+
+    /**
+     * @return contadores de uso de la caché
+     */
+    public synchronized CacheStatistics getStatistics() {
+        return new CacheStatistics(hits, diskHits, misses, evictions, expirations, entries.size(), maxEntries);
+    }
+
+    private boolean isExpired(CachedAnalysis cached, long now) {
+        return now - cached.getCreatedAtMillis() > maxAgeMillis;
+    }
+
+    /**
+     * Obtiene el hash del contenido de un archivo, reutilizándolo si su tamaño y fecha
+     * de modificación no cambiaron.
+     */
+    private String contentHash(Path inputFile) throws IOException {
+        Path file = inputFile.toAbsolutePath().normalize();
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        synchronized (this) {
+            FileFingerprint fingerprint = fingerprints.get(file);
+            if (fingerprint != null && fingerprint.size == size && fingerprint.modified == modified) {
+                return fingerprint.hash;
+            }
+        }
+
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        String hash = toHex(digest.digest());
+        synchronized (this) {
+            fingerprints.put(file, new FileFingerprint(size, modified, hash));
+        }
+        return hash;
+    }
+
+    private CachedAnalysis readFromDisk(String key, long now) {
+        if (diskDirectory == null) {
+            return null;
+        }
+        Path file = diskDirectory.resolve(key + DISK_SUFFIX);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != DISK_FORMAT_MAGIC || in.readInt() != DISK_FORMAT_VERSION) {
+                logger.warn("Entrada de caché con formato desconocido, se ignora: {}", file);
+                return null;
+            }
+            long createdAt = in.readLong();
+            if (now - createdAt > maxAgeMillis) {
+                synchronized (this) {
+                    expirations++;
+                }
+                Files.deleteIfExists(file);
+                return null;
+            }
+            double belowThresholdShare = in.readDouble();
+            String graphStatistics = readString(in);
+            int noteCount = in.readInt();
+            List<String> integrityNotes = new ArrayList<>(noteCount);
+            for (int i = 0; i < noteCount; i++) {
+                integrityNotes.add(readString(in));
+            }
+            int count = in.readInt();
+            Map<String, Double> finalResults = new HashMap<>(count * 2);
+            Map<String, String> beneficiaryPaths = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String beneficiary = readString(in);
+                finalResults.put(beneficiary, in.readDouble());
+                if (in.readBoolean()) {
+                    beneficiaryPaths.put(beneficiary, readString(in));
+                }
+            }
+            return new CachedAnalysis(finalResults, beneficiaryPaths, graphStatistics, belowThresholdShare,
+                                      integrityNotes, createdAt);
+        } catch (IOException e) {
+            logger.warn("No se pudo leer la entrada de caché {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, CachedAnalysis analysis) {
+        try {
+            Files.createDirectories(diskDirectory);
+            Path temporary = Files.createTempFile(diskDirectory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(DISK_FORMAT_MAGIC);
+                out.writeInt(DISK_FORMAT_VERSION);
+                out.writeLong(analysis.getCreatedAtMillis());
+                out.writeDouble(analysis.getBelowThresholdShare());
+                writeString(out, analysis.getGraphStatistics());
+                out.writeInt(analysis.getIntegrityNotes().size());
+                for (String note : analysis.getIntegrityNotes()) {
+                    writeString(out, note);
+                }
+                out.writeInt(analysis.getFinalResults().size());
+                for (Map.Entry<String, Double> entry : analysis.getFinalResults().entrySet()) {
+                    writeString(out, entry.getKey());
+                    out.writeDouble(entry.getValue());
+                    String path = analysis.getBeneficiaryPaths().get(entry.getKey());
+                    out.writeBoolean(path != null);
+                    if (path != null) {
+                        writeString(out, path);
+                    }
+                }
+            }
+            Files.move(temporary, diskDirectory.resolve(key + DISK_SUFFIX),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("No se pudo guardar la entrada de caché en {}: {}", diskDirectory, e.getMessage());
+        }
+    }
+
+    /**
+     * Aplica al directorio los límites de la memoria: borra los archivos con más de la
+     * antigüedad máxima y, de los que quedan, los más antiguos que excedan el máximo de
+     * entradas. La antigüedad se toma de la fecha de modificación, que es la de guardado.
+     */
+    private void pruneDisk(long now) {
+        synchronized (diskLock) {
+            List<Path> files = new ArrayList<>();
+            Map<Path, Long> savedAt = new HashMap<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(diskDirectory, "*" + DISK_SUFFIX)) {
+                for (Path file : stream) {
+                    try {
+                        savedAt.put(file, Files.getLastModifiedTime(file).toMillis());
+                        files.add(file);
+                    } catch (IOException e) {
+                        // Otro hilo lo borró mientras se listaba
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("No se pudo revisar el directorio de caché {}: {}", diskDirectory, e.getMessage());
+                return;
+            }
+
+            files.sort(Comparator.comparing(savedAt::get, Comparator.reverseOrder()));
+            int removed = 0;
+            for (int i = 0; i < files.size(); i++) {
+                Path file = files.get(i);
+                if (i < maxEntries && now - savedAt.get(file) <= maxAgeMillis) {
+                    continue;
+                }
+                try {
+                    if (Files.deleteIfExists(file)) {
+                        removed++;
+                    }
+                } catch (IOException e) {
+                    logger.warn("No se pudo borrar la entrada de caché {}: {}", file, e.getMessage());
+                }
+            }
+            if (removed > 0) {
+                logger.debug("Directorio de caché depurado: {} entradas borradas", removed);
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no está disponible", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Hash de un archivo junto con el tamaño y la fecha con que se calculó.
+     */
+    private static class FileFingerprint {
+        private final long size;
+        private final long modified;
+        private final String hash;
+
+        FileFingerprint(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Resultado de un análisis guardado en la caché.
+     */
+    public static class CachedAnalysis {
+        private final Map<String, Double> finalResults;
+        private final Map<String, String> beneficiaryPaths;
+        private final String graphStatistics;
+        private final double belowThresholdShare;
+        private final List<String> integrityNotes;
+        private final long createdAtMillis;
+
+        public CachedAnalysis(Map<String, Double> finalResults, Map<String, String> beneficiaryPaths,
+                              String graphStatistics, double belowThresholdShare, List<String> integrityNotes) {
+            this(finalResults, beneficiaryPaths, graphStatistics, belowThresholdShare, integrityNotes,
+                 System.currentTimeMillis());
+        }
+
+        private CachedAnalysis(Map<String, Double> finalResults, Map<String, String> beneficiaryPaths,
+                               String graphStatistics, double belowThresholdShare, List<String> integrityNotes,
+                               long createdAtMillis) {
+            this.finalResults = Collections.unmodifiableMap(new HashMap<>(finalResults));
+            this.beneficiaryPaths = Collections.unmodifiableMap(new HashMap<>(beneficiaryPaths));
+            this.graphStatistics = graphStatistics;
+            this.belowThresholdShare = belowThresholdShare;
+            this.integrityNotes = Collections.unmodifiableList(new ArrayList<>(integrityNotes));
+            this.createdAtMillis = createdAtMillis;
+        }
+
+        // Getters
+        public Map<String, Double> getFinalResults() { return finalResults; }
+        public Map<String, String> getBeneficiaryPaths() { return beneficiaryPaths; }
+        public String getGraphStatistics() { return graphStatistics; }
+        public double getBelowThresholdShare() { return belowThresholdShare; }
+        public List<String> getIntegrityNotes() { return integrityNotes; }
+        public long getCreatedAtMillis() { return createdAtMillis; }
+    }
+
+    /**
+     * Contadores de uso de la caché.
+     */
+    public static class CacheStatistics {
+        private final long hits;
+        private final long diskHits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final int size;
+        private final int maxEntries;
+
+        public CacheStatistics(long hits, long diskHits, long misses, long evictions, long expirations,
+                               int size, int maxEntries) {
+            this.hits = hits;
+            this.diskHits = diskHits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.size = size;
+            this.maxEntries = maxEntries;
+        }
+
+        // Getters
+        public long getHits() { return hits; }
+        public long getDiskHits() { return diskHits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getExpirations() { return expirations; }
+        public int getSize() { return size; }
+        public int getMaxEntries() { return maxEntries; }
+
+        /**
+         * @return proporción de consultas resueltas por la caché (0.0 - 1.0)
+         */
+        public double getHitRatio() {
+            long total = hits + diskHits + misses;
+            return total == 0 ? 0.0 : (double) (hits + diskHits) / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Caché de resultados: %d aciertos en memoria, %d en disco, %d fallos (%.1f%%), "
+                               + "%d desalojos, %d expiraciones, %d/%d entradas",
+                               hits, diskHits, misses, getHitRatio() * 100, evictions, expirations, size, maxEntries);
+        }
+    }
+
+    /**
+     * Builder para configurar la caché.
+     */
+    public static class Builder {
+        private int maxEntries = 32;
+        private Duration maxAge = Duration.ofHours(1);
+        private Path diskDirectory;
+
+        public Builder withMaxEntries(int maxEntries) {
+            if (maxEntries < 1) {
+                throw new IllegalArgumentException("La caché debe admitir al menos una entrada");
+            }
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        public Builder withMaxAge(Duration maxAge) {
+            if (maxAge == null || maxAge.isNegative() || maxAge.isZero()) {
+                throw new IllegalArgumentException("La antigüedad máxima debe ser positiva");
+            }
+            this.maxAge = maxAge;
+            return this;
+        }
+
+        /**
+         * Activa el almacenamiento en disco de las entradas. El directorio conserva a lo
+         * sumo el máximo de entradas, sin pasar de la antigüedad máxima.
+         *
+         * @param diskDirectory directorio donde guardar las entradas (se crea si no existe)
+         */
+        public Builder withDiskDirectory(Path diskDirectory) {
+            this.diskDirectory = diskDirectory;
+            return this;
+        }
+
+        public OwnershipResultCache build() {
+            return new OwnershipResultCache(this);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.davivienda.excelpdf.application;
+
+import java.util.Arrays;
+
+import com.davivienda.excelpdf.domain.OwnershipGraph;
+
+/**
+ * Pila explícita para los recorridos de rutas en profundidad.
+ *
+ * <p>Cada nivel guarda la entidad, la siguiente relación por visitar y el porcentaje
+ * acumulado hasta la entidad, en arreglos paralelos que crecen al doble cuando se llenan.
+ * Así la profundidad de una cadena de propiedad no depende de la pila del hilo y cada
+ * nivel cuesta lo mismo sin importar cuántos haya. La pila se reutiliza entre recorridos.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+final class OwnershipWalkStack {
+
+    private final OwnershipGraph ownershipGraph;
+    private final boolean[] onPath;
+    private int[] nodes = new int[64];
+    private int[] edgeCursors = new int[64];
+    private double[] percentages = new double[64];
+    private int depth;
+
+    OwnershipWalkStack(OwnershipGraph ownershipGraph) {
+        this.ownershipGraph = ownershipGraph;
+        this.onPath = new boolean[ownershipGraph.size()];
+    }
+
+    /**
+     * Agrega un nivel con la entidad y el porcentaje acumulado hasta ella.
+     */
+    void push(int node, double percentage) {
+        if (depth == nodes.length) {
+            nodes = Arrays.copyOf(nodes, depth * 2);
+            edgeCursors = Arrays.copyOf(edgeCursors, depth * 2);
+            percentages = Arrays.copyOf(percentages, depth * 2);
+        }
+        nodes[depth] = node;
+        edgeCursors[depth] = ownershipGraph.ownerStart(node);
+        percentages[depth] = percentage;
+        onPath[node] = true;
+        depth++;
+    }
+
+    void pop() {
+        onPath[nodes[--depth]] = false;
+    }
+
+    void clear() {
+        while (depth > 0) {
+            pop();
+        }
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    boolean isOnPath(int node) {
+        return onPath[node];
+    }
+
+    /**
+     * Avanza a la siguiente relación pendiente del nivel superior.
+     *
+     * @return posición CSR de la relación, o -1 si el nivel ya no tiene relaciones
+     */
+    int nextEdge() {
+        int top = depth - 1;
+        if (edgeCursors[top] == ownershipGraph.ownerEnd(nodes[top])) {
+            return -1;
+        }
+        return edgeCursors[top]++;
+    }
+
+    /**
+     * @return porcentaje acumulado hasta la entidad del nivel superior
+     */
+    double topPercentage() {
+        return percentages[depth - 1];
+    }
+
+    /**
+     * Copia la ruta actual agregando una entidad al final.
+     *
+     * @param last entidad final de la ruta
+     * @return identificadores desde la raíz hasta {@code last}
+     */
+    int[] copyPath(int last) {
+        int[] path = Arrays.copyOf(nodes, depth + 1);
+        path[depth] = last;
+        return path;
+    }
+}
@@ -0,0 +1,241 @@
+package com.davivienda.excelpdf.application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.davivienda.excelpdf.domain.OwnershipGraph;
+
+/**
+ * Recorrido de rutas en paralelo sobre un {@link ForkJoinPool}.
+ *
+ * <p>Los primeros niveles del árbol de propiedad se dividen en subtareas, una por
+ * accionista, hasta que hay trabajo suficiente en cola; cada subtarea recorre luego
+ * su subárbol de forma secuencial. Cada hilo acumula en su propio arreglo de
+ * resultados parciales, de modo que no hay contención, y al final se suman todos.
+ * Los resultados coinciden con {@link CalculationMode#PATH_ENUMERATION}, incluido el
+ * tratamiento de ciclos.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public class ParallelOwnershipTraversal {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelOwnershipTraversal.class);
+
+    /** Profundidad máxima hasta la que se crean subtareas. */
+    private static final int MAX_SPLIT_DEPTH = 16;
+
+    /** Tareas pendientes por hilo a partir de las cuales se deja de dividir. */
+    private static final int SURPLUS_TASK_LIMIT = 3;
+
+    private final OwnershipGraph ownershipGraph;
+    private final int parallelism;
+    private final ConcurrentLinkedQueue<WorkerAccumulator> accumulators = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<WorkerAccumulator> workerAccumulator;
+
+    /**
+     * Constructor del recorrido paralelo.
+     *
+     * @param ownershipGraph grafo compacto
+     * @param parallelism número de hilos
+     */
+    public ParallelOwnershipTraversal(OwnershipGraph ownershipGraph, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("El nivel de paralelismo debe ser al menos 1");
+        }
+        this.ownershipGraph = ownershipGraph;
+        this.parallelism = parallelism;
+        this.workerAccumulator = ThreadLocal.withInitial(() -> {
+            WorkerAccumulator accumulator = new WorkerAccumulator(ownershipGraph.size());
+            accumulators.add(accumulator);
+            return accumulator;
+        });
+    }
+
+    /**
+     * Calcula los beneficiarios finales desde la raíz.
+     *
+     * @param rootId identificador del nodo raíz
+     * @param rootEntityName nombre de la raíz tal como se usa en las rutas
+     * @param finalResults mapa donde se acumulan los beneficiarios finales
+     * @param beneficiaryPaths mapa donde se registra la ruta de mayor aporte
+     */
+    public void calculate(int rootId, String rootEntityName,
+                          Map<String, Double> finalResults, Map<String, String> beneficiaryPaths) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new SubtreeTask(new int[] {rootId}, 1.0));
+        } finally {
+            pool.shutdown();
+        }
+
+        // Fusionar los resultados parciales de cada hilo
+        double[] totals = new double[ownershipGraph.size()];
+        double[] bestContribution = new double[ownershipGraph.size()];
+        int[][] bestPath = new int[ownershipGraph.size()][];
+        boolean[] bestIsCycle = new boolean[ownershipGraph.size()];
+        List<Integer> beneficiaries = new ArrayList<>();
+
+        for (WorkerAccumulator accumulator : accumulators) {
+            for (int k = 0; k < accumulator.touchedCount; k++) {
+                int id = accumulator.touchedIds[k];
+                if (bestPath[id] == null) {
+                    beneficiaries.add(id);
+                }
+                totals[id] += accumulator.shares[id];
+                if (bestPath[id] == null || accumulator.bestContribution[id] > bestContribution[id]) {
+                    bestContribution[id] = accumulator.bestContribution[id];
+                    bestPath[id] = accumulator.bestPath[id];
+                    bestIsCycle[id] = accumulator.bestIsCycle[id];
+                }
+            }
+        }
+
+        for (int id : beneficiaries) {
+            String name = ownershipGraph.nameOf(id);
+            finalResults.merge(name, totals[id], Double::sum);
+            beneficiaryPaths.put(name, renderPath(bestPath[id], rootEntityName)
+                                       + (bestIsCycle[id] ? " [CICLO DETECTADO]" : ""));
+        }
+
+        logger.debug("Recorrido paralelo completado con {} hilos de trabajo", accumulators.size());
+    }
+
+    /**
+     * Convierte una ruta de identificadores en texto legible.
+     */
+    private String renderPath(int[] path, String rootEntityName) {
+        StringBuilder text = new StringBuilder(rootEntityName);
+        for (int i = 1; i < path.length; i++) {
+            text.append(" → ").append(ownershipGraph.nameOf(path[i]));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Subárbol pendiente: ruta desde la raíz hasta el nodo y porcentaje acumulado.
+     */
+    private class SubtreeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] prefix;
+        private final double accumulatedPercentage;
+
+        SubtreeTask(int[] prefix, double accumulatedPercentage) {
+            this.prefix = prefix;
+            this.accumulatedPercentage = accumulatedPercentage;
+        }
+
+        @Override
+        protected void compute() {
+            int node = prefix[prefix.length - 1];
+            int ownerCount = ownershipGraph.ownerEnd(node) - ownershipGraph.ownerStart(node);
+
+            if (ownerCount > 1 && prefix.length <= MAX_SPLIT_DEPTH
+                    && getSurplusQueuedTaskCount() < SURPLUS_TASK_LIMIT && !closesCycle()) {
+                List<SubtreeTask> subtasks = new ArrayList<>(ownerCount);
+                for (int edge = ownershipGraph.ownerStart(node); edge < ownershipGraph.ownerEnd(node); edge++) {
+                    int[] childPrefix = Arrays.copyOf(prefix, prefix.length + 1);
+                    childPrefix[prefix.length] = ownershipGraph.ownerIdAt(edge);
+                    subtasks.add(new SubtreeTask(childPrefix, accumulatedPercentage * ownershipGraph.weightAt(edge)));
+                }
+                invokeAll(subtasks);
+                return;
+            }
+
+            // Recorrido secuencial del subárbol con el estado del hilo actual
+            WorkerAccumulator accumulator = workerAccumulator.get();
+            accumulator.walk(prefix, accumulatedPercentage);
+        }
+
+        /**
+         * Verifica si el último nodo de la ruta ya aparece antes en ella.
+         */
+        private boolean closesCycle() {
+            int node = prefix[prefix.length - 1];
+            for (int i = 0; i < prefix.length - 1; i++) {
+                if (prefix[i] == node) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Resultados parciales y estado de recorrido de un hilo.
+     */
+    private class WorkerAccumulator {
+        private final double[] shares;
+        private final double[] bestContribution;
+        private final int[][] bestPath;
+        private final boolean[] bestIsCycle;
+        private final int[] touchedIds;
+        private int touchedCount;
+
+        private final OwnershipWalkStack stack;
+
+        WorkerAccumulator(int size) {
+            this.shares = new double[size];
+            this.bestContribution = new double[size];
+            this.bestPath = new int[size][];
+            this.bestIsCycle = new boolean[size];
+            this.touchedIds = new int[size];
+            this.stack = new OwnershipWalkStack(ownershipGraph);
+        }
+
+        /**
+         * Recorre el subárbol del último nodo de la ruta con la misma lógica que el
+         * recorrido de rutas, usando una pila explícita. Los nodos previos de la ruta
+         * solo se apilan para detectar ciclos y construir las rutas.
+         */
+        void walk(int[] prefix, double accumulatedPercentage) {
+            for (int i = 0; i < prefix.length - 1; i++) {
+                stack.push(prefix[i], 0.0);
+            }
+            int base = stack.depth();
+            visit(prefix[prefix.length - 1], accumulatedPercentage);
+            while (stack.depth() > base) {
+                int edge = stack.nextEdge();
+                if (edge < 0) {
+                    stack.pop();
+                    continue;
+                }
+                visit(ownershipGraph.ownerIdAt(edge), stack.topPercentage() * ownershipGraph.weightAt(edge));
+            }
+            stack.clear();
+        }
+
+        private void visit(int node, double accumulatedPercentage) {
+            if (stack.isOnPath(node)) {
+                record(node, accumulatedPercentage, true);
+                return;
+            }
+            if (!ownershipGraph.hasOwners(node)) {
+                record(node, accumulatedPercentage, false);
+                return;
+            }
+            stack.push(node, accumulatedPercentage);
+        }
+
+        private void record(int node, double contribution, boolean cycle) {
+            if (bestPath[node] == null) {
+                touchedIds[touchedCount++] = node;
+            }
+            shares[node] += contribution;
+            if (bestPath[node] == null || contribution > bestContribution[node]) {
+                bestContribution[node] = contribution;
+                bestPath[node] = stack.copyPath(node);
+                bestIsCycle[node] = cycle;
+            }
+        }
+    }
+}
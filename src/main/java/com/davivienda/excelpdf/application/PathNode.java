@@ -0,0 +1,75 @@
+package com.davivienda.excelpdf.application;
+
+import com.davivienda.excelpdf.domain.OwnershipGraph;
+
+/**
+ * Eslabón inmutable de una ruta de participación: una entidad y el eslabón anterior.
+ *
+ * <p>Las rutas que comparten prefijo comparten también sus eslabones, así que extender
+ * una ruta cuesta un solo objeto sin importar su profundidad. El texto de la ruta se
+ * construye únicamente cuando se necesita para el reporte.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+final class PathNode {
+
+    private final int entityId;
+    private final PathNode parent;
+    private final int depth;
+
+    private PathNode(int entityId, PathNode parent) {
+        this.entityId = entityId;
+        this.parent = parent;
+        this.depth = (parent == null) ? 0 : parent.depth + 1;
+    }
+
+    /**
+     * Crea el primer eslabón de una ruta.
+     *
+     * @param rootId identificador de la raíz
+     * @return ruta con solo la raíz
+     */
+    static PathNode root(int rootId) {
+        return new PathNode(rootId, null);
+    }
+
+    /**
+     * Extiende la ruta con una entidad más.
+     *
+     * @param entityId identificador de la entidad
+     * @return nueva ruta que termina en la entidad
+     */
+    PathNode extend(int entityId) {
+        return new PathNode(entityId, this);
+    }
+
+    int getEntityId() {
+        return entityId;
+    }
+
+    /**
+     * @return número de relaciones desde la raíz
+     */
+    int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Construye el texto legible de la ruta.
+     *
+     * @param ownershipGraph grafo al que pertenecen los identificadores
+     * @param rootEntityName nombre de la raíz tal como se usa en las rutas
+     * @return ruta separada por " → "
+     */
+    String render(OwnershipGraph ownershipGraph, String rootEntityName) {
+        String[] names = new String[depth + 1];
+        PathNode current = this;
+        for (int i = depth; i > 0; i--) {
+            names[i] = ownershipGraph.nameOf(current.entityId);
+            current = current.parent;
+        }
+        names[0] = rootEntityName;
+        return String.join(" → ", names);
+    }
+}
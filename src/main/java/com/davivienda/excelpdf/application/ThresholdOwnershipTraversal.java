@@ -0,0 +1,223 @@
+package com.davivienda.excelpdf.application;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.davivienda.excelpdf.domain.OwnershipGraph;
+
+/**
+ * Recorrido de rutas con poda por umbral de participación.
+ *
+ * <p>Antes del recorrido se calcula, para cada entidad alcanzable, la participación
+ * máxima que puede llegar desde ella a los beneficiarios finales ({@code Σ peso × máximo
+ * del accionista}, con 1 para los beneficiarios). Una rama se descarta cuando el
+ * porcentaje acumulado multiplicado por ese máximo, sumado a todo lo ya descartado, no
+ * alcanza el umbral. Así, aunque todas las ramas podadas llegaran al mismo beneficiario,
+ * ningún beneficiario que alcance el umbral queda fuera del resultado.
+ *
+ * <p>La participación calculada de cada beneficiario puede quedar por debajo de la real
+ * como máximo en lo podado, por lo que se reporta todo beneficiario que, sumándole lo
+ * podado, alcance el umbral. La masa podada y la de los beneficiarios restantes se agrupa
+ * en un único valor para que los totales sigan cuadrando.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public class ThresholdOwnershipTraversal {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThresholdOwnershipTraversal.class);
+
+    private final OwnershipGraph ownershipGraph;
+    private final double threshold;
+
+    private double[] reachable;
+    private double[] shares;
+    private double[] bestContribution;
+    private int[][] bestPath;
+    private boolean[] bestIsCycle;
+    private int[] touchedIds;
+    private int touchedCount;
+    private OwnershipWalkStack stack;
+    private double prunedShare;
+    private long prunedBranches;
+
+    /**
+     * Constructor del recorrido con umbral.
+     *
+     * @param ownershipGraph grafo compacto
+     * @param threshold participación mínima reportada (0.0 - 1.0)
+     */
+    public ThresholdOwnershipTraversal(OwnershipGraph ownershipGraph, double threshold) {
+        if (threshold <= 0.0 || threshold >= 1.0) {
+            throw new IllegalArgumentException("El umbral debe estar entre 0 y 1 (exclusivo): " + threshold);
+        }
+        this.ownershipGraph = ownershipGraph;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Calcula los beneficiarios finales que alcanzan el umbral.
+     *
+     * @param rootId identificador del nodo raíz
+     * @param rootEntityName nombre de la raíz tal como se usa en las rutas
+     * @param finalResults mapa donde se registran los beneficiarios que alcanzan el umbral
+     * @param beneficiaryPaths mapa donde se registra la ruta de mayor aporte
+     * @return participación agrupada por debajo del umbral (ramas podadas y beneficiarios menores)
+     */
+    public double calculate(int rootId, String rootEntityName,
+                            Map<String, Double> finalResults, Map<String, String> beneficiaryPaths) {
+        int size = ownershipGraph.size();
+        reachable = computeReachableShares(rootId);
+        shares = new double[size];
+        bestContribution = new double[size];
+        bestPath = new int[size][];
+        bestIsCycle = new boolean[size];
+        touchedIds = new int[size];
+        touchedCount = 0;
+        stack = new OwnershipWalkStack(ownershipGraph);
+        prunedShare = 0.0;
+        prunedBranches = 0;
+
+        walk(rootId, 1.0);
+
+        double belowThreshold = prunedShare;
+        int belowThresholdCount = 0;
+        for (int k = 0; k < touchedCount; k++) {
+            int id = touchedIds[k];
+            if (shares[id] + prunedShare < threshold) {
+                belowThreshold += shares[id];
+                belowThresholdCount++;
+                continue;
+            }
+            String name = ownershipGraph.nameOf(id);
+            finalResults.merge(name, shares[id], Double::sum);
+            beneficiaryPaths.put(name, renderPath(bestPath[id], rootEntityName)
+                                       + (bestIsCycle[id] ? " [CICLO DETECTADO]" : ""));
+        }
+
+        logger.info("Umbral {}%: {} ramas podadas, {} beneficiarios bajo el umbral, participación agrupada {}%",
+                   threshold * 100, prunedBranches, belowThresholdCount, belowThreshold * 100);
+        return belowThreshold;
+    }
+
+    /**
+     * Participación máxima que llega a los beneficiarios finales por cada unidad que
+     * entra a una entidad. Se calcula en orden topológico inverso sobre el subgrafo
+     * alcanzable; las entidades en ciclos (o que dependen de ellos) quedan sin cota
+     * y nunca se podan.
+     */
+    private double[] computeReachableShares(int rootId) {
+        int size = ownershipGraph.size();
+        boolean[] reached = new boolean[size];
+        int[] nodes = new int[size];
+        int count = 0;
+        reached[rootId] = true;
+        nodes[count++] = rootId;
+        for (int i = 0; i < count; i++) {
+            int node = nodes[i];
+            for (int edge = ownershipGraph.ownerStart(node); edge < ownershipGraph.ownerEnd(node); edge++) {
+                int owner = ownershipGraph.ownerIdAt(edge);
+                if (!reached[owner]) {
+                    reached[owner] = true;
+                    nodes[count++] = owner;
+                }
+            }
+        }
+
+        // Orden topológico inverso: una entidad está lista cuando todos sus accionistas lo están
+        int[] pendingOwners = new int[size];
+        int[] ready = new int[count];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < count; i++) {
+            int node = nodes[i];
+            pendingOwners[node] = ownershipGraph.ownerEnd(node) - ownershipGraph.ownerStart(node);
+            if (pendingOwners[node] == 0) {
+                ready[tail++] = node;
+            }
+        }
+
+        double[] bound = new double[size];
+        Arrays.fill(bound, Double.POSITIVE_INFINITY);
+        while (head < tail) {
+            int node = ready[head++];
+            if (!ownershipGraph.hasOwners(node)) {
+                bound[node] = 1.0;
+            } else {
+                double value = 0.0;
+                for (int edge = ownershipGraph.ownerStart(node); edge < ownershipGraph.ownerEnd(node); edge++) {
+                    value += ownershipGraph.weightAt(edge) * bound[ownershipGraph.ownerIdAt(edge)];
+                }
+                bound[node] = value;
+            }
+            for (int k = ownershipGraph.ownedStart(node); k < ownershipGraph.ownedEnd(node); k++) {
+                int owned = ownershipGraph.ownedIdAt(k);
+                if (reached[owned] && --pendingOwners[owned] == 0) {
+                    ready[tail++] = owned;
+                }
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Recorre el subárbol del nodo con la misma lógica que el recorrido de rutas,
+     * descartando las ramas que, junto con lo ya podado, no pueden alcanzar el umbral.
+     */
+    private void walk(int node, double accumulatedPercentage) {
+        visit(node, accumulatedPercentage);
+        while (stack.depth() > 0) {
+            int edge = stack.nextEdge();
+            if (edge < 0) {
+                stack.pop();
+                continue;
+            }
+            visit(ownershipGraph.ownerIdAt(edge), stack.topPercentage() * ownershipGraph.weightAt(edge));
+        }
+    }
+
+    private void visit(int node, double accumulatedPercentage) {
+        if (stack.isOnPath(node)) {
+            record(node, accumulatedPercentage, true);
+            return;
+        }
+        if (!ownershipGraph.hasOwners(node)) {
+            record(node, accumulatedPercentage, false);
+            return;
+        }
+
+        double reachableShare = accumulatedPercentage * reachable[node];
+        if (prunedShare + reachableShare < threshold) {
+            prunedShare += reachableShare;
+            prunedBranches++;
+            return;
+        }
+        stack.push(node, accumulatedPercentage);
+    }
+
+    private void record(int node, double contribution, boolean cycle) {
+        if (bestPath[node] == null) {
+            touchedIds[touchedCount++] = node;
+        }
+        shares[node] += contribution;
+        if (bestPath[node] == null || contribution > bestContribution[node]) {
+            bestContribution[node] = contribution;
+            bestPath[node] = stack.copyPath(node);
+            bestIsCycle[node] = cycle;
+        }
+    }
+
+    /**
+     * Convierte una ruta de identificadores en texto legible.
+     */
+    private String renderPath(int[] path, String rootEntityName) {
+        StringBuilder text = new StringBuilder(rootEntityName);
+        for (int i = 1; i < path.length; i++) {
+            text.append(" → ").append(ownershipGraph.nameOf(path[i]));
+        }
+        return text.toString();
+    }
+}
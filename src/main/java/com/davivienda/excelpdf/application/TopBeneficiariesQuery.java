@@ -0,0 +1,343 @@
+package com.davivienda.excelpdf.application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.davivienda.excelpdf.domain.OwnershipGraph;
+
+/**
+ * Consulta de los K mayores beneficiarios finales de una entidad.
+ *
+ * <p>La participación se reparte "primero lo más grande": cada entidad guarda la
+ * participación que le ha llegado y aún no ha repartido, y siempre se procesa la
+ * entidad con mayor participación pendiente (montículo máximo indexado). Los
+ * beneficiarios acumulan lo que reciben. La búsqueda termina en cuanto el orden de
+ * los K primeros ya no puede cambiar con lo pendiente y el error de sus valores es
+ * menor que la precisión pedida, sin necesidad de repartir las fracciones pequeñas.
+ *
+ * <p>Los ciclos se resuelven con la condensación del grafo: al procesar un miembro de
+ * una componente cíclica se toma lo pendiente de todos sus miembros, se reparte dentro
+ * del ciclo con {@link OwnershipCondensation#resolveInflow} y solo se propaga lo que sale
+ * de él. Así la participación siempre avanza en el orden topológico de las componentes y
+ * la búsqueda termina aunque un ciclo no ceda nada hacia fuera; lo que queda atrapado en
+ * un ciclo cerrado no llega a ningún beneficiario, igual que en los demás modos.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public class TopBeneficiariesQuery {
+
+    private static final Logger logger = LoggerFactory.getLogger(TopBeneficiariesQuery.class);
+
+    /** Número de entidades procesadas entre comprobaciones del criterio de parada. */
+    private static final int CHECK_INTERVAL = 256;
+
+    /** Fracción de la precisión por debajo de la cual se termina aunque haya empates. */
+    private static final double TIE_FACTOR = 1e-3;
+
+    private final OwnershipGraph ownershipGraph;
+    private final OwnershipCondensation condensation;
+    private final double precision;
+    private final double solverTolerance;
+    private final int solverMaxIterations;
+
+    /**
+     * Constructor de la consulta.
+     *
+     * @param condensation condensación del grafo a recorrer
+     * @param precision error máximo aceptado en las participaciones devueltas (0.0 - 1.0)
+     * @param solverTolerance residuo máximo de los ciclos que se resuelven iterando
+     * @param solverMaxIterations iteraciones máximas de los ciclos que se resuelven iterando
+     */
+    public TopBeneficiariesQuery(OwnershipCondensation condensation, double precision,
+                                 double solverTolerance, int solverMaxIterations) {
+        if (precision <= 0.0) {
+            throw new IllegalArgumentException("La precisión debe ser mayor que cero");
+        }
+        this.ownershipGraph = condensation.getOwnershipGraph();
+        this.condensation = condensation;
+        this.precision = precision;
+        this.solverTolerance = solverTolerance;
+        this.solverMaxIterations = solverMaxIterations;
+    }
+
+    /**
+     * Obtiene los K mayores beneficiarios finales de una entidad.
+     *
+     * @param rootId identificador del nodo raíz
+     * @param k número de beneficiarios
+     * @return mapa de beneficiario -> porcentaje final (0.0 - 1.0), de mayor a menor
+     */
+    public Map<String, Double> query(int rootId, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("El número de beneficiarios debe ser al menos 1");
+        }
+        int size = ownershipGraph.size();
+        double[] pending = new double[size];
+        double[] accumulated = new double[size];
+        int[] beneficiaries = new int[size];
+        int beneficiaryCount = 0;
+        boolean[] isCandidate = new boolean[size];
+        double[] cycleMass = new double[size];
+
+        MaxHeap heap = new MaxHeap(size, pending);
+        double pendingTotal = 1.0;
+        pending[rootId] = 1.0;
+        heap.offer(rootId);
+
+        int processed = 0;
+        while (!heap.isEmpty()) {
+            // Con empates exactos el orden nunca queda decidido; basta con que lo pendiente
+            // sea despreciable frente a la precisión
+            if (processed % CHECK_INTERVAL == 0 && pendingTotal < precision
+                    && (pendingTotal < precision * TIE_FACTOR
+                        || isRankingSettled(beneficiaries, beneficiaryCount, accumulated, k, pendingTotal))) {
+                break;
+            }
+
+            int node = heap.poll();
+            int component = condensation.componentOf(node);
+            if (condensation.isCyclic(component)) {
+                pendingTotal += releaseCycle(component, pending, cycleMass, heap);
+                processed++;
+                continue;
+            }
+            double mass = pending[node];
+            pending[node] = 0.0;
+            pendingTotal -= mass;
+            processed++;
+
+            if (!ownershipGraph.hasOwners(node)) {
+                if (!isCandidate[node]) {
+                    isCandidate[node] = true;
+                    beneficiaries[beneficiaryCount++] = node;
+                }
+                accumulated[node] += mass;
+                continue;
+            }
+
+            for (int edge = ownershipGraph.ownerStart(node); edge < ownershipGraph.ownerEnd(node); edge++) {
+                int owner = ownershipGraph.ownerIdAt(edge);
+                double contribution = mass * ownershipGraph.weightAt(edge);
+                if (contribution <= 0.0) {
+                    continue;
+                }
+                pending[owner] += contribution;
+                pendingTotal += contribution;
+                heap.offerOrIncrease(owner);
+            }
+        }
+
+        logger.debug("Top {}: {} entidades procesadas, {} beneficiarios alcanzados, pendiente {}",
+                    k, processed, beneficiaryCount, Math.max(pendingTotal, 0.0));
+
+        int[] top = selectTop(beneficiaries, beneficiaryCount, accumulated, k);
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int id : top) {
+            result.put(ownershipGraph.nameOf(id), accumulated[id]);
+        }
+        return result;
+    }
+
+    /**
+     * Reparte dentro de un ciclo lo pendiente de todos sus miembros y deja pendiente lo que
+     * sale hacia accionistas fuera del ciclo.
+     *
+     * @return cambio en el total pendiente
+     */
+    private double releaseCycle(int component, double[] pending, double[] cycleMass, MaxHeap heap) {
+        int first = condensation.componentStart(component);
+        int last = condensation.componentEnd(component);
+        double change = 0.0;
+        for (int pos = first; pos < last; pos++) {
+            int id = condensation.memberAt(pos);
+            cycleMass[id] = pending[id];
+            change -= pending[id];
+            pending[id] = 0.0;
+            heap.remove(id);
+        }
+
+        condensation.resolveInflow(component, cycleMass, solverTolerance, solverMaxIterations);
+
+        for (int pos = first; pos < last; pos++) {
+            int id = condensation.memberAt(pos);
+            double mass = cycleMass[id];
+            cycleMass[id] = 0.0;
+            for (int edge = ownershipGraph.ownerStart(id); edge < ownershipGraph.ownerEnd(id); edge++) {
+                int owner = ownershipGraph.ownerIdAt(edge);
+                double contribution = mass * ownershipGraph.weightAt(edge);
+                if (condensation.componentOf(owner) == component || contribution <= 0.0) {
+                    continue;
+                }
+                pending[owner] += contribution;
+                change += contribution;
+                heap.offerOrIncrease(owner);
+            }
+        }
+        return change;
+    }
+
+    /**
+     * Verifica si lo pendiente ya no puede alterar el orden de los K primeros:
+     * el K-ésimo debe superar al siguiente (o a cualquier beneficiario aún no alcanzado)
+     * incluso si todo lo pendiente llegara a este último.
+     */
+    private static boolean isRankingSettled(int[] beneficiaries, int count, double[] accumulated,
+                                            int k, double pendingTotal) {
+        if (count < k) {
+            return pendingTotal <= 0.0;
+        }
+        int[] top = selectTop(beneficiaries, count, accumulated, k + 1);
+        double kth = accumulated[top[k - 1]];
+        double next = (top.length > k) ? accumulated[top[k]] : 0.0;
+        return kth >= next + pendingTotal;
+    }
+
+    /**
+     * Selecciona los K mayores con un montículo mínimo acotado, sin ordenar todos los valores.
+     */
+    private static int[] selectTop(int[] ids, int count, double[] values, int k) {
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1, Comparator.comparingDouble(id -> values[id]));
+        for (int i = 0; i < count; i++) {
+            int id = ids[i];
+            if (heap.size() < k) {
+                heap.offer(id);
+            } else if (values[id] > values[heap.peek()]) {
+                heap.poll();
+                heap.offer(id);
+            }
+        }
+        int[] top = new int[heap.size()];
+        for (int i = top.length - 1; i >= 0; i--) {
+            top[i] = heap.poll();
+        }
+        return top;
+    }
+
+    /**
+     * Selecciona las K entradas de mayor valor de un mapa con un montículo acotado.
+     *
+     * @param values mapa de nombre -> valor
+     * @param k número de entradas
+     * @return entradas de mayor a menor
+     */
+    public static List<Map.Entry<String, Double>> selectTop(Map<String, Double> values, int k) {
+        PriorityQueue<Map.Entry<String, Double>> heap =
+            new PriorityQueue<>(Math.max(k, 1) + 1, Map.Entry.comparingByValue());
+        for (Map.Entry<String, Double> entry : values.entrySet()) {
+            if (heap.size() < k) {
+                heap.offer(entry);
+            } else if (k > 0 && entry.getValue() > heap.peek().getValue()) {
+                heap.poll();
+                heap.offer(entry);
+            }
+        }
+        List<Map.Entry<String, Double>> top = new ArrayList<>(heap);
+        top.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+        return top;
+    }
+
+    /**
+     * Montículo máximo de identificadores ordenado por la participación pendiente,
+     * con posiciones indexadas para aumentar la prioridad de un nodo ya encolado.
+     */
+    private static class MaxHeap {
+        private final int[] heap;
+        private final int[] position;
+        private final double[] priority;
+        private int size;
+
+        MaxHeap(int capacity, double[] priority) {
+            this.heap = new int[capacity];
+            this.position = new int[capacity];
+            this.priority = priority;
+            Arrays.fill(position, -1);
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void offer(int id) {
+            heap[size] = id;
+            position[id] = size;
+            siftUp(size++);
+        }
+
+        void offerOrIncrease(int id) {
+            if (position[id] < 0) {
+                offer(id);
+            } else {
+                siftUp(position[id]);
+            }
+        }
+
+        int poll() {
+            int top = heap[0];
+            remove(top);
+            return top;
+        }
+
+        void remove(int id) {
+            int index = position[id];
+            if (index < 0) {
+                return;
+            }
+            position[id] = -1;
+            size--;
+            if (index < size) {
+                int moved = heap[size];
+                heap[index] = moved;
+                position[moved] = index;
+                siftDown(index);
+                if (position[moved] == index) {
+                    siftUp(index);
+                }
+            }
+        }
+
+        private void siftUp(int index) {
+            int id = heap[index];
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (priority[heap[parent]] >= priority[id]) {
+                    break;
+                }
+                heap[index] = heap[parent];
+                position[heap[index]] = index;
+                index = parent;
+            }
+            heap[index] = id;
+            position[id] = index;
+        }
+
+        private void siftDown(int index) {
+            int id = heap[index];
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && priority[heap[child + 1]] > priority[heap[child]]) {
+                    child++;
+                }
+                if (priority[heap[child]] <= priority[id]) {
+                    break;
+                }
+                heap[index] = heap[child];
+                position[heap[index]] = index;
+                index = child;
+            }
+            heap[index] = id;
+            position[id] = index;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.davivienda.excelpdf.application;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.davivienda.excelpdf.domain.OwnershipGraph;
+
+/**
+ * Resultados de beneficiarios finales para todas las entidades de un grafo.
+ *
+ * <p>Cada entidad guarda su vector disperso de beneficiarios (identificadores y
+ * participaciones) tal como lo calculó {@link OwnershipCalculator#calculateAllRoots()}.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public class UboResultStore {
+
+    private final OwnershipGraph ownershipGraph;
+    private final int[][] beneficiaryIds;
+    private final double[][] shares;
+
+    UboResultStore(OwnershipGraph ownershipGraph, int[][] beneficiaryIds, double[][] shares) {
+        this.ownershipGraph = ownershipGraph;
+        this.beneficiaryIds = beneficiaryIds;
+        this.shares = shares;
+    }
+
+    /**
+     * Obtiene los beneficiarios finales de una entidad.
+     *
+     * @param entityName nombre de la entidad raíz
+     * @return mapa de beneficiario -> porcentaje final (0.0 - 1.0), ordenado de mayor a menor
+     * @throws IllegalArgumentException si la entidad no existe
+     */
+    public Map<String, Double> getBeneficiaries(String entityName) {
+        int id = ownershipGraph.idOf(entityName.trim());
+        if (id < 0) {
+            throw new IllegalArgumentException("Entidad raíz no encontrada: " + entityName);
+        }
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < beneficiaryIds[id].length; i++) {
+            order.add(i);
+        }
+        order.sort((a, b) -> Double.compare(shares[id][b], shares[id][a]));
+
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int i : order) {
+            result.put(ownershipGraph.nameOf(beneficiaryIds[id][i]), shares[id][i]);
+        }
+        return result;
+    }
+
+    /**
+     * Obtiene las entidades con accionistas (sociedades) incluidas en el resultado.
+     *
+     * @return nombres de las entidades
+     */
+    public List<String> getEntities() {
+        List<String> entities = new ArrayList<>();
+        for (int id = 0; id < ownershipGraph.size(); id++) {
+            if (ownershipGraph.hasOwners(id)) {
+                entities.add(ownershipGraph.nameOf(id));
+            }
+        }
+        Collections.sort(entities);
+        return entities;
+    }
+
+    /**
+     * Número total de pares entidad-beneficiario almacenados.
+     *
+     * @return número de participaciones finales
+     */
+    public long getEntryCount() {
+        long count = 0;
+        for (int id = 0; id < ownershipGraph.size(); id++) {
+            if (ownershipGraph.hasOwners(id)) {
+                count += beneficiaryIds[id].length;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Exporta la tabla completa de beneficiarios finales a un archivo CSV.
+     * Columnas: Entidad, Beneficiario Final, Participacion (%).
+     *
+     * @param outputPath ruta del archivo CSV
+     * @throws IOException si hay problemas escribiendo el archivo
+     */
+    public void exportCsv(Path outputPath) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(outputPath, StandardCharsets.UTF_8)) {
+            writer.write("Entidad,Beneficiario Final,Participacion (%)");
+            writer.newLine();
+            for (String entity : getEntities()) {
+                for (Map.Entry<String, Double> entry : getBeneficiaries(entity).entrySet()) {
+                    writer.write(quote(entity));
+                    writer.write(',');
+                    writer.write(quote(entry.getKey()));
+                    writer.write(',');
+                    writer.write(String.format(Locale.ROOT, "%.6f", entry.getValue() * 100));
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Escapa un valor CSV si contiene separadores o comillas.
+     */
+    private static String quote(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
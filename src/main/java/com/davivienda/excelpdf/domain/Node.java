@@ -1,19 +1,27 @@
 package com.davivienda.excelpdf.domain;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Representa un nodo en el grafo de participaciones accionarias.
  * Cada nodo puede tener múltiples propietarios con sus respectivos porcentajes.
  * 
+ * <p>Durante la carga los propietarios se guardan en un mapa propio. Al congelar el
+ * grafo en un {@link OwnershipGraph} el nodo pasa a ser una vista ligera sobre los
+ * arreglos compactos y libera su mapa; si luego se modifica, vuelve a materializarlo.
+ * 
  * @author Davivienda
  * @version 1.0
  */
 public class Node {
     
     private final String name;
-    private final Map<Node, Double> owners = new HashMap<>();
+    private Map<Node, Double> owners = new HashMap<>();
+    private OwnershipGraph store;
+    private int id = -1;
     
     /**
      * Constructor del nodo.
@@ -49,16 +57,75 @@ public class Node {
             throw new IllegalArgumentException("Un nodo no puede ser propietario de sí mismo");
         }
         
+        detachFromStore();
         owners.put(owner, percentage);
     }
     
+    /**
+     * Elimina un propietario directo de este nodo.
+     * 
+     * @param owner nodo propietario
+     * @return true si el propietario existía y fue eliminado
+     */
+    public boolean removeOwner(Node owner) {
+        if (owner == null) {
+            throw new IllegalArgumentException("El propietario no puede ser null");
+        }
+        if (getOwnershipPercentage(owner) == 0.0) {
+            return false;
+        }
+        detachFromStore();
+        return owners.remove(owner) != null;
+    }
+    
+    /**
+     * Obtiene el porcentaje de participación de un propietario directo.
+     * 
+     * @param owner nodo propietario
+     * @return porcentaje (0.0 - 1.0), o 0 si no es propietario directo
+     */
+    public double getOwnershipPercentage(Node owner) {
+        if (store == null) {
+            return owners.getOrDefault(owner, 0.0);
+        }
+        for (int edge = store.ownerStart(id); edge < store.ownerEnd(id); edge++) {
+            if (store.nodeAt(store.ownerIdAt(edge)).equals(owner)) {
+                return store.weightAt(edge);
+            }
+        }
+        return 0.0;
+    }
+    
     /**
      * Obtiene todos los propietarios de este nodo.
+     * Para recorridos frecuentes use {@link #forEachOwner(OwnerVisitor)}, que no crea mapas.
      * 
-     * @return mapa de propietario -> porcentaje
+     * @return mapa de solo lectura de propietario -> porcentaje
      */
     public Map<Node, Double> getOwners() {
-        return new HashMap<>(owners);
+        if (store == null) {
+            return Collections.unmodifiableMap(owners);
+        }
+        Map<Node, Double> view = new LinkedHashMap<>();
+        forEachOwner(view::put);
+        return Collections.unmodifiableMap(view);
+    }
+    
+    /**
+     * Recorre los propietarios directos sin crear estructuras intermedias.
+     * 
+     * @param visitor función que recibe cada propietario y su porcentaje (0.0 - 1.0)
+     */
+    public void forEachOwner(OwnerVisitor visitor) {
+        if (store == null) {
+            for (Map.Entry<Node, Double> ownerEntry : owners.entrySet()) {
+                visitor.visit(ownerEntry.getKey(), ownerEntry.getValue());
+            }
+            return;
+        }
+        for (int edge = store.ownerStart(id); edge < store.ownerEnd(id); edge++) {
+            visitor.visit(store.nodeAt(store.ownerIdAt(edge)), store.weightAt(edge));
+        }
     }
     
     /**
@@ -67,7 +134,40 @@ public class Node {
      * @return true si tiene propietarios, false si es un beneficiario final
      */
     public boolean hasOwners() {
-        return !owners.isEmpty();
+        return getOwnerCount() > 0;
+    }
+    
+    /**
+     * Obtiene el identificador del nodo dentro del {@link OwnershipGraph} al que está ligado.
+     * 
+     * @return identificador, o -1 si el nodo no está ligado a un grafo compacto
+     */
+    public int getId() {
+        return id;
+    }
+    
+    /**
+     * Liga este nodo a un grafo compacto; sus propietarios pasan a leerse de ahí.
+     */
+    void attach(OwnershipGraph store, int id) {
+        this.store = store;
+        this.id = id;
+        this.owners = null;
+    }
+    
+    /**
+     * Materializa de nuevo el mapa de propietarios antes de una modificación.
+     */
+    private void detachFromStore() {
+        if (store == null) {
+            return;
+        }
+        Map<Node, Double> materialized = new HashMap<>();
+        forEachOwner(materialized::put);
+        store.markStale();
+        this.owners = materialized;
+        this.store = null;
+        this.id = -1;
     }
     
     /**
@@ -85,13 +185,11 @@ public class Node {
      * @throws IllegalStateException si la suma excede el 100%
      */
     public void validateOwnership() {
-        if (owners.isEmpty()) {
+        if (!hasOwners()) {
             return; // Los beneficiarios finales no necesitan validación
         }
         
-        double totalPercentage = owners.values().stream()
-            .mapToDouble(Double::doubleValue)
-            .sum();
+        double totalPercentage = getTotalDistributedPercentage();
         
         if (totalPercentage > 1.01) { // Permitir pequeños errores de redondeo
             throw new IllegalStateException(
@@ -107,9 +205,16 @@ public class Node {
      * @return porcentaje total distribuido (0.0 - 1.0)
      */
     public double getTotalDistributedPercentage() {
-        return owners.values().stream()
-            .mapToDouble(Double::doubleValue)
-            .sum();
+        if (store == null) {
+            return owners.values().stream()
+                .mapToDouble(Double::doubleValue)
+                .sum();
+        }
+        double total = 0.0;
+        for (int edge = store.ownerStart(id); edge < store.ownerEnd(id); edge++) {
+            total += store.weightAt(edge);
+        }
+        return total;
     }
     
     /**
@@ -118,7 +223,7 @@ public class Node {
      * @return número de propietarios
      */
     public int getOwnerCount() {
-        return owners.size();
+        return (store == null) ? owners.size() : store.ownerEnd(id) - store.ownerStart(id);
     }
     
     @Override
@@ -137,6 +242,14 @@ public class Node {
     @Override
     public String toString() {
         return String.format("Node{name='%s', owners=%d, totalDistributed=%.2f%%}", 
-                           name, owners.size(), getTotalDistributedPercentage() * 100);
+                           name, getOwnerCount(), getTotalDistributedPercentage() * 100);
+    }
+    
+    /**
+     * Función que recibe cada propietario directo de un nodo.
+     */
+    @FunctionalInterface
+    public interface OwnerVisitor {
+        void visit(Node owner, double percentage);
     }
 }
\ No newline at end of file
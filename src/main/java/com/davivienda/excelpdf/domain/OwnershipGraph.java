@@ -0,0 +1,254 @@
+package com.davivienda.excelpdf.domain;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Representación compacta e inmutable del grafo de participaciones.
+ *
+ * <p>Cada entidad se identifica con un entero y sus propietarios se guardan en formato
+ * CSR (Compressed Sparse Row): los propietarios del nodo {@code id} ocupan las posiciones
+ * {@code [ownerStart(id), ownerEnd(id))} de los arreglos {@code ownerIds} y {@code weights}.
+ * Los algoritmos de cálculo recorren estos arreglos sin crear objetos.
+ *
+ * <p>También se guarda el índice inverso en el mismo formato: las entidades de las que
+ * {@code id} es accionista ocupan {@code [ownedStart(id), ownedEnd(id))} de
+ * {@code ownedIds} y {@code ownedWeights}.
+ *
+ * <p>Un grafo armado con {@link #fromArrays} no tiene nodos previos: la vista
+ * {@link Node} de cada entidad se crea la primera vez que se pide con {@link #nodeAt(int)}.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public final class OwnershipGraph {
+
+    private final String[] names;
+    private final Node[] nodes;
+    private final Map<String, Integer> idsByName;
+    private final int[] offsets;
+    private final int[] ownerIds;
+    private final double[] weights;
+    private final int[] ownedOffsets;
+    private final int[] ownedIds;
+    private final double[] ownedWeights;
+    private volatile boolean stale;
+
+    private OwnershipGraph(String[] names, Node[] nodes, Map<String, Integer> idsByName,
+                           int[] offsets, int[] ownerIds, double[] weights) {
+        this.names = names;
+        this.nodes = nodes;
+        this.idsByName = idsByName;
+        this.offsets = offsets;
+        this.ownerIds = ownerIds;
+        this.weights = weights;
+
+        // Índice inverso: para cada accionista, las entidades que posee
+        int size = names.length;
+        this.ownedOffsets = new int[size + 1];
+        for (int ownerId : ownerIds) {
+            ownedOffsets[ownerId + 1]++;
+        }
+        for (int id = 0; id < size; id++) {
+            ownedOffsets[id + 1] += ownedOffsets[id];
+        }
+        this.ownedIds = new int[ownerIds.length];
+        this.ownedWeights = new double[ownerIds.length];
+        int[] cursor = Arrays.copyOf(ownedOffsets, size);
+        for (int id = 0; id < size; id++) {
+            for (int edge = offsets[id]; edge < offsets[id + 1]; edge++) {
+                int position = cursor[ownerIds[edge]]++;
+                ownedIds[position] = id;
+                ownedWeights[position] = weights[edge];
+            }
+        }
+    }
+
+    /**
+     * Congela un conjunto de nodos en un grafo compacto. Los nodos quedan ligados
+     * al grafo resultante y liberan sus mapas de propietarios.
+     *
+     * @param graphNodes nodos del grafo (deben incluir a todos los propietarios)
+     * @return grafo compacto
+     * @throws IllegalArgumentException si algún propietario no pertenece al conjunto
+     */
+    public static OwnershipGraph freeze(Collection<Node> graphNodes) {
+        int size = graphNodes.size();
+        String[] names = new String[size];
+        Node[] nodes = new Node[size];
+        Map<String, Integer> idsByName = new HashMap<>(size * 2);
+
+        int nextId = 0;
+        for (Node node : graphNodes) {
+            names[nextId] = node.getName();
+            nodes[nextId] = node;
+            idsByName.put(node.getName(), nextId);
+            nextId++;
+        }
+
+        int[] offsets = new int[size + 1];
+        for (int id = 0; id < size; id++) {
+            offsets[id + 1] = offsets[id] + nodes[id].getOwnerCount();
+        }
+
+        int[] ownerIds = new int[offsets[size]];
+        double[] weights = new double[offsets[size]];
+        int[] cursor = {0};
+        for (int id = 0; id < size; id++) {
+            cursor[0] = offsets[id];
+            nodes[id].forEachOwner((owner, percentage) -> {
+                Integer ownerId = idsByName.get(owner.getName());
+                if (ownerId == null) {
+                    throw new IllegalArgumentException("Propietario fuera del grafo: " + owner.getName());
+                }
+                ownerIds[cursor[0]] = ownerId;
+                weights[cursor[0]] = percentage;
+                cursor[0]++;
+            });
+        }
+
+        OwnershipGraph ownershipGraph = new OwnershipGraph(names, nodes, idsByName, offsets, ownerIds, weights);
+        for (int id = 0; id < size; id++) {
+            nodes[id].attach(ownershipGraph, id);
+        }
+        return ownershipGraph;
+    }
+
+    /**
+     * Arma un grafo directamente sobre arreglos CSR ya construidos, por ejemplo los de una
+     * instantánea. Los arreglos pasan a ser del grafo y no deben modificarse después.
+     *
+     * @param names nombre de cada entidad
+     * @param offsets desplazamientos de los propietarios de cada entidad ({@code names.length + 1})
+     * @param ownerIds propietario de cada relación
+     * @param weights porcentaje de cada relación (0.0 - 1.0)
+     * @return grafo compacto
+     * @throws IllegalArgumentException si los arreglos no son coherentes o hay nombres repetidos
+     */
+    public static OwnershipGraph fromArrays(String[] names, int[] offsets, int[] ownerIds, double[] weights) {
+        int size = names.length;
+        if (offsets.length != size + 1 || offsets[size] != ownerIds.length || weights.length != ownerIds.length) {
+            throw new IllegalArgumentException("Arreglos del grafo con tamaños inconsistentes");
+        }
+        Map<String, Integer> idsByName = new HashMap<>(size * 2);
+        for (int id = 0; id < size; id++) {
+            if (idsByName.put(names[id], id) != null) {
+                throw new IllegalArgumentException("Entidad repetida en el grafo: " + names[id]);
+            }
+        }
+        return new OwnershipGraph(names, new Node[size], idsByName, offsets, ownerIds, weights);
+    }
+
+    /**
+     * @return número de entidades
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return número de relaciones de propiedad
+     */
+    public int edgeCount() {
+        return ownerIds.length;
+    }
+
+    /**
+     * Obtiene el identificador de una entidad.
+     *
+     * @param name nombre de la entidad
+     * @return identificador, o -1 si no existe
+     */
+    public int idOf(String name) {
+        Integer id = idsByName.get(name);
+        return (id == null) ? -1 : id;
+    }
+
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    /**
+     * Obtiene la vista {@link Node} de una entidad, creándola si aún no existe.
+     *
+     * @param id identificador de la entidad
+     * @return nodo ligado a este grafo
+     */
+    public Node nodeAt(int id) {
+        Node node = nodes[id];
+        return (node != null) ? node : createNode(id);
+    }
+
+    private synchronized Node createNode(int id) {
+        if (nodes[id] == null) {
+            Node node = new Node(names[id]);
+            node.attach(this, id);
+            nodes[id] = node;
+        }
+        return nodes[id];
+    }
+
+    /**
+     * @return primera posición de los propietarios del nodo en los arreglos CSR
+     */
+    public int ownerStart(int id) {
+        return offsets[id];
+    }
+
+    /**
+     * @return posición siguiente a la última de los propietarios del nodo
+     */
+    public int ownerEnd(int id) {
+        return offsets[id + 1];
+    }
+
+    public int ownerIdAt(int edge) {
+        return ownerIds[edge];
+    }
+
+    public double weightAt(int edge) {
+        return weights[edge];
+    }
+
+    public boolean hasOwners(int id) {
+        return offsets[id + 1] > offsets[id];
+    }
+
+    /**
+     * @return primera posición de las entidades poseídas por el nodo en el índice inverso
+     */
+    public int ownedStart(int id) {
+        return ownedOffsets[id];
+    }
+
+    /**
+     * @return posición siguiente a la última de las entidades poseídas por el nodo
+     */
+    public int ownedEnd(int id) {
+        return ownedOffsets[id + 1];
+    }
+
+    public int ownedIdAt(int position) {
+        return ownedIds[position];
+    }
+
+    public double ownedWeightAt(int position) {
+        return ownedWeights[position];
+    }
+
+    /**
+     * Indica si algún nodo ligado a este grafo fue modificado después de congelarlo.
+     * Los arreglos siguen siendo válidos, pero ya no reflejan el estado actual de los nodos.
+     *
+     * @return true si el grafo debe reconstruirse
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    void markStale() {
+        stale = true;
+    }
+}
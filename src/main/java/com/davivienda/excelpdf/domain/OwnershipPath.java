@@ -0,0 +1,94 @@
+package com.davivienda.excelpdf.domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ruta de participación desde una entidad raíz hasta un beneficiario final,
+ * con el porcentaje que aporta esa ruta.
+ *
+ * <p>La ruta guarda solo los identificadores de las entidades dentro del
+ * {@link OwnershipGraph}; el texto legible se construye bajo demanda.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public final class OwnershipPath {
+
+    private final OwnershipGraph ownershipGraph;
+    private final int[] entityIds;
+    private final double percentage;
+    private final boolean cycle;
+
+    /**
+     * Constructor de la ruta.
+     *
+     * @param ownershipGraph grafo al que pertenecen los identificadores
+     * @param entityIds identificadores desde la raíz hasta el beneficiario
+     * @param percentage porcentaje aportado por la ruta (0.0 - 1.0)
+     * @param cycle true si la ruta termina al cerrarse un ciclo
+     */
+    public OwnershipPath(OwnershipGraph ownershipGraph, int[] entityIds, double percentage, boolean cycle) {
+        if (entityIds.length == 0) {
+            throw new IllegalArgumentException("La ruta debe contener al menos una entidad");
+        }
+        this.ownershipGraph = ownershipGraph;
+        this.entityIds = entityIds;
+        this.percentage = percentage;
+        this.cycle = cycle;
+    }
+
+    /**
+     * @return nombre del beneficiario al final de la ruta
+     */
+    public String getBeneficiary() {
+        return ownershipGraph.nameOf(entityIds[entityIds.length - 1]);
+    }
+
+    /**
+     * @return porcentaje aportado por la ruta (0.0 - 1.0)
+     */
+    public double getPercentage() {
+        return percentage;
+    }
+
+    /**
+     * @return número de relaciones de propiedad que recorre la ruta
+     */
+    public int getLength() {
+        return entityIds.length - 1;
+    }
+
+    /**
+     * @return true si la ruta termina al volver a una entidad ya recorrida
+     */
+    public boolean isCycle() {
+        return cycle;
+    }
+
+    /**
+     * Obtiene los nombres de las entidades de la ruta, desde la raíz.
+     *
+     * @return lista de nombres de solo lectura
+     */
+    public List<String> getEntityNames() {
+        List<String> names = new ArrayList<>(entityIds.length);
+        for (int id : entityIds) {
+            names.add(ownershipGraph.nameOf(id));
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(ownershipGraph.nameOf(entityIds[0]));
+        for (int i = 1; i < entityIds.length; i++) {
+            text.append(" → ").append(ownershipGraph.nameOf(entityIds[i]));
+        }
+        if (cycle) {
+            text.append(" [CICLO DETECTADO]");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,479 @@
+package com.davivienda.excelpdf.infrastructure;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lector de archivos CSV en una sola pasada.
+ *
+ * <p>El archivo se lee por bloques en un búfer fijo y se separa en registros con una
+ * máquina de estados según RFC 4180: un valor que empieza con comillas puede contener
+ * el delimitador, saltos de línea y comillas escritas dos veces ({@code ""}). Los
+ * registros se entregan a un {@link RowHandler} apenas se completan, en un
+ * {@link CsvRow} que se reutiliza, así que leer una fila no crea objetos.
+ *
+ * <p>El delimitador (coma, punto y coma o tabulador) se deduce de la primera línea con
+ * datos del primer bloque. Los valores se entregan sin espacios alrededor, se omiten las
+ * líneas vacías y la marca de orden de bytes inicial, y los bytes que no son UTF-8 se
+ * reemplazan en lugar de detener la lectura.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public final class CsvRowReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(CsvRowReader.class);
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final char[] CANDIDATE_DELIMITERS = {',', ';', '\t'};
+    private static final char QUOTE = '"';
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+    private static final int END_OF_FILE = -1;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final CsvRow row = new CsvRow();
+    private int position;
+    private int limit;
+    private int lineNumber = 1;
+    private char delimiter;
+    private boolean fileStart = true;
+    private int quoteStartLine;
+    private int unterminatedQuoteLine;
+
+    private CsvRowReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Lector para un tramo de un archivo cuyo delimitador ya se conoce. El tramo debe
+     * empezar al inicio de un registro; los números de línea se cuentan desde 1 en el
+     * inicio del tramo.
+     *
+     * @param fileStart true si el tramo empieza al inicio del archivo
+     */
+    static CsvRowReader forSection(Reader reader, char delimiter, boolean fileStart) {
+        CsvRowReader csv = new CsvRowReader(reader);
+        csv.delimiter = delimiter;
+        csv.fileStart = fileStart;
+        return csv;
+    }
+
+    /**
+     * Recibe los registros del archivo en orden.
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        /**
+         * Procesa un registro. El registro y sus valores solo son válidos durante la
+         * llamada: el lector los reutiliza para el siguiente.
+         *
+         * @param row registro leído
+         */
+        void onRow(CsvRow row);
+    }
+
+    /**
+     * Recorre el archivo en UTF-8.
+     *
+     * @param file archivo CSV
+     * @param handler manejador de registros; las excepciones que lance se propagan sin cambios
+     * @return número de registros no vacíos entregados
+     * @throws IOException si el archivo no se puede leer o termina dentro de un valor entre
+     *                     comillas
+     */
+    public static int read(File file, RowHandler handler) throws IOException {
+        // InputStreamReader reemplaza los bytes que no son UTF-8 en lugar de fallar
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            CsvRowReader csv = new CsvRowReader(reader);
+            csv.fill();
+            csv.delimiter = detectDelimiter(csv.buffer, csv.position, csv.limit);
+            logDelimiter(csv.delimiter);
+            int rows = csv.readAll(handler);
+            csv.requireQuotesClosed(0);
+            logger.info("Leídos {} registros del CSV", rows);
+            return rows;
+        }
+    }
+
+    static void logDelimiter(char delimiter) {
+        logger.info("Delimitador detectado: '{}'", (delimiter == '\t') ? "\\t" : String.valueOf(delimiter));
+    }
+
+    /**
+     * Entrega todos los registros restantes, omitiendo la marca de orden de bytes si el
+     * archivo empieza con ella.
+     *
+     * @return número de registros no vacíos entregados
+     */
+    int readAll(RowHandler handler) throws IOException {
+        if (position == limit) {
+            fill();
+        }
+        if (fileStart && position < limit && buffer[position] == BYTE_ORDER_MARK) {
+            position++;
+        }
+        int rows = 0;
+        while (readRecord()) {
+            if (!row.isBlank()) {
+                handler.onRow(row);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return número de saltos de línea leídos
+     */
+    int getLinesRead() {
+        return lineNumber - 1;
+    }
+
+    /**
+     * @return línea, relativa al inicio del texto, en que se abrió el valor entre comillas
+     *         que quedó sin cerrar, o 0 si todas se cerraron
+     */
+    int getUnterminatedQuoteLine() {
+        return unterminatedQuoteLine;
+    }
+
+    /**
+     * Falla si el texto terminó dentro de un valor entre comillas: el último registro
+     * habría absorbido el resto del archivo en un solo valor.
+     *
+     * @param lineOffset líneas del archivo anteriores al texto leído
+     * @throws IOException si quedó un valor entre comillas sin cerrar
+     */
+    void requireQuotesClosed(int lineOffset) throws IOException {
+        if (unterminatedQuoteLine > 0) {
+            throw unterminatedQuote(lineOffset + unterminatedQuoteLine);
+        }
+    }
+
+    static IOException unterminatedQuote(int line) {
+        return new IOException("El archivo termina dentro de un valor entre comillas abierto en la línea " + line
+                               + "; revise las comillas de esa línea");
+    }
+
+    /**
+     * Deduce el delimitador contando los candidatos fuera de comillas en la primera línea
+     * con datos.
+     *
+     * @param chars texto inicial del archivo
+     * @param from primera posición a revisar
+     * @param to posición siguiente a la última
+     * @return el candidato más frecuente; coma si no aparece ninguno o si empata con otro
+     */
+    static char detectDelimiter(char[] chars, int from, int to) {
+        int[] counts = new int[CANDIDATE_DELIMITERS.length];
+        boolean inQuotes = false;
+        boolean hasData = false;
+        for (int i = from; i < to; i++) {
+            char c = chars[i];
+            if (c == QUOTE) {
+                inQuotes = !inQuotes;
+            } else if (!inQuotes && (c == '\n' || c == '\r')) {
+                if (hasData) {
+                    break;
+                }
+            } else if (!inQuotes) {
+                for (int k = 0; k < CANDIDATE_DELIMITERS.length; k++) {
+                    if (c == CANDIDATE_DELIMITERS[k]) {
+                        counts[k]++;
+                    }
+                }
+            }
+            hasData |= c > ' ';
+        }
+        int best = 0;
+        for (int k = 1; k < counts.length; k++) {
+            if (counts[k] > counts[best]) {
+                best = k;
+            }
+        }
+        return CANDIDATE_DELIMITERS[best];
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        limit = Math.max(read, 0);
+        return read > 0;
+    }
+
+    /**
+     * Lee el siguiente registro en {@link #row}.
+     *
+     * @return false si ya no quedaban caracteres
+     */
+    private boolean readRecord() throws IOException {
+        if (position == limit && !fill()) {
+            return false;
+        }
+        row.start(lineNumber);
+        while (true) {
+            int end = readField();
+            row.endField();
+            if (end == delimiter) {
+                continue;
+            }
+            if (end == '\n' || end == '\r') {
+                lineNumber++;
+                if (end == '\r' && (position < limit || fill()) && buffer[position] == '\n') {
+                    position++;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Lee un valor hasta el delimitador, el fin de línea o el fin del archivo. Las
+     * comillas solo abren un valor entre comillas si son lo primero (aparte de espacios);
+     * dentro de un valor sin comillas son un carácter más.
+     *
+     * @return el carácter que terminó el valor, o {@link #END_OF_FILE}
+     */
+    private int readField() throws IOException {
+        boolean quoted = false;
+        boolean leading = true;
+        while (true) {
+            if (position == limit && !fill()) {
+                unterminatedQuoteLine = quoted ? quoteStartLine : 0;
+                return END_OF_FILE;
+            }
+            char[] chars = buffer;
+            int end = limit;
+            int i = position;
+            if (!quoted) {
+                // Valor sin comillas, o lo que sigue a las comillas de cierre
+                for (; i < end; i++) {
+                    char c = chars[i];
+                    if (c == delimiter || c == '\n' || c == '\r') {
+                        row.append(chars, position, i);
+                        position = i + 1;
+                        return c;
+                    }
+                    if (leading && c == QUOTE) {
+                        row.append(chars, position, i);
+                        row.markQuoted();
+                        quoted = true;
+                        quoteStartLine = lineNumber;
+                        i++;
+                        break;
+                    }
+                    leading &= c <= ' ';
+                }
+                if (!quoted) {
+                    row.append(chars, position, end);
+                    position = end;
+                    continue;
+                }
+                position = i;
+            }
+            // Valor entre comillas: todo es literal hasta una comilla que no esté repetida
+            for (; i < end; i++) {
+                char c = chars[i];
+                if (c == QUOTE) {
+                    break;
+                }
+                if (c == '\n') {
+                    lineNumber++;
+                }
+            }
+            row.append(chars, position, i);
+            if (i == end) {
+                position = end;
+                continue;
+            }
+            position = i + 1;
+            if ((position < limit || fill()) && buffer[position] == QUOTE) {
+                row.append(QUOTE);
+                position++;
+            } else {
+                quoted = false;
+                leading = false;
+            }
+        }
+    }
+
+    /**
+     * Registro del CSV. Los valores son vistas sobre un búfer interno que se reutiliza en
+     * cada registro; use {@link #getString(int)} para conservar un valor.
+     */
+    public static final class CsvRow {
+        private char[] chars = new char[256];
+        private int length;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private Field[] fields = new Field[16];
+        private int fieldCount;
+        private int fieldStart;
+        private boolean quoted;
+        private int lineNumber;
+
+        private CsvRow() {
+        }
+
+        private void start(int lineNumber) {
+            this.lineNumber = lineNumber;
+            length = 0;
+            fieldCount = 0;
+            fieldStart = 0;
+            quoted = false;
+        }
+
+        private void append(char[] source, int from, int to) {
+            int count = to - from;
+            if (count <= 0) {
+                return;
+            }
+            ensureCapacity(length + count);
+            System.arraycopy(source, from, chars, length, count);
+            length += count;
+        }
+
+        private void append(char c) {
+            ensureCapacity(length + 1);
+            chars[length++] = c;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+            }
+        }
+
+        private void markQuoted() {
+            quoted = true;
+        }
+
+        /**
+         * Cierra el valor actual quitándole los espacios alrededor.
+         */
+        private void endField() {
+            if (fieldCount == starts.length) {
+                starts = Arrays.copyOf(starts, fieldCount * 2);
+                ends = Arrays.copyOf(ends, fieldCount * 2);
+                fields = Arrays.copyOf(fields, fieldCount * 2);
+            }
+            int start = fieldStart;
+            int end = length;
+            while (start < end && chars[start] <= ' ') {
+                start++;
+            }
+            while (end > start && chars[end - 1] <= ' ') {
+                end--;
+            }
+            starts[fieldCount] = start;
+            ends[fieldCount] = end;
+            fieldCount++;
+            fieldStart = length;
+        }
+
+        private boolean isBlank() {
+            return fieldCount == 1 && starts[0] == ends[0] && !quoted;
+        }
+
+        /**
+         * @return número de la línea del archivo en que empieza el registro, desde 1
+         */
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * @return número de valores del registro
+         */
+        public int size() {
+            return fieldCount;
+        }
+
+        /**
+         * Valor de una columna como vista sin copiar, válida solo durante la llamada al
+         * manejador.
+         *
+         * @param column columna, desde 0
+         * @return valor sin espacios alrededor
+         * @throws IndexOutOfBoundsException si el registro no tiene esa columna
+         */
+        public CharSequence get(int column) {
+            if (column < 0 || column >= fieldCount) {
+                throw new IndexOutOfBoundsException("Columna " + column + " de " + fieldCount);
+            }
+            Field field = fields[column];
+            if (field == null) {
+                field = new Field(column);
+                fields[column] = field;
+            }
+            return field;
+        }
+
+        /**
+         * Copia el valor de una columna.
+         *
+         * @param column columna, desde 0
+         * @return valor sin espacios alrededor, o cadena vacía si el registro no tiene esa columna
+         */
+        public String getString(int column) {
+            if (column >= fieldCount) {
+                return "";
+            }
+            return new String(chars, starts[column], ends[column] - starts[column]);
+        }
+
+        /**
+         * @return copia de todos los valores del registro
+         */
+        public String[] toArray() {
+            String[] values = new String[fieldCount];
+            for (int i = 0; i < fieldCount; i++) {
+                values[i] = getString(i);
+            }
+            return values;
+        }
+
+        /**
+         * Vista de un valor sobre el búfer del registro.
+         */
+        private final class Field implements CharSequence {
+            private final int column;
+
+            Field(int column) {
+                this.column = column;
+            }
+
+            @Override
+            public int length() {
+                return ends[column] - starts[column];
+            }
+
+            @Override
+            public char charAt(int index) {
+                if (index < 0 || index >= length()) {
+                    throw new IndexOutOfBoundsException("Posición " + index + " de " + length());
+                }
+                return chars[starts[column] + index];
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                return toString().substring(start, end);
+            }
+
+            @Override
+            public String toString() {
+                return getString(column);
+            }
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.davivienda.excelpdf.infrastructure;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.davivienda.excelpdf.domain.OwnershipGraph;
+
+/**
+ * Archivo binario con una instantánea del grafo de participaciones.
+ *
+ * <p>Formato (little-endian):
+ * <pre>
+ *   encabezado : magia "UBOG", versión, tamaño y fecha de modificación del archivo
+ *                de origen, número de entidades, de relaciones, de bytes de nombres
+ *                y de bytes de observaciones, CRC32 del cuerpo
+ *   cuerpo     : desplazamientos de nombres (n + 1 enteros), nombres en UTF-8,
+ *                desplazamientos CSR (n + 1 enteros), accionistas (e enteros),
+ *                porcentajes (e doubles), observaciones de la carga
+ *   observación: nombre, conteo, número de ejemplos y ejemplos; los textos como
+ *                longitud (entero) más bytes UTF-8
+ * </pre>
+ * Las observaciones son los conteos que solo se conocen al leer el archivo de origen
+ * (relaciones repetidas, participaciones sobre sí misma), para que el reporte de
+ * integridad sea el mismo al reutilizar la instantánea. La lectura se hace sobre el
+ * archivo mapeado en memoria, sin copiar el cuerpo a un búfer intermedio.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public final class GraphSnapshotFile {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphSnapshotFile.class);
+
+    private static final int MAGIC = 0x474F4255; // "UBOG" en little-endian
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4 + 4 + 4 + 4 + 8;
+
+    private GraphSnapshotFile() {
+    }
+
+    /**
+     * Guarda el grafo en una instantánea.
+     *
+     * @param snapshotPath archivo de destino (se reemplaza si existe)
+     * @param ownershipGraph grafo a guardar
+     * @param sourceSize tamaño del archivo de origen, o 0 si no aplica
+     * @param sourceModified fecha de modificación del archivo de origen en milisegundos, o 0
+     * @param issues observaciones de la carga a conservar
+     * @throws IOException si no se puede escribir el archivo
+     */
+    public static void write(Path snapshotPath, OwnershipGraph ownershipGraph,
+                             long sourceSize, long sourceModified, List<IssueCount> issues) throws IOException {
+        int size = ownershipGraph.size();
+        int edgeCount = ownershipGraph.edgeCount();
+
+        byte[][] encodedNames = new byte[size][];
+        int nameBytes = 0;
+        for (int id = 0; id < size; id++) {
+            encodedNames[id] = ownershipGraph.nameOf(id).getBytes(StandardCharsets.UTF_8);
+            nameBytes += encodedNames[id].length;
+        }
+
+        byte[] encodedIssues = encodeIssues(issues);
+        long bodyBytes = 4L * (size + 1) + nameBytes + 4L * (size + 1) + 4L * edgeCount + 8L * edgeCount
+            + encodedIssues.length;
+        if (HEADER_BYTES + bodyBytes > Integer.MAX_VALUE) {
+            throw new IOException("El grafo es demasiado grande para una instantánea: " + bodyBytes + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) (HEADER_BYTES + bodyBytes)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(HEADER_BYTES);
+
+        int nameOffset = 0;
+        for (int id = 0; id < size; id++) {
+            buffer.putInt(nameOffset);
+            nameOffset += encodedNames[id].length;
+        }
+        buffer.putInt(nameOffset);
+        for (byte[] name : encodedNames) {
+            buffer.put(name);
+        }
+        for (int id = 0; id < size; id++) {
+            buffer.putInt(ownershipGraph.ownerStart(id));
+        }
+        buffer.putInt(edgeCount);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            buffer.putInt(ownershipGraph.ownerIdAt(edge));
+        }
+        for (int edge = 0; edge < edgeCount; edge++) {
+            buffer.putDouble(ownershipGraph.weightAt(edge));
+        }
+        buffer.put(encodedIssues);
+
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.array(), HEADER_BYTES, (int) bodyBytes);
+        buffer.position(0);
+        buffer.putInt(MAGIC)
+              .putInt(VERSION)
+              .putLong(sourceSize)
+              .putLong(sourceModified)
+              .putInt(size)
+              .putInt(edgeCount)
+              .putInt(nameBytes)
+              .putInt(encodedIssues.length)
+              .putLong(checksum.getValue());
+
+        Path directory = snapshotPath.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, snapshotPath.getFileName().toString(), ".tmp");
+        Files.write(temporary, buffer.array());
+        Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Instantánea guardada en {} ({} entidades, {} relaciones, {} bytes)",
+                   snapshotPath, size, edgeCount, buffer.capacity());
+    }
+
+    /**
+     * Indica si la instantánea existe y corresponde a un archivo de origen con el tamaño
+     * y la fecha de modificación dados. Solo lee el encabezado.
+     *
+     * @param snapshotPath archivo de la instantánea
+     * @param sourceSize tamaño actual del archivo de origen
+     * @param sourceModified fecha de modificación actual del archivo de origen
+     * @return true si la instantánea se puede reutilizar
+     */
+    public static boolean matchesSource(Path snapshotPath, long sourceSize, long sourceModified) {
+        if (!Files.isRegularFile(snapshotPath)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return false;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // leer el encabezado completo
+            }
+            header.flip();
+            return header.getInt() == MAGIC && header.getInt() == VERSION
+                && header.getLong() == sourceSize && header.getLong() == sourceModified;
+        } catch (IOException e) {
+            logger.warn("No se pudo leer la instantánea {}: {}", snapshotPath, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Lee una instantánea mapeándola en memoria y verifica su suma de control.
+     *
+     * @param snapshotPath archivo de la instantánea
+     * @return contenido de la instantánea
+     * @throws IOException si el archivo no existe, no es una instantánea válida o está dañado
+     */
+    public static Contents read(Path snapshotPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IOException("Instantánea incompleta: " + snapshotPath);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (mapped.getInt() != MAGIC) {
+                throw new IOException("El archivo no es una instantánea del grafo: " + snapshotPath);
+            }
+            int version = mapped.getInt();
+            if (version != VERSION) {
+                throw new IOException("Versión de instantánea no soportada: " + version);
+            }
+            long sourceSize = mapped.getLong();
+            long sourceModified = mapped.getLong();
+            int size = mapped.getInt();
+            int edgeCount = mapped.getInt();
+            int nameBytes = mapped.getInt();
+            int issueBytes = mapped.getInt();
+            long expectedChecksum = mapped.getLong();
+
+            long bodyBytes = 4L * (size + 1) + nameBytes + 4L * (size + 1) + 4L * edgeCount + 8L * edgeCount
+                + issueBytes;
+            if (size < 0 || edgeCount < 0 || nameBytes < 0 || issueBytes < 0 || HEADER_BYTES + bodyBytes != fileSize) {
+                throw new IOException("Instantánea con tamaño inconsistente: " + snapshotPath);
+            }
+
+            CRC32 checksum = new CRC32();
+            checksum.update(mapped.duplicate().position(HEADER_BYTES));
+            if (checksum.getValue() != expectedChecksum) {
+                throw new IOException("La suma de control de la instantánea no coincide: " + snapshotPath);
+            }
+
+            int[] nameOffsets = new int[size + 1];
+            mapped.asIntBuffer().get(nameOffsets);
+            mapped.position(mapped.position() + 4 * (size + 1));
+            byte[] encodedNames = new byte[nameBytes];
+            mapped.get(encodedNames);
+            String[] names = new String[size];
+            for (int id = 0; id < size; id++) {
+                names[id] = new String(encodedNames, nameOffsets[id], nameOffsets[id + 1] - nameOffsets[id],
+                                       StandardCharsets.UTF_8);
+            }
+
+            int[] offsets = new int[size + 1];
+            mapped.asIntBuffer().get(offsets);
+            mapped.position(mapped.position() + 4 * (size + 1));
+            int[] ownerIds = new int[edgeCount];
+            mapped.asIntBuffer().get(ownerIds);
+            mapped.position(mapped.position() + 4 * edgeCount);
+            double[] weights = new double[edgeCount];
+            mapped.asDoubleBuffer().get(weights);
+            mapped.position(mapped.position() + 8 * edgeCount);
+            List<IssueCount> issues = decodeIssues(snapshotPath, mapped);
+
+            validateStructure(snapshotPath, offsets, ownerIds);
+            return new Contents(names, offsets, ownerIds, weights, issues, sourceSize, sourceModified);
+        }
+    }
+
+    private static byte[] encodeIssues(List<IssueCount> issues) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(issues.size());
+            for (IssueCount issue : issues) {
+                writeString(out, issue.getName());
+                out.writeInt(issue.getCount());
+                out.writeInt(issue.getSamples().size());
+                for (String sample : issue.getSamples()) {
+                    writeString(out, sample);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+    }
+
+    private static List<IssueCount> decodeIssues(Path snapshotPath, ByteBuffer mapped) throws IOException {
+        byte[] encoded = new byte[mapped.remaining()];
+        mapped.get(encoded);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+            int issueCount = in.readInt();
+            List<IssueCount> issues = new ArrayList<>();
+            for (int i = 0; i < issueCount; i++) {
+                String name = readString(in);
+                int count = in.readInt();
+                int sampleCount = in.readInt();
+                List<String> samples = new ArrayList<>();
+                for (int j = 0; j < sampleCount; j++) {
+                    samples.add(readString(in));
+                }
+                issues.add(new IssueCount(name, count, samples));
+            }
+            return Collections.unmodifiableList(issues);
+        } catch (EOFException | NegativeArraySizeException e) {
+            throw new IOException("Instantánea con observaciones inconsistentes: " + snapshotPath);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Verifica que los arreglos CSR sean coherentes antes de usarlos.
+     */
+    private static void validateStructure(Path snapshotPath, int[] offsets, int[] ownerIds) throws IOException {
+        int size = offsets.length - 1;
+        if (offsets[0] != 0 || offsets[size] != ownerIds.length) {
+            throw new IOException("Instantánea con relaciones inconsistentes: " + snapshotPath);
+        }
+        for (int id = 0; id < size; id++) {
+            if (offsets[id + 1] < offsets[id]) {
+                throw new IOException("Instantánea con relaciones inconsistentes: " + snapshotPath);
+            }
+        }
+        for (int ownerId : ownerIds) {
+            if (ownerId < 0 || ownerId >= size) {
+                throw new IOException("Instantánea con accionistas fuera de rango: " + snapshotPath);
+            }
+        }
+    }
+
+    /**
+     * Conteo de una observación de la carga con sus primeros ejemplos.
+     */
+    public static final class IssueCount {
+        private final String name;
+        private final int count;
+        private final List<String> samples;
+
+        public IssueCount(String name, int count, List<String> samples) {
+            this.name = name;
+            this.count = count;
+            this.samples = samples;
+        }
+
+        // Getters
+        public String getName() { return name; }
+        public int getCount() { return count; }
+        public List<String> getSamples() { return samples; }
+    }
+
+    /**
+     * Contenido leído de una instantánea: nombres y relaciones en formato CSR, más las
+     * observaciones de la carga.
+     */
+    public static class Contents {
+        private final String[] names;
+        private final int[] offsets;
+        private final int[] ownerIds;
+        private final double[] weights;
+        private final List<IssueCount> issues;
+        private final long sourceSize;
+        private final long sourceModified;
+
+        Contents(String[] names, int[] offsets, int[] ownerIds, double[] weights, List<IssueCount> issues,
+                 long sourceSize, long sourceModified) {
+            this.names = names;
+            this.offsets = offsets;
+            this.ownerIds = ownerIds;
+            this.weights = weights;
+            this.issues = issues;
+            this.sourceSize = sourceSize;
+            this.sourceModified = sourceModified;
+        }
+
+        public int size() { return names.length; }
+        public int edgeCount() { return ownerIds.length; }
+        public String nameOf(int id) { return names[id]; }
+        public int ownerStart(int id) { return offsets[id]; }
+        public int ownerEnd(int id) { return offsets[id + 1]; }
+        public int ownerIdAt(int edge) { return ownerIds[edge]; }
+        public double weightAt(int edge) { return weights[edge]; }
+        public List<IssueCount> getIssues() { return issues; }
+
+        /**
+         * Grafo compacto sobre los arreglos leídos, sin copiarlos ni crear nodos.
+         *
+         * @return grafo de la instantánea
+         */
+        public OwnershipGraph toOwnershipGraph() {
+            return OwnershipGraph.fromArrays(names, offsets, ownerIds, weights);
+        }
+        public long getSourceSize() { return sourceSize; }
+        public long getSourceModified() { return sourceModified; }
+    }
+}
@@ -0,0 +1,372 @@
+package com.davivienda.excelpdf.infrastructure;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lector de archivos CSV grandes en paralelo.
+ *
+ * <p>El archivo se mapea en memoria y se divide en tramos de tamaño fijo que se leen en
+ * varios hilos con el mismo analizador de {@link CsvRowReader}. Para que cada tramo
+ * empiece al inicio de un registro, primero se cuentan en paralelo las comillas de cada
+ * tramo: la paridad acumulada indica si un punto del archivo está dentro de un valor
+ * entre comillas, y el corte se mueve al siguiente salto de línea que esté fuera de
+ * ellas. Cada tramo arma un resultado parcial que se combina en el hilo que llama, en
+ * el orden del archivo, así que el resultado es el mismo que con una lectura secuencial.
+ *
+ * <p>Las comillas sueltas dentro de un valor sin comillas (fuera de RFC 4180) pueden
+ * invertir la paridad. Si un tramo termina dentro de un valor entre comillas, el corte
+ * fue incorrecto: se descartan los tramos siguientes y el resto del archivo se lee en
+ * secuencia desde el inicio de ese tramo. Solo se mantienen en memoria unos pocos
+ * tramos a la vez.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public final class ParallelCsvReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelCsvReader.class);
+
+    /** Tamaño de tramo por defecto. */
+    public static final long DEFAULT_SECTION_SIZE = 32L << 20;
+
+    private static final int SEGMENT_BITS = 30; // MappedByteBuffer admite hasta 2 GB; se usan segmentos de 1 GB
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final int SNIFF_BYTES = 1 << 16;
+    private static final int FALLBACK_BATCH_ROWS = 1 << 16;
+
+    private ParallelCsvReader() {
+    }
+
+    /**
+     * Arma y combina los resultados parciales de los tramos.
+     *
+     * @param <P> tipo del resultado parcial
+     */
+    public interface SectionCollector<P> {
+        /**
+         * Crea un resultado parcial vacío para un tramo.
+         */
+        P newPartial();
+
+        /**
+         * Agrega un registro a un resultado parcial. Se llama desde los hilos de lectura,
+         * un hilo por tramo; el número de línea del registro es relativo al tramo.
+         */
+        void onRow(P partial, CsvRowReader.CsvRow row);
+
+        /**
+         * Combina un resultado parcial. Se llama desde el hilo que inició la lectura, en
+         * el orden del archivo.
+         *
+         * @param partial resultado parcial
+         * @param lineOffset líneas del archivo anteriores al tramo; sumado al número de
+         *                   línea relativo da la línea en el archivo
+         */
+        void merge(P partial, int lineOffset);
+    }
+
+    /**
+     * Lee el archivo en paralelo.
+     *
+     * @param file archivo CSV en UTF-8
+     * @param parallelism número de hilos
+     * @param sectionSize tamaño aproximado de cada tramo en bytes
+     * @param collector arma y combina los resultados parciales
+     * @param <P> tipo del resultado parcial
+     * @return número de registros no vacíos leídos
+     * @throws IOException si el archivo no se puede leer o termina dentro de un valor entre
+     *                     comillas
+     */
+    public static <P> int read(File file, int parallelism, long sectionSize, SectionCollector<P> collector)
+            throws IOException {
+        if (parallelism < 1 || sectionSize < 1) {
+            throw new IllegalArgumentException("El paralelismo y el tamaño de tramo deben ser al menos 1");
+        }
+        long startTime = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedFile mapped = new MappedFile(channel);
+            char delimiter = sniffDelimiter(mapped);
+            CsvRowReader.logDelimiter(delimiter);
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                long[] starts = findSectionStarts(mapped, sectionSize, pool);
+                int rows = readSections(mapped, starts, delimiter, parallelism, collector, pool);
+                logger.info("Leídos {} registros del CSV en {} tramos con {} hilos en {} ms", rows, starts.length,
+                            parallelism, (System.nanoTime() - startTime) / 1_000_000);
+                return rows;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private static char sniffDelimiter(MappedFile mapped) {
+        byte[] head = new byte[(int) Math.min(SNIFF_BYTES, mapped.size())];
+        mapped.read(0, head, 0, head.length);
+        char[] chars = new String(head, StandardCharsets.UTF_8).toCharArray();
+        return CsvRowReader.detectDelimiter(chars, 0, chars.length);
+    }
+
+    /**
+     * Calcula dónde empieza cada tramo: cuenta las comillas de cada tramo nominal en
+     * paralelo y mueve cada corte al siguiente salto de línea fuera de comillas.
+     */
+    private static long[] findSectionStarts(MappedFile mapped, long sectionSize, ForkJoinPool pool)
+            throws IOException {
+        long size = mapped.size();
+        int sections = (int) Math.max(1, (size + sectionSize - 1) / sectionSize);
+        List<Future<Long>> quoteCounts = new ArrayList<>(sections);
+        for (int i = 0; i < sections; i++) {
+            long from = i * sectionSize;
+            long to = Math.min(size, from + sectionSize);
+            quoteCounts.add(pool.submit(() -> mapped.countQuotes(from, to)));
+        }
+
+        List<Long> starts = new ArrayList<>(sections);
+        starts.add(0L);
+        long quotesBefore = 0;
+        for (int i = 1; i < sections; i++) {
+            quotesBefore += await(quoteCounts.get(i - 1));
+            long start = mapped.nextRecordStart(i * sectionSize, (quotesBefore & 1) == 1);
+            if (start > starts.get(starts.size() - 1) && start < size) {
+                starts.add(start);
+            }
+        }
+        return starts.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Lee los tramos en paralelo manteniendo a lo sumo dos por hilo en curso, y combina
+     * sus resultados en orden.
+     */
+    private static <P> int readSections(MappedFile mapped, long[] starts, char delimiter, int parallelism,
+                                        SectionCollector<P> collector, ForkJoinPool pool) throws IOException {
+        int maxInFlight = 2 * parallelism;
+        Deque<Future<Section<P>>> inFlight = new ArrayDeque<>();
+        int next = 0;
+        int rows = 0;
+        int lineOffset = 0;
+        while (next < starts.length && inFlight.size() < maxInFlight) {
+            inFlight.add(submitSection(mapped, starts, next++, delimiter, collector, pool));
+        }
+        while (!inFlight.isEmpty()) {
+            Section<P> section = await(inFlight.poll());
+            if (section.unterminatedQuoteLine > 0) {
+                if (section.last) {
+                    throw CsvRowReader.unterminatedQuote(lineOffset + section.unterminatedQuoteLine);
+                }
+                for (Future<Section<P>> pending : inFlight) {
+                    pending.cancel(true);
+                }
+                logger.warn("El tramo que empieza en el byte {} termina dentro de comillas; el resto del archivo se lee en secuencia",
+                            section.start);
+                return rows + readRemainder(mapped, section.start, delimiter, lineOffset, collector);
+            }
+            collector.merge(section.partial, lineOffset);
+            rows += section.rows;
+            lineOffset += section.lines;
+            if (next < starts.length) {
+                inFlight.add(submitSection(mapped, starts, next++, delimiter, collector, pool));
+            }
+        }
+        return rows;
+    }
+
+    private static <P> Future<Section<P>> submitSection(MappedFile mapped, long[] starts, int index, char delimiter,
+                                                        SectionCollector<P> collector, ForkJoinPool pool) {
+        long start = starts[index];
+        long end = (index + 1 < starts.length) ? starts[index + 1] : mapped.size();
+        return pool.submit(() -> {
+            P partial = collector.newPartial();
+            CsvRowReader csv = CsvRowReader.forSection(
+                new InputStreamReader(mapped.openStream(start, end), StandardCharsets.UTF_8), delimiter, start == 0);
+            try {
+                int rows = csv.readAll(row -> collector.onRow(partial, row));
+                return new Section<>(start, partial, rows, csv.getLinesRead(), csv.getUnterminatedQuoteLine(),
+                                     end == mapped.size());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Lee en secuencia desde un inicio de registro hasta el final, combinando por lotes.
+     */
+    private static <P> int readRemainder(MappedFile mapped, long start, char delimiter, int lineOffset,
+                                         SectionCollector<P> collector) throws IOException {
+        CsvRowReader csv = CsvRowReader.forSection(
+            new InputStreamReader(mapped.openStream(start, mapped.size()), StandardCharsets.UTF_8), delimiter, start == 0);
+        List<P> batch = new ArrayList<>(1);
+        int[] batchRows = new int[1];
+        batch.add(collector.newPartial());
+        int rows = csv.readAll(row -> {
+            collector.onRow(batch.get(0), row);
+            if (++batchRows[0] == FALLBACK_BATCH_ROWS) {
+                collector.merge(batch.get(0), lineOffset);
+                batch.set(0, collector.newPartial());
+                batchRows[0] = 0;
+            }
+        });
+        csv.requireQuotesClosed(lineOffset);
+        collector.merge(batch.get(0), lineOffset);
+        return rows;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Lectura del CSV interrumpida");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Resultado de leer un tramo.
+     */
+    private static final class Section<P> {
+        private final long start;
+        private final P partial;
+        private final int rows;
+        private final int lines;
+        private final int unterminatedQuoteLine;
+        private final boolean last;
+
+        Section(long start, P partial, int rows, int lines, int unterminatedQuoteLine, boolean last) {
+            this.start = start;
+            this.partial = partial;
+            this.rows = rows;
+            this.lines = lines;
+            this.unterminatedQuoteLine = unterminatedQuoteLine;
+            this.last = last;
+        }
+    }
+
+    /**
+     * Archivo mapeado en memoria en segmentos de 1 GB.
+     */
+    private static final class MappedFile {
+        private final MappedByteBuffer[] segments;
+        private final long size;
+
+        MappedFile(FileChannel channel) throws IOException {
+            size = channel.size();
+            int count = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+            segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long from = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(SEGMENT_SIZE, size - from));
+            }
+        }
+
+        long size() {
+            return size;
+        }
+
+        byte get(long position) {
+            return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & (SEGMENT_SIZE - 1)));
+        }
+
+        long countQuotes(long from, long to) {
+            long quotes = 0;
+            for (long position = from; position < to; ) {
+                MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_BITS)];
+                int offset = (int) (position & (SEGMENT_SIZE - 1));
+                int end = (int) Math.min(segment.limit(), offset + (to - position));
+                for (int i = offset; i < end; i++) {
+                    if (segment.get(i) == '"') {
+                        quotes++;
+                    }
+                }
+                position += end - offset;
+            }
+            return quotes;
+        }
+
+        /**
+         * Primer inicio de registro en o después de una posición: la posición siguiente
+         * al primer salto de línea fuera de comillas.
+         *
+         * @param from posición de partida
+         * @param inQuotes si la posición de partida está dentro de comillas
+         * @return inicio de registro, o el tamaño del archivo si no hay ninguno
+         */
+        long nextRecordStart(long from, boolean inQuotes) {
+            for (long position = from; position < size; position++) {
+                byte b = get(position);
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes) {
+                    return position + 1;
+                }
+            }
+            return size;
+        }
+
+        int read(long position, byte[] destination, int offset, int length) {
+            int copied = 0;
+            while (copied < length) {
+                MappedByteBuffer segment = segments[(int) ((position + copied) >>> SEGMENT_BITS)];
+                int segmentOffset = (int) ((position + copied) & (SEGMENT_SIZE - 1));
+                int count = Math.min(length - copied, segment.limit() - segmentOffset);
+                segment.get(segmentOffset, destination, offset + copied, count);
+                copied += count;
+            }
+            return copied;
+        }
+
+        InputStream openStream(long from, long to) {
+            return new InputStream() {
+                private long position = from;
+
+                @Override
+                public int read() {
+                    return (position < to) ? (get(position++) & 0xFF) : -1;
+                }
+
+                @Override
+                public int read(byte[] destination, int offset, int length) {
+                    if (position >= to) {
+                        return -1;
+                    }
+                    int count = MappedFile.this.read(position, destination, offset, (int) Math.min(length, to - position));
+                    position += count;
+                    return count;
+                }
+            };
+        }
+    }
+}
@@ -7,6 +7,8 @@ import java.io.IOException;
 import java.text.DecimalFormat;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -62,6 +64,45 @@ public class PdfOwnershipReportGenerator {
                                       Map<String, String> beneficiaryPaths,
                                       String rootEntity,
                                       String outputPath) throws IOException {
+        generateOwnershipReport(finalResults, beneficiaryPaths, rootEntity, outputPath, 0.0);
+    }
+    
+    /**
+     * Genera el reporte PDF incluyendo la participación agrupada bajo el umbral.
+     * 
+     * @param finalResults mapa de beneficiario -> porcentaje final
+     * @param beneficiaryPaths mapa de beneficiario -> ruta completa
+     * @param rootEntity nombre de la entidad raíz analizada
+     * @param outputPath ruta del archivo PDF de salida
+     * @param belowThresholdShare participación de beneficiarios bajo el umbral (0 si no aplica)
+     * @throws IOException si hay problemas escribiendo el archivo
+     */
+    public void generateOwnershipReport(Map<String, Double> finalResults,
+                                      Map<String, String> beneficiaryPaths,
+                                      String rootEntity,
+                                      String outputPath,
+                                      double belowThresholdShare) throws IOException {
+        generateOwnershipReport(finalResults, beneficiaryPaths, rootEntity, outputPath, belowThresholdShare,
+                                Collections.emptyList());
+    }
+    
+    /**
+     * Genera el reporte PDF incluyendo las observaciones de integridad de los datos de entrada.
+     * 
+     * @param finalResults mapa de beneficiario -> porcentaje final
+     * @param beneficiaryPaths mapa de beneficiario -> ruta completa
+     * @param rootEntity nombre de la entidad raíz analizada
+     * @param outputPath ruta del archivo PDF de salida
+     * @param belowThresholdShare participación de beneficiarios bajo el umbral (0 si no aplica)
+     * @param integrityNotes observaciones de integridad, una por línea (vacía si no hay)
+     * @throws IOException si hay problemas escribiendo el archivo
+     */
+    public void generateOwnershipReport(Map<String, Double> finalResults,
+                                      Map<String, String> beneficiaryPaths,
+                                      String rootEntity,
+                                      String outputPath,
+                                      double belowThresholdShare,
+                                      List<String> integrityNotes) throws IOException {
         
         logger.info("Generando reporte PDF: {}", outputPath);
         
@@ -82,7 +123,8 @@ public class PdfOwnershipReportGenerator {
             
             // Agregar contenido al documento
             addHeader(document, rootEntity);
-            addSummary(document, finalResults, rootEntity);
+            addSummary(document, finalResults, rootEntity, belowThresholdShare);
+            addIntegrityNotes(document, integrityNotes);
             addDetailedResults(document, finalResults, beneficiaryPaths);
             addFooter(document, writer);
             
@@ -176,8 +218,8 @@ public class PdfOwnershipReportGenerator {
     /**
      * Agrega el resumen ejecutivo.
      */
-    private void addSummary(Document document, Map<String, Double> finalResults, String rootEntity) 
-            throws DocumentException {
+    private void addSummary(Document document, Map<String, Double> finalResults, String rootEntity,
+                            double belowThresholdShare) throws DocumentException {
         
         Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14, DAVIVIENDA_RED);
         Paragraph summaryHeader = new Paragraph("RESUMEN EJECUTIVO", headerFont);
@@ -194,8 +236,20 @@ public class PdfOwnershipReportGenerator {
         beneficiariesCount.setSpacingAfter(8);
         document.add(beneficiariesCount);
         
+        // Participación agrupada bajo el umbral
+        if (belowThresholdShare > 0.0) {
+            Paragraph belowThreshold = new Paragraph(
+                String.format("• Otros beneficiarios (bajo el umbral, agrupados): %s", 
+                            PERCENTAGE_FORMAT.format(belowThresholdShare)), 
+                bodyFont
+            );
+            belowThreshold.setSpacingAfter(8);
+            document.add(belowThreshold);
+        }
+        
         // Participación total distribuida
-        double totalDistributed = finalResults.values().stream().mapToDouble(Double::doubleValue).sum();
+        double totalDistributed = finalResults.values().stream().mapToDouble(Double::doubleValue).sum()
+                                + belowThresholdShare;
         Paragraph totalPercentage = new Paragraph(
             String.format("• Participación total distribuida: %s", PERCENTAGE_FORMAT.format(totalDistributed)), 
             bodyFont
@@ -222,6 +276,28 @@ public class PdfOwnershipReportGenerator {
         }
     }
     
+    /**
+     * Agrega las observaciones de integridad de los datos, si las hay.
+     */
+    private void addIntegrityNotes(Document document, List<String> integrityNotes) throws DocumentException {
+        if (integrityNotes.isEmpty()) {
+            return;
+        }
+        
+        Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14, DAVIVIENDA_RED);
+        Paragraph integrityHeader = new Paragraph("CALIDAD DE LOS DATOS", headerFont);
+        integrityHeader.setSpacingAfter(10);
+        document.add(integrityHeader);
+        
+        Font noteFont = FontFactory.getFont(FontFactory.HELVETICA, 10, Color.BLACK);
+        for (String note : integrityNotes) {
+            Paragraph paragraph = new Paragraph("• " + note, noteFont);
+            paragraph.setSpacingAfter(6);
+            document.add(paragraph);
+        }
+        document.add(Chunk.NEWLINE);
+    }
+    
     /**
      * Agrega la tabla de resultados detallados.
      */
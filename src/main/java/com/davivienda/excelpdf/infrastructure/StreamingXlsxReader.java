@@ -0,0 +1,255 @@
+package com.davivienda.excelpdf.infrastructure;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Lector de la primera hoja de un archivo XLSX con el modelo de eventos de POI.
+ *
+ * <p>En lugar de construir el libro completo en memoria ({@code XSSFWorkbook}), recorre
+ * el XML de la hoja con SAX y entrega cada fila a un {@link RowHandler} apenas se lee.
+ * Solo se conservan las cadenas compartidas del libro y las celdas de la fila actual,
+ * así que la memoria no crece con el número de filas. Las celdas que se entregan se
+ * reutilizan entre filas: el manejador debe copiar lo que necesite conservar.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+public final class StreamingXlsxReader {
+
+    private StreamingXlsxReader() {
+    }
+
+    /**
+     * Recibe las filas de la hoja en orden.
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        /**
+         * Procesa una fila.
+         *
+         * @param rowIndex índice de la fila, empezando en 0
+         * @param cells celdas de las primeras columnas; las ausentes quedan en blanco
+         */
+        void onRow(int rowIndex, CellValue[] cells);
+    }
+
+    /**
+     * Tipo del valor de una celda, ya resuelto para las fórmulas.
+     */
+    public enum CellKind {
+        BLANK, STRING, NUMERIC, BOOLEAN, ERROR
+    }
+
+    /**
+     * Valor de una celda tal como está guardado en el archivo. Para las fórmulas es el
+     * último resultado calculado por Excel.
+     */
+    public static final class CellValue {
+        private CellKind kind = CellKind.BLANK;
+        private boolean formula;
+        private String text = "";
+        private double number;
+
+        private void clear() {
+            kind = CellKind.BLANK;
+            formula = false;
+            text = "";
+            number = 0.0;
+        }
+
+        // Getters
+        public CellKind getKind() { return kind; }
+        public boolean isFormula() { return formula; }
+        public String getText() { return text; }
+        public double getNumber() { return number; }
+        public boolean getBoolean() { return number != 0.0; }
+    }
+
+    /**
+     * Recorre la primera hoja del archivo.
+     *
+     * @param file archivo XLSX
+     * @param columnCount número de columnas (desde la A) que se entregan por fila
+     * @param handler manejador de filas; las excepciones que lance se propagan sin cambios
+     * @return índice de la última fila de la hoja, o -1 si la hoja está vacía
+     * @throws IOException si el archivo no se puede abrir o no es un XLSX válido
+     */
+    public static int read(File file, int columnCount, RowHandler handler) throws IOException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException("No existe el archivo: " + file);
+        }
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new IOException("El archivo no tiene hojas: " + file);
+            }
+            SheetHandler sheetHandler = new SheetHandler(sharedStrings, columnCount, handler);
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(sheetHandler);
+                parser.parse(new InputSource(sheet));
+            }
+            return sheetHandler.lastRowIndex;
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("No se pudo leer el archivo Excel " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Traduce los eventos SAX de {@code sheetN.xml} a filas.
+     */
+    private static final class SheetHandler extends DefaultHandler {
+        private final ReadOnlySharedStringsTable sharedStrings;
+        private final RowHandler handler;
+        private final CellValue[] cells;
+        private final StringBuilder value = new StringBuilder();
+
+        private int lastRowIndex = -1;
+        private int rowIndex;
+        private int nextColumn;
+        private CellValue current;
+        private String cellType;
+        private boolean formula;
+        private boolean inValue;
+        private boolean inInlineText;
+        private boolean inPhonetic;
+
+        SheetHandler(ReadOnlySharedStringsTable sharedStrings, int columnCount, RowHandler handler) {
+            this.sharedStrings = sharedStrings;
+            this.handler = handler;
+            this.cells = new CellValue[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                cells[i] = new CellValue();
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row":
+                    String rowRef = attributes.getValue("r");
+                    rowIndex = (rowRef == null) ? lastRowIndex + 1 : Integer.parseInt(rowRef) - 1;
+                    nextColumn = 0;
+                    for (CellValue cell : cells) {
+                        cell.clear();
+                    }
+                    break;
+                case "c":
+                    String cellRef = attributes.getValue("r");
+                    int column = (cellRef == null) ? nextColumn : columnOf(cellRef);
+                    nextColumn = column + 1;
+                    current = (column < cells.length) ? cells[column] : null;
+                    cellType = attributes.getValue("t");
+                    formula = false;
+                    value.setLength(0);
+                    break;
+                case "f":
+                    formula = true;
+                    break;
+                case "v":
+                    inValue = true;
+                    break;
+                case "rPh":
+                    inPhonetic = true;
+                    break;
+                case "t":
+                    inInlineText = !inPhonetic;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (current != null && (inValue || inInlineText)) {
+                value.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v":
+                    inValue = false;
+                    break;
+                case "t":
+                    inInlineText = false;
+                    break;
+                case "rPh":
+                    inPhonetic = false;
+                    break;
+                case "c":
+                    if (current != null) {
+                        fillCell(current);
+                        current = null;
+                    }
+                    break;
+                case "row":
+                    lastRowIndex = rowIndex;
+                    handler.onRow(rowIndex, cells);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void fillCell(CellValue cell) {
+            cell.formula = formula;
+            String raw = value.toString();
+            if (cellType == null || cellType.equals("n")) {
+                if (!raw.isEmpty()) {
+                    cell.kind = CellKind.NUMERIC;
+                    cell.number = Double.parseDouble(raw);
+                }
+            } else if (cellType.equals("s")) {
+                cell.kind = CellKind.STRING;
+                cell.text = raw.isEmpty() ? "" : sharedStrings.getItemAt(Integer.parseInt(raw)).getString();
+            } else if (cellType.equals("inlineStr") || cellType.equals("str")) {
+                cell.kind = CellKind.STRING;
+                cell.text = raw;
+            } else if (cellType.equals("b")) {
+                cell.kind = CellKind.BOOLEAN;
+                cell.number = raw.equals("1") ? 1.0 : 0.0;
+            } else if (cellType.equals("e")) {
+                cell.kind = CellKind.ERROR;
+                cell.text = raw;
+            }
+        }
+
+        /**
+         * Columna (desde 0) de una referencia como {@code C17}.
+         */
+        private static int columnOf(String cellRef) {
+            int column = 0;
+            for (int i = 0; i < cellRef.length(); i++) {
+                char c = cellRef.charAt(i);
+                if (c < 'A' || c > 'Z') {
+                    break;
+                }
+                column = column * 26 + (c - 'A' + 1);
+            }
+            return column - 1;
+        }
+    }
+}
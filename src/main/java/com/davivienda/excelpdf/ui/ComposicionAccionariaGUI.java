@@ -1,7 +1,10 @@
 package com.davivienda.excelpdf.ui;
 
 import com.davivienda.excelpdf.application.CsvToExcelConverter;
+import com.davivienda.excelpdf.application.CorrectionRules;
+import com.davivienda.excelpdf.application.EntityNameResolver;
 import com.davivienda.excelpdf.application.ExcelOwnershipProcessor;
+import com.davivienda.excelpdf.application.OwnershipResultCache;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -9,12 +12,9 @@ import javax.swing.border.TitledBorder;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -26,6 +26,9 @@ public class ComposicionAccionariaGUI extends JFrame {
 
     private JTextField txtArchivo;
     private JTextField txtEntidadRaiz;
+    private JSpinner spnHilos;
+    private JCheckBox chkCopiaExcel;
+    private JCheckBox chkUnificarNombres;
     private JButton btnSeleccionar;
     private JButton btnProcesar;
     private JButton btnAbrirPdf;
@@ -36,6 +39,13 @@ public class ComposicionAccionariaGUI extends JFrame {
     
     private File archivoSeleccionado;
     private String ultimoPdfGenerado;
+    // Resultados de análisis ya hechos en esta sesión (mismo archivo, raíz y opciones)
+    private final transient OwnershipResultCache resultCache = new OwnershipResultCache.Builder().build();
+    // Copias binarias de los grafos leídos, para no volver a leer un Excel que no cambió
+    private static final Path DIRECTORIO_INSTANTANEAS =
+        Paths.get(System.getProperty("java.io.tmpdir"), "composicion-accionaria");
+    // Reglas de corrección que se aplican si el archivo existe en el directorio de trabajo
+    private static final Path ARCHIVO_REGLAS = Paths.get(System.getProperty("user.dir"), "reglas_correccion.txt");
 
     public ComposicionAccionariaGUI() {
         initComponents();
@@ -192,6 +202,37 @@ public class ComposicionAccionariaGUI extends JFrame {
         txtEntidadRaiz.setToolTipText("Entidad raíz fija para el análisis");
         inputPanel.add(txtEntidadRaiz, gbc);
 
+        // Hilos de cálculo
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        gbc.gridwidth = 1;
+        gbc.weightx = 0;
+        inputPanel.add(new JLabel("Hilos de cálculo:"), gbc);
+
+        gbc.gridx = 1;
+        gbc.gridwidth = 2;
+        gbc.weightx = 1.0;
+        int procesadores = Runtime.getRuntime().availableProcessors();
+        spnHilos = new JSpinner(new SpinnerNumberModel(1, 1, Math.max(procesadores * 2, 1), 1));
+        spnHilos.setToolTipText("Hilos para leer archivos CSV grandes y validar el grafo (" + procesadores + " procesadores disponibles)");
+        inputPanel.add(spnHilos, gbc);
+
+        // Copia en Excel de los CSV
+        gbc.gridx = 1;
+        gbc.gridy = 3;
+        gbc.gridwidth = 2;
+        gbc.weightx = 1.0;
+        chkCopiaExcel = new JCheckBox("Guardar copia en Excel de los archivos CSV (data.xlsx)");
+        chkCopiaExcel.setToolTipText("El análisis lee el CSV directamente; la copia solo se genera si se marca esta opción");
+        inputPanel.add(chkCopiaExcel, gbc);
+
+        // Unificación de nombres parecidos (desactivada por defecto)
+        gbc.gridy = 4;
+        chkUnificarNombres = new JCheckBox("Unificar variantes de nombres de entidades (similitud >= 85%)");
+        chkUnificarNombres.setToolTipText("Fusiona entidades con nombres casi iguales y suma sus participaciones; "
+                + "puede unir entidades distintas con nombres parecidos");
+        inputPanel.add(chkUnificarNombres, gbc);
+
         panel.add(inputPanel, BorderLayout.NORTH);
 
         // Panel de log
@@ -322,42 +363,41 @@ public class ComposicionAccionariaGUI extends JFrame {
             protected String doInBackground() throws Exception {
                 String archivoExcel = archivoSeleccionado.getAbsolutePath();
 
-                // Si es CSV, convertir a Excel primero
-                if (archivoSeleccionado.getName().toLowerCase().endsWith(".csv")) {
-                    publish("Convirtiendo CSV a Excel...");
+                // Los CSV se leen directamente; la copia en Excel es opcional
+                if (archivoSeleccionado.getName().toLowerCase().endsWith(".csv") && chkCopiaExcel.isSelected()) {
+                    publish("Guardando copia del CSV en Excel...");
                     progressBar.setValue(20);
                     
                     CsvToExcelConverter converter = new CsvToExcelConverter();
-                    archivoExcel = converter.convertCsvToExcel(archivoSeleccionado.getAbsolutePath());
+                    String copiaExcel = converter.convertCsvToExcel(archivoSeleccionado.getAbsolutePath());
                     
-                    publish("Conversión completada: " + archivoExcel);
+                    publish("Copia en Excel guardada: " + copiaExcel);
                     progressBar.setValue(40);
                 }
 
-                // Aplicar correcciones automáticas si es necesario
-                String archivoOriginal = archivoExcel;
-                publish("\nVerificando si el Excel necesita correcciones...");
-                publish("Archivo a procesar: " + archivoExcel);
-                progressBar.setValue(45);
-                
-                String archivoCorregido = aplicarCorreccionesAutomaticas(archivoExcel);
-                if (!archivoCorregido.equals(archivoExcel)) {
-                    publish("🔧 Correcciones automáticas aplicadas");
-                    publish("Archivo original: " + archivoOriginal);
-                    publish("Archivo corregido: " + archivoCorregido);
-                    archivoExcel = archivoCorregido;
-                } else {
-                    publish("ℹ️ No se requieren correcciones para este archivo");
-                }
-                
                 // Procesar análisis
                 publish("\nIniciando análisis de composición accionaria...");
                 progressBar.setValue(50);
 
                 ExcelOwnershipProcessor processor = new ExcelOwnershipProcessor();
-                String outputPdf = archivoExcel.replace(".xlsx", "_composicion_accionaria.pdf");
+                processor.setResultCache(resultCache);
+                processor.getCalculator().setSnapshotDirectory(DIRECTORIO_INSTANTANEAS);
+                if (chkUnificarNombres.isSelected()) {
+                    processor.getCalculator().setEntityNameResolver(new EntityNameResolver());
+                    publish("🔧 Unificación de nombres activada");
+                }
+                if (ARCHIVO_REGLAS.toFile().isFile()) {
+                    CorrectionRules reglas = CorrectionRules.load(ARCHIVO_REGLAS);
+                    processor.getCalculator().setCorrectionRules(reglas);
+                    publish("🔧 Reglas de corrección: " + ARCHIVO_REGLAS + " (" + reglas.getRuleCount() + " reglas)");
+                }
+                // Los hilos no cambian el motor de cálculo, que sigue siendo el lineal por defecto
+                int hilos = (Integer) spnHilos.getValue();
+                processor.getCalculator().setParallelism(hilos);
+                publish("Hilos de procesamiento: " + hilos);
+                String outputPdf = archivoExcel.replaceAll("(?i)\\.(xlsx|csv)$", "_composicion_accionaria.pdf");
                 
-                publish("Archivo Excel: " + archivoExcel);
+                publish("Archivo de datos: " + archivoExcel);
                 publish("Entidad raíz: " + entidadRaiz);
                 publish("PDF salida: " + outputPdf);
                 
@@ -368,11 +408,23 @@ public class ComposicionAccionariaGUI extends JFrame {
 
                 progressBar.setValue(90);
 
+                EntityNameResolver.Resolution nombres = processor.getCalculator().getNameResolution();
+                if (nombres != null) {
+                    for (java.util.List<String> grupo : nombres.getClusters()) {
+                        publish("🔧 Nombres unificados en '" + grupo.get(0) + "': "
+                                + grupo.subList(1, grupo.size()));
+                    }
+                }
+
                 // Formatear resultados
                 publish("\n=== PROCESAMIENTO COMPLETADO ===");
                 publish("Estadísticas: " + result.getGraphStatistics());
                 publish("Beneficiarios finales: " + result.getFinalResults().size());
-                publish("Tiempo de procesamiento: " + result.getProcessingTime() + " ms");
+                for (String observacion : result.getIntegrityNotes()) {
+                    publish("⚠️ " + observacion);
+                }
+                publish("Tiempo de procesamiento: " + result.getProcessingTime() + " ms"
+                        + (result.isFromCache() ? " (resultado en caché)" : ""));
                 publish("\nArchivo PDF generado:");
                 publish(result.getOutputPdfPath());
                 publish("Tamaño: " + formatFileSize(result.getPdfSize()));
@@ -477,6 +529,7 @@ public class ComposicionAccionariaGUI extends JFrame {
     private void setButtonsEnabled(boolean enabled) {
         btnSeleccionar.setEnabled(enabled);
         btnProcesar.setEnabled(enabled);
+        spnHilos.setEnabled(enabled);
         btnLimpiar.setEnabled(enabled);
         // txtEntidadRaiz permanece siempre deshabilitado
     }
@@ -490,97 +543,6 @@ public class ComposicionAccionariaGUI extends JFrame {
         return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
     }
 
-    /**
-     * Aplica correcciones automáticas al Excel si es necesario
-     */
-    private String aplicarCorreccionesAutomaticas(String excelPath) {
-        try {
-            appendLog("🔍 Evaluando necesidad de correcciones para: " + excelPath);
-            
-            boolean needsCorrections = necesitaCorrecciones(excelPath);
-            appendLog("¿Necesita correcciones? " + needsCorrections);
-            
-            if (needsCorrections) {
-                appendLog("🔧 Aplicando correcciones automáticas al Excel...");
-                
-                ProcessBuilder pb = new ProcessBuilder("python", "fix_dra_blue_dynamic.py", excelPath);
-                pb.directory(new File(System.getProperty("user.dir")));
-                pb.redirectErrorStream(true);
-                
-                Process process = pb.start();
-                
-                // Leer la salida del proceso
-                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    appendLog("Python: " + line);
-                }
-                
-                int exitCode = process.waitFor();
-                if (exitCode == 0) {
-                    String correctedPath = excelPath.replace(".xlsx", "_cleaned_fixed.xlsx");
-                    if (new File(correctedPath).exists()) {
-                        appendLog("✅ Correcciones aplicadas exitosamente: " + new File(correctedPath).getName());
-                        appendLog("📁 Archivo corregido en: " + correctedPath);
-                        return correctedPath;
-                    } else {
-                        appendLog("❌ Error: El archivo corregido no se generó");
-                    }
-                } else {
-                    appendLog("⚠️ Error en correcciones automáticas (código: " + exitCode + "), usando archivo original");
-                }
-            } else {
-                appendLog("ℹ️ El archivo no necesita correcciones automáticas");
-            }
-        } catch (Exception e) {
-            appendLog("⚠️ Error aplicando correcciones: " + e.getMessage());
-            e.printStackTrace();
-        }
-        
-        return excelPath;
-    }
-
-    /**
-     * Verifica si el Excel necesita correcciones
-     */
-    private boolean necesitaCorrecciones(String excelPath) {
-        try {
-            Path path = Paths.get(excelPath);
-            String fileName = path.getFileName().toString();
-            
-            appendLog("🔍 Verificando archivo: " + fileName);
-            
-            // Solo aplicar correcciones a data.xlsx
-            if (fileName.equals("data.xlsx")) {
-                Path correctedPath = Paths.get(excelPath.replace(".xlsx", "_cleaned_fixed.xlsx"));
-                
-                appendLog("📁 Buscando archivo corregido: " + correctedPath.getFileName());
-                
-                // Si no existe el archivo corregido, necesita correcciones
-                if (!Files.exists(correctedPath)) {
-                    appendLog("❗ No existe archivo corregido, SE REQUIEREN correcciones");
-                    return true;
-                }
-                
-                // Si el archivo original es más nuevo que el corregido, necesita correcciones
-                boolean isNewer = Files.getLastModifiedTime(path).compareTo(Files.getLastModifiedTime(correctedPath)) > 0;
-                if (isNewer) {
-                    appendLog("📅 Archivo original es más nuevo, SE REQUIEREN correcciones");
-                } else {
-                    appendLog("✅ Archivo corregido está actualizado");
-                }
-                return isNewer;
-            } else {
-                appendLog("ℹ️ No es data.xlsx, no se requieren correcciones");
-            }
-        } catch (Exception e) {
-            appendLog("❌ Error verificando necesidad de correcciones: " + e.getMessage());
-            e.printStackTrace();
-        }
-        
-        return false;
-    }
-
     /**
      * Método main para lanzar la GUI
      */
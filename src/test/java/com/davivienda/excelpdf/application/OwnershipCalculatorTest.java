@@ -0,0 +1,146 @@
+package com.davivienda.excelpdf.application;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.davivienda.excelpdf.domain.OwnershipGraph;
+import com.davivienda.excelpdf.infrastructure.GraphSnapshotFile;
+
+/**
+ * Pruebas de {@link OwnershipCalculator}: los motores que resuelven ciclos deben dar el
+ * mismo resultado, y las instantáneas deben reproducir la carga original.
+ *
+ * <p>En los CSV de prueba el porcentaje se escribe como en los archivos de origen: 10000
+ * equivale al 100%.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+class OwnershipCalculatorTest {
+
+    private static final double TOLERANCE = 1e-9;
+    private static final List<CalculationMode> CYCLE_SOLVING_MODES = List.of(
+        CalculationMode.MEMOIZED_DAG, CalculationMode.ITERATIVE_SOLVER, CalculationMode.FIXED_POINT);
+
+    /** Root ← A 60%, B 40%; A ← X 50%, Y 50%; B ← X 100%. */
+    private static final String DIAMOND = "Entidad,Accionista,Porcentaje\n"
+                                          + "Root,A,6000\nRoot,B,4000\nA,X,5000\nA,Y,5000\nB,X,10000\n";
+
+    /** Root ← A 100%; A ← B 50%, P 50%; B ← A 50%, Q 50%. */
+    private static final String CYCLE = "Entidad,Accionista,Porcentaje\n"
+                                        + "Root,A,10000\nA,B,5000\nA,P,5000\nB,A,5000\nB,Q,5000\n";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void losMotoresCoincidenEnElDiamante() throws IOException {
+        for (CalculationMode mode : CYCLE_SOLVING_MODES) {
+            assertShares(Map.of("X", 0.7, "Y", 0.3), calculate(DIAMOND, mode), mode);
+        }
+    }
+
+    @Test
+    void losMotoresCoincidenEnElCiclo() throws IOException {
+        // A recibe 1 + 0.25·A, así que A = 4/3: P = 0.5·A y Q = 0.5·(0.5·A)
+        for (CalculationMode mode : CYCLE_SOLVING_MODES) {
+            assertShares(Map.of("P", 2.0 / 3.0, "Q", 1.0 / 3.0), calculate(CYCLE, mode), mode);
+        }
+    }
+
+    @Test
+    void laInstantaneaReproduceLaCarga() throws IOException {
+        OwnershipCalculator loaded = new OwnershipCalculator();
+        loaded.loadFromCsv(writeCsv(CYCLE).toString());
+        loaded.calculateFinalOwnership("Root");
+        Path snapshotPath = tempDir.resolve("grafo.ubog");
+        loaded.saveSnapshot(snapshotPath);
+
+        OwnershipCalculator restored = new OwnershipCalculator();
+        restored.loadFromSnapshot(snapshotPath);
+        restored.calculateFinalOwnership("Root");
+
+        assertShares(loaded.getFinalResults(), restored.getFinalResults());
+        assertEquals(loaded.getBeneficiaryPaths(), restored.getBeneficiaryPaths());
+        assertEquals(loaded.getGraph().keySet(), restored.getGraph().keySet());
+    }
+
+    @Test
+    void unaInstantaneaSinRelacionesNoReemplazaElGrafo() throws IOException {
+        OwnershipCalculator calculator = new OwnershipCalculator();
+        calculator.loadFromCsv(writeCsv(DIAMOND).toString());
+        Path snapshotPath = tempDir.resolve("vacia.ubog");
+        GraphSnapshotFile.write(snapshotPath, emptyGraph(), 0L, 0L, List.of());
+
+        assertThrows(IOException.class, () -> calculator.loadFromSnapshot(snapshotPath));
+        calculator.calculateFinalOwnership("Root");
+        assertShares(Map.of("X", 0.7, "Y", 0.3), calculator.getFinalResults());
+    }
+
+    @Test
+    void leeElArchivoSiLaInstantaneaVigenteEstaVacia() throws IOException {
+        Path csv = writeCsv(DIAMOND);
+        Path snapshotDirectory = tempDir.resolve("instantaneas");
+        OwnershipCalculator first = new OwnershipCalculator();
+        first.setSnapshotDirectory(snapshotDirectory);
+        first.loadFromCsv(csv.toString());
+
+        // Reemplazar la instantánea recién guardada por una vacía con la misma firma del origen
+        Path snapshotPath;
+        try (Stream<Path> files = Files.list(snapshotDirectory)) {
+            snapshotPath = files.filter(path -> path.toString().endsWith(".ubog")).findFirst().orElseThrow();
+        }
+        GraphSnapshotFile.write(snapshotPath, emptyGraph(), Files.size(csv),
+                                Files.getLastModifiedTime(csv).toMillis(), List.of());
+
+        OwnershipCalculator second = new OwnershipCalculator();
+        second.setSnapshotDirectory(snapshotDirectory);
+        second.loadFromCsv(csv.toString());
+        second.calculateFinalOwnership("Root");
+
+        assertShares(Map.of("X", 0.7, "Y", 0.3), second.getFinalResults());
+        assertTrue(GraphSnapshotFile.read(snapshotPath).edgeCount() > 0, "La instantánea debe regenerarse");
+    }
+
+    private Map<String, Double> calculate(String csv, CalculationMode mode) throws IOException {
+        OwnershipCalculator calculator = new OwnershipCalculator();
+        calculator.setCalculationMode(mode);
+        calculator.loadFromCsv(writeCsv(csv).toString());
+        calculator.calculateFinalOwnership("Root");
+        return calculator.getFinalResults();
+    }
+
+    private Path writeCsv(String text) throws IOException {
+        Path file = Files.createTempFile(tempDir, "participaciones", ".csv");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static OwnershipGraph emptyGraph() {
+        return OwnershipGraph.fromArrays(new String[] {"Root"}, new int[] {0, 0}, new int[0], new double[0]);
+    }
+
+    private static void assertShares(Map<String, Double> expected, Map<String, Double> actual) {
+        assertShares(expected, actual, null);
+    }
+
+    private static void assertShares(Map<String, Double> expected, Map<String, Double> actual, CalculationMode mode) {
+        String label = (mode == null) ? "" : mode + ": ";
+        assertEquals(expected.keySet(), actual.keySet(), label + "beneficiarios");
+        for (Map.Entry<String, Double> share : expected.entrySet()) {
+            assertEquals(share.getValue(), actual.get(share.getKey()), TOLERANCE, label + share.getKey());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.davivienda.excelpdf.infrastructure;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de {@link CsvRowReader}: comillas según RFC 4180, delimitador y errores.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+class CsvRowReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void leeValoresEntreComillasConDelimitadorSaltosDeLineaYComillasDobles() throws IOException {
+        List<String[]> rows = readAll("Entidad,Accionista,Porcentaje\n"
+                                      + "\"Acme, S.A.\",\"Juan \"\"JJ\"\" Pérez\",50\n"
+                                      + "\"Dos\nlíneas\",Otro,25\n");
+
+        assertEquals(3, rows.size());
+        assertArrayEquals(new String[] {"Acme, S.A.", "Juan \"JJ\" Pérez", "50"}, rows.get(1));
+        assertArrayEquals(new String[] {"Dos\nlíneas", "Otro", "25"}, rows.get(2));
+    }
+
+    @Test
+    void numeraLasLineasContandoLosSaltosDentroDeComillas() throws IOException {
+        List<Integer> lines = new ArrayList<>();
+        CsvRowReader.read(write("a,b\n\"x\ny\",z\nc,d\n"), row -> lines.add(row.getLineNumber()));
+
+        assertEquals(List.of(1, 2, 4), lines);
+    }
+
+    @Test
+    void comillasEnMedioDeUnValorSonLiterales() throws IOException {
+        List<String[]> rows = readAll("a,b\nsin \"comillas\" aquí,1\n");
+
+        assertArrayEquals(new String[] {"sin \"comillas\" aquí", "1"}, rows.get(1));
+    }
+
+    @Test
+    void detectaPuntoYComaYOmiteLineasVaciasYMarcaDeOrden() throws IOException {
+        List<String[]> rows = readAll("\uFEFFEntidad;Accionista;Porcentaje\r\n\r\n\"A;B\";C;10\r\n");
+
+        assertEquals(2, rows.size());
+        assertArrayEquals(new String[] {"Entidad", "Accionista", "Porcentaje"}, rows.get(0));
+        assertArrayEquals(new String[] {"A;B", "C", "10"}, rows.get(1));
+    }
+
+    @Test
+    void fallaSiElArchivoTerminaDentroDeComillas() throws IOException {
+        File file = write("a,b\nc,d\n\"abierta,1\ne,f\n");
+
+        IOException e = assertThrows(IOException.class, () -> CsvRowReader.read(file, row -> { }));
+        assertTrue(e.getMessage().contains("línea 3"), e.getMessage());
+    }
+
+    private List<String[]> readAll(String text) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        CsvRowReader.read(write(text), row -> rows.add(row.toArray()));
+        return rows;
+    }
+
+    private File write(String text) throws IOException {
+        Path file = tempDir.resolve("datos.csv");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+}
@@ -0,0 +1,95 @@
+package com.davivienda.excelpdf.infrastructure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.davivienda.excelpdf.domain.OwnershipGraph;
+
+/**
+ * Pruebas de {@link GraphSnapshotFile}: escribir y volver a leer una instantánea.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+class GraphSnapshotFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void conservaElGrafoYLasObservaciones() throws IOException {
+        OwnershipGraph original = OwnershipGraph.fromArrays(
+            new String[] {"Root", "Compañía Ñ", "Juan", "María"},
+            new int[] {0, 2, 4, 4, 4},
+            new int[] {1, 2, 2, 3},
+            new double[] {0.6, 0.4, 0.25, 0.75});
+        List<GraphSnapshotFile.IssueCount> issues = List.of(
+            new GraphSnapshotFile.IssueCount("SELF_LOOP", 3, List.of("Root (10%)", "Juan (5%)")),
+            new GraphSnapshotFile.IssueCount("DUPLICATE_EDGE", 1, List.of()));
+        Path snapshotPath = tempDir.resolve("grafo.ubog");
+
+        GraphSnapshotFile.write(snapshotPath, original, 1234L, 5678L, issues);
+        GraphSnapshotFile.Contents contents = GraphSnapshotFile.read(snapshotPath);
+
+        assertEquals(1234L, contents.getSourceSize());
+        assertEquals(5678L, contents.getSourceModified());
+        OwnershipGraph restored = contents.toOwnershipGraph();
+        assertEquals(original.size(), restored.size());
+        assertEquals(original.edgeCount(), restored.edgeCount());
+        for (int id = 0; id < original.size(); id++) {
+            assertEquals(original.nameOf(id), restored.nameOf(id));
+            assertEquals(original.ownerStart(id), restored.ownerStart(id));
+            assertEquals(original.ownerEnd(id), restored.ownerEnd(id));
+        }
+        for (int edge = 0; edge < original.edgeCount(); edge++) {
+            assertEquals(original.ownerIdAt(edge), restored.ownerIdAt(edge));
+            assertEquals(original.weightAt(edge), restored.weightAt(edge));
+        }
+        assertEquals(0.25, restored.nodeAt(restored.idOf("Compañía Ñ"))
+                                   .getOwnershipPercentage(restored.nodeAt(restored.idOf("Juan"))));
+
+        assertEquals(2, contents.getIssues().size());
+        for (int i = 0; i < issues.size(); i++) {
+            assertEquals(issues.get(i).getName(), contents.getIssues().get(i).getName());
+            assertEquals(issues.get(i).getCount(), contents.getIssues().get(i).getCount());
+            assertEquals(issues.get(i).getSamples(), contents.getIssues().get(i).getSamples());
+        }
+    }
+
+    @Test
+    void reconoceElArchivoDeOrigen() throws IOException {
+        Path snapshotPath = tempDir.resolve("grafo.ubog");
+        GraphSnapshotFile.write(snapshotPath, singleEdgeGraph(), 100L, 200L, List.of());
+
+        assertTrue(GraphSnapshotFile.matchesSource(snapshotPath, 100L, 200L));
+        assertFalse(GraphSnapshotFile.matchesSource(snapshotPath, 101L, 200L));
+        assertFalse(GraphSnapshotFile.matchesSource(snapshotPath, 100L, 201L));
+        assertFalse(GraphSnapshotFile.matchesSource(tempDir.resolve("otra.ubog"), 100L, 200L));
+    }
+
+    @Test
+    void rechazaUnArchivoDanado() throws IOException {
+        Path snapshotPath = tempDir.resolve("grafo.ubog");
+        GraphSnapshotFile.write(snapshotPath, singleEdgeGraph(), 0L, 0L, List.of());
+        byte[] bytes = Files.readAllBytes(snapshotPath);
+        bytes[bytes.length - 1] ^= 0x55;
+        Files.write(snapshotPath, bytes);
+
+        assertThrows(IOException.class, () -> GraphSnapshotFile.read(snapshotPath));
+    }
+
+    private static OwnershipGraph singleEdgeGraph() {
+        return OwnershipGraph.fromArrays(new String[] {"A", "B"}, new int[] {0, 1, 1}, new int[] {1},
+                                         new double[] {1.0});
+    }
+}
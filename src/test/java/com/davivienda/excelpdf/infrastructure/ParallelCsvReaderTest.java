@@ -0,0 +1,125 @@
+package com.davivienda.excelpdf.infrastructure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas de {@link ParallelCsvReader}: con tramos pequeños debe entregar los mismos
+ * registros y números de línea que {@link CsvRowReader}.
+ *
+ * @author Davivienda
+ * @version 1.0
+ */
+class ParallelCsvReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void coincideConElLectorSecuencialConTramosPequenos() throws IOException {
+        File file = write(randomCsv(new Random(42), 2_000));
+        List<String> expected = readSequential(file);
+
+        for (long sectionSize : new long[] {1, 7, 64, 1_000, ParallelCsvReader.DEFAULT_SECTION_SIZE}) {
+            List<String> actual = readParallel(file, 4, sectionSize);
+            assertEquals(expected, actual, "Tramos de " + sectionSize + " bytes");
+        }
+    }
+
+    @Test
+    void fallaSiElArchivoTerminaDentroDeComillas() throws IOException {
+        File file = write("a,b\nc,d\n\"abierta,1\ne,f\n");
+
+        IOException e = assertThrows(IOException.class, () -> readParallel(file, 2, 4));
+        assertEquals(CsvRowReader.unterminatedQuote(3).getMessage(), e.getMessage());
+    }
+
+    @Test
+    void rechazaParametrosInvalidos() throws IOException {
+        File file = write("a,b\n");
+
+        assertThrows(IllegalArgumentException.class, () -> readParallel(file, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> readParallel(file, 1, 0));
+    }
+
+    /**
+     * CSV con valores entre comillas que contienen delimitadores, saltos de línea y
+     * comillas dobles, para que los cortes de tramo caigan dentro de ellos.
+     */
+    private static String randomCsv(Random random, int rows) {
+        String[] pieces = {"Acme", "S.A.", ",", "\n", "\r\n", "\"\"", "Pérez", " ", "ñ"};
+        StringBuilder csv = new StringBuilder("Entidad,Accionista,Porcentaje\n");
+        for (int i = 0; i < rows; i++) {
+            for (int column = 0; column < 3; column++) {
+                if (column > 0) {
+                    csv.append(',');
+                }
+                if (random.nextInt(3) == 0) {
+                    csv.append('"');
+                    for (int k = random.nextInt(5); k >= 0; k--) {
+                        csv.append(pieces[random.nextInt(pieces.length)]);
+                    }
+                    csv.append('"');
+                } else {
+                    csv.append("v").append(random.nextInt(1_000));
+                }
+            }
+            csv.append(random.nextInt(10) == 0 ? "\r\n" : "\n");
+            if (random.nextInt(50) == 0) {
+                csv.append('\n');
+            }
+        }
+        return csv.toString();
+    }
+
+    private static List<String> readSequential(File file) throws IOException {
+        List<String> rows = new ArrayList<>();
+        CsvRowReader.read(file, row -> rows.add(describe(row.getLineNumber(), row)));
+        return rows;
+    }
+
+    private static List<String> readParallel(File file, int parallelism, long sectionSize) throws IOException {
+        List<String> rows = new ArrayList<>();
+        ParallelCsvReader.read(file, parallelism, sectionSize, new ParallelCsvReader.SectionCollector<List<Object[]>>() {
+            @Override
+            public List<Object[]> newPartial() {
+                return new ArrayList<>();
+            }
+
+            @Override
+            public void onRow(List<Object[]> partial, CsvRowReader.CsvRow row) {
+                partial.add(new Object[] {row.getLineNumber(), row.toArray()});
+            }
+
+            @Override
+            public void merge(List<Object[]> partial, int lineOffset) {
+                for (Object[] row : partial) {
+                    rows.add(lineOffset + (Integer) row[0] + ":" + List.of((String[]) row[1]));
+                }
+            }
+        });
+        return rows;
+    }
+
+    private static String describe(int lineNumber, CsvRowReader.CsvRow row) {
+        return lineNumber + ":" + List.of(row.toArray());
+    }
+
+    private File write(String text) throws IOException {
+        Path file = tempDir.resolve("datos.csv");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+}